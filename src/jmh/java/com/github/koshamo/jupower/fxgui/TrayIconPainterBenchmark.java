@@ -0,0 +1,123 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fxgui;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures drawing the tray icon into an off-screen image, as
+ * SystemTrayIntegration.updateIcon did on every change, against the lookup
+ * in the TrayIconCache, which updateIcon does now. Drawing needs no system
+ * tray, thus the benchmark runs headless.
+ * 
+ * @author jochen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrayIconPainterBenchmark {
+
+	@Param({"3", "50", "100"}) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	private int load;
+
+	@Param({"false", "true"}) //$NON-NLS-1$ //$NON-NLS-2$
+	private boolean supplying;
+
+	private final TrayIconPainter painter = new TrayIconPainter();
+	private final TrayIconCache cache = new TrayIconCache(painter, TrayIconPainter.SIZE);
+	private BufferedImage image;
+	private Graphics graphics;
+
+	/**
+	 * creates the image and its graphics context
+	 */
+	@Setup
+	public void setup() {
+		image = new BufferedImage(TrayIconPainter.SIZE, TrayIconPainter.SIZE, 
+				BufferedImage.TYPE_INT_ARGB);
+		graphics = image.getGraphics();
+		cache.get(load, supplying);
+	}
+
+	/**
+	 * releases the graphics context
+	 */
+	@TearDown
+	public void tearDown() {
+		graphics.dispose();
+	}
+
+	/**
+	 * draws the icon with a reused graphics context
+	 * 
+	 * @return	the image drawn on
+	 */
+	@Benchmark
+	public BufferedImage drawIcon32x32() {
+		painter.drawIcon32x32(graphics, load, supplying);
+		return image;
+	}
+
+	/**
+	 * draws the icon with a new graphics context per call, like updateIcon
+	 * 
+	 * @return	the image drawn on
+	 */
+	@Benchmark
+	public BufferedImage drawIcon32x32NewGraphics() {
+		final Graphics g = image.getGraphics();
+		try {
+			painter.drawIcon32x32(g, load, supplying);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * draws the icon into a new image of twice the size, as the cache does
+	 * once per state on a HiDPI tray
+	 * 
+	 * @return	the image drawn
+	 */
+	@Benchmark
+	public BufferedImage drawIcon64x64() {
+		return painter.drawIcon(2 * TrayIconPainter.SIZE, load, supplying);
+	}
+
+	/**
+	 * looks the icon up in a warm cache
+	 * 
+	 * @return	the cached image
+	 */
+	@Benchmark
+	public BufferedImage cachedIcon() {
+		return cache.get(load, supplying);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.history;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures appending a sample to a DeviceHistory, which is filled with a
+ * week of samples, one per second, and querying the last hour of every 
+ * sample and the whole week downsampled to 15 minutes.
+ * 
+ * @author jochen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeviceHistoryBenchmark {
+
+	private static final long SECOND = 1000;
+	private static final long HOUR = 60 * 60 * SECOND;
+	private static final long WEEK = 7 * 24 * HOUR;
+
+	private DeviceHistory history;
+	private long time;
+
+	/**
+	 * fills the history with a week of samples
+	 */
+	@Setup
+	public void setup() {
+		history = new DeviceHistory();
+		for (time = 0; time < WEEK; time += SECOND)
+			append();
+	}
+
+	/**
+	 * appends one sample a second after the last one
+	 * 
+	 * @return	true, if the sample has been appended
+	 */
+	@Benchmark
+	public boolean append() {
+		time += SECOND;
+		final int step = (int) (time / SECOND);
+		return history.append(time, 100 - step % 100, 10 + step % 7, 
+				step / 3600 % 2 == 0 ? 0 : DeviceHistory.CHARGING);
+	}
+
+	/**
+	 * queries every sample of the last hour
+	 * 
+	 * @param bh	the black hole consuming the samples
+	 * @return		the number of samples
+	 */
+	@Benchmark
+	public int queryHour(final Blackhole bh) {
+		return history.query(time - HOUR, time, 
+				(t, percentage, rate, state) -> bh.consume(percentage));
+	}
+
+	/**
+	 * queries the last week in a resolution of 15 minutes
+	 * 
+	 * @param bh	the black hole consuming the samples
+	 * @return		the number of samples
+	 */
+	@Benchmark
+	public int queryWeek(final Blackhole bh) {
+		return history.query(time - WEEK, time, 15 * 60 * SECOND, 
+				(t, percentage, rate, state) -> bh.consume(percentage));
+	}
+}
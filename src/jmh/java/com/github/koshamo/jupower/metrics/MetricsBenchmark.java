@@ -0,0 +1,79 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.github.koshamo.jupower.shared.EventKeys;
+
+/**
+ * Measures recording the metrics on the hot path, by one thread and by 
+ * four threads at the same time. Run with the gc profiler, recording 
+ * must not allocate.
+ * 
+ * @author jochen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+
+	private final Histogram histogram = new Histogram();
+	private final Counter counter = new Counter();
+	private final EventCounter events = new EventCounter();
+
+	/**
+	 * records the time since a start, like the parse time
+	 */
+	@Benchmark
+	public void recordHistogram() {
+		histogram.recordSince(System.nanoTime() - 1500);
+	}
+
+	/**
+	 * like recordHistogram, by four threads
+	 */
+	@Benchmark
+	@Threads(4)
+	public void recordHistogramContended() {
+		histogram.recordSince(System.nanoTime() - 1500);
+	}
+
+	/**
+	 * counts one event, like a process spawn
+	 */
+	@Benchmark
+	public void incrementCounter() {
+		counter.increment();
+	}
+
+	/**
+	 * counts a posted event by its key
+	 */
+	@Benchmark
+	public void recordEvent() {
+		events.record(EventKeys.BATTERY);
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.koshamo.fiddler.Event;
+import com.github.koshamo.fiddler.EventHandler;
+
+/**
+ * Measures the event path between UpowerModule and the GUI: constructing
+ * StrIntDataEvent and StrBoolDataEvent with boxed values, and dispatching
+ * them with instanceof checks and String comparisons of the meta
+ * information, as JuPowerGui.handle did, against constructing
+ * PowerIntEvent and PowerBoolEvent with primitive values and dispatching
+ * them with the PowerStateDispatcher. The message bus itself is not part
+ * of the measurement, as it delivers asynchronously.
+ * 
+ * @author jochen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventBenchmark {
+
+	private static final String DEVICE = "/org/freedesktop/UPower/devices/battery_BAT0"; //$NON-NLS-1$
+
+	private EventHandler source;
+	private DispatchingHandler handler;
+	private PowerStateDispatcher dispatcher;
+	private Blackhole sink;
+	private int load;
+	private boolean charging;
+
+	/**
+	 * creates the event source and the dispatching handler
+	 */
+	@Setup
+	public void setup() {
+		source = new DispatchingHandler(null);
+		handler = new DispatchingHandler(null);
+		dispatcher = new PowerStateDispatcher();
+		dispatcher.onInt(EventKeys.BATTERY, (device, value) -> sink.consume(value));
+		dispatcher.onBool(EventKeys.CHARGING, (device, value) -> sink.consume(value));
+		dispatcher.onBool(EventKeys.SUPPLYING, (device, value) -> sink.consume(value));
+	}
+
+	/**
+	 * constructs a battery load event, the load changes with every call
+	 * within 0 to 100, like a real battery load
+	 * 
+	 * @return	the event
+	 */
+	@Benchmark
+	public StrIntDataEvent createIntEvent() {
+		load = (load + 1) % 101;
+		return new StrIntDataEvent(source, null, EventKeys.BATTERY.getKey(), 
+				Integer.valueOf(load));
+	}
+
+	/**
+	 * constructs a charging event
+	 * 
+	 * @return	the event
+	 */
+	@Benchmark
+	public StrBoolDataEvent createBoolEvent() {
+		charging = !charging;
+		return new StrBoolDataEvent(source, null, EventKeys.CHARGING.getKey(), 
+				Boolean.valueOf(charging));
+	}
+
+	/**
+	 * constructs one event of each kind the module posts per cycle and
+	 * dispatches them to the handler
+	 * 
+	 * @param bh	the black hole consuming the dispatched values
+	 */
+	@Benchmark
+	public void createAndDispatch(final Blackhole bh) {
+		load = (load + 1) % 101;
+		charging = !charging;
+		handler.bh = bh;
+		handler.handle(new StrIntDataEvent(source, null, 
+				EventKeys.BATTERY.getKey(), Integer.valueOf(load)));
+		handler.handle(new StrBoolDataEvent(source, null, 
+				EventKeys.CHARGING.getKey(), Boolean.valueOf(charging)));
+		handler.handle(new StrBoolDataEvent(source, null, 
+				EventKeys.SUPPLYING.getKey(), Boolean.valueOf(!charging)));
+	}
+
+	/**
+	 * constructs a battery load event of the PowerStateEvent family
+	 * 
+	 * @return	the event
+	 */
+	@Benchmark
+	public PowerIntEvent createPowerIntEvent() {
+		load = (load + 1) % 101;
+		return new PowerIntEvent(source, null, EventKeys.BATTERY, DEVICE, load);
+	}
+
+	/**
+	 * constructs a charging event of the PowerStateEvent family
+	 * 
+	 * @return	the event
+	 */
+	@Benchmark
+	public PowerBoolEvent createPowerBoolEvent() {
+		charging = !charging;
+		return new PowerBoolEvent(source, null, EventKeys.CHARGING, DEVICE, charging);
+	}
+
+	/**
+	 * like createAndDispatch, but with the PowerStateEvent family and the
+	 * PowerStateDispatcher
+	 * 
+	 * @param bh	the black hole consuming the dispatched values
+	 */
+	@Benchmark
+	public void createAndDispatchPowerState(final Blackhole bh) {
+		load = (load + 1) % 101;
+		charging = !charging;
+		sink = bh;
+		dispatcher.dispatch(new PowerIntEvent(source, null, 
+				EventKeys.BATTERY, DEVICE, load));
+		dispatcher.dispatch(new PowerBoolEvent(source, null, 
+				EventKeys.CHARGING, DEVICE, charging));
+		dispatcher.dispatch(new PowerBoolEvent(source, null, 
+				EventKeys.SUPPLYING, DEVICE, !charging));
+	}
+
+	/**
+	 * an event handler dispatching like JuPowerGui.handle did, but consuming
+	 * the values instead of passing them to the JavaFX thread
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static class DispatchingHandler implements EventHandler {
+
+		Blackhole bh;
+
+		/**
+		 * @param bh	the black hole consuming the dispatched values
+		 */
+		DispatchingHandler(final Blackhole bh) {
+			this.bh = bh;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.github.koshamo.fiddler.EventHandler#handle(com.github.koshamo.fiddler.Event)
+		 */
+		@Override
+		public void handle(final Event event) {
+			if (event instanceof StrBoolDataEvent) {
+				StrBoolDataEvent de = (StrBoolDataEvent) event;
+				if (de.getMetaInformation().equals(EventKeys.SUPPLYING.getKey()))
+					bh.consume(de.getData().booleanValue());
+				if (de.getMetaInformation().equals(EventKeys.CHARGING.getKey()))
+					bh.consume(de.getData().booleanValue());
+			}
+			if (event instanceof StrIntDataEvent) {
+				StrIntDataEvent de = (StrIntDataEvent) event;
+				if (de.getMetaInformation().equals(EventKeys.BATTERY.getKey()))
+					bh.consume(de.getData().intValue());
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see com.github.koshamo.fiddler.EventHandler#shutdown()
+		 */
+		@Override
+		public void shutdown() {
+			// nothing to shut down
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.koshamo.jupower.shared.Upower;
+
+/**
+ * Compares the byte level UpowerParser to the former String based parsing
+ * (stream, split, trim) on recorded outputs of several upower versions.
+ * Run with the gc profiler to see the allocation rate per operation.
+ * 
+ * @author jochen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UpowerParserBenchmark {
+
+	@Param({"0.9.23", "0.99.4", "0.99.11", "1.90.2"}) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	private String version;
+
+	private byte[] battery;
+	private byte[] dump;
+	private final UpowerParser parser = new UpowerParser();
+
+	/**
+	 * loads the recorded upower outputs of the benchmarked version
+	 * 
+	 * @throws IOException	if the resources are missing
+	 */
+	@Setup
+	public void setup() throws IOException {
+		battery = load("/upower/upower-" + version + "-battery.txt"); //$NON-NLS-1$ //$NON-NLS-2$
+		dump = load("/upower/upower-" + version + "-dump.txt"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * parses percentage, state and online of one device with UpowerParser
+	 * 
+	 * @param bh	the black hole consuming the results
+	 */
+	@Benchmark
+	public void parseDevice(final Blackhole bh) {
+		parser.reset(battery, battery.length);
+		parser.parseDevice();
+		bh.consume(parser.values.getPercentage());
+		bh.consume(parser.values.isCharging());
+		bh.consume(parser.values.isOnline());
+	}
+
+	/**
+	 * parses all device blocks of upower -d with UpowerParser
+	 * 
+	 * @param bh	the black hole consuming the results
+	 */
+	@Benchmark
+	public void parseDump(final Blackhole bh) {
+		parser.reset(dump, dump.length);
+		while (parser.nextDevice()) {
+			bh.consume(parser.values.getPercentage());
+			bh.consume(parser.values.isCharging());
+			bh.consume(parser.values.isOnline());
+		}
+	}
+
+	/**
+	 * parses percentage, state and online of one device the way
+	 * UpowerConnector did before: read the output line by line into
+	 * Strings and search every value with findValue
+	 * 
+	 * @param bh	the black hole consuming the results
+	 * @throws IOException	never, the data is in memory
+	 */
+	@Benchmark
+	public void legacyFindValue(final Blackhole bh) throws IOException {
+		final List<String> infos = new ArrayList<>();
+		final BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new ByteArrayInputStream(battery)));
+		String line;
+		while ((line = reader.readLine()) != null)
+			infos.add(line);
+		final Optional<String> load = findValue(infos, Upower.BATTERY_LOAD_KEY.getKey());
+		if (load.isPresent())
+			bh.consume(parsePercentage(load.get()));
+		bh.consume(findValue(infos, Upower.CHARGING_KEY.getKey())
+				.map(Upower.CHARGING_VALUE.getKey()::equals).orElse(Boolean.FALSE));
+		bh.consume(findValue(infos, Upower.SUPPLYING_KEY.getKey())
+				.map(Upower.SUPPLYING_VALUE.getKey()::equals).orElse(Boolean.FALSE));
+	}
+
+	/**
+	 * the former UpowerConnector.findValue
+	 * 
+	 * @param list	the device information string as list
+	 * @param key	the key of interest
+	 * @return		the value of the provided key
+	 */
+	private static Optional<String> findValue(
+			final List<String> list, final String key) {
+		if (list.isEmpty())
+			return Optional.empty();
+		return list.stream()
+				.filter(s -> s.contains(key))
+				.flatMap(s -> Stream.of(s.split(Upower.SPLITTER.getKey())))
+				.skip(1)
+				.map(s -> s.trim())
+				.findAny();
+	}
+
+	/**
+	 * the former String based percentage parsing
+	 * 
+	 * @param value	the percentage value including the % sign
+	 * @return		the percentage as integer
+	 */
+	private static int parsePercentage(final String value) {
+		try {
+			String number = value.endsWith("%") //$NON-NLS-1$
+					? value.substring(0, value.length() - 1) : value;
+			return (int) Math.round(Double.parseDouble(number.replace(',', '.')));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * helper method to read a recorded upower output
+	 * 
+	 * @param resource	the resource name
+	 * @return			the content
+	 * @throws IOException	if the resource can not be read
+	 */
+	static byte[] load(final String resource) throws IOException {
+		try (InputStream in = UpowerParserBenchmark.class.getResourceAsStream(resource)) {
+			if (in == null)
+				throw new IOException("missing resource " + resource); //$NON-NLS-1$
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int count;
+			while ((count = in.read(buffer)) >= 0)
+				out.write(buffer, 0, count);
+			return out.toByteArray();
+		}
+	}
+}
@@ -1,8 +1,15 @@
 package com.github.koshamo.jupower;
+import java.util.Arrays;
+
 import com.github.koshamo.fiddler.MessageBus;
 import com.github.koshamo.fiddler.jfx.FiddlerFxApp;
 import com.github.koshamo.fiddler.jfx.FiddlerFxAppRunner;
+import com.github.koshamo.jupower.daemon.JuPowerDaemon;
+import com.github.koshamo.jupower.exporter.ExporterModule;
+import com.github.koshamo.jupower.fleet.FleetReporter;
 import com.github.koshamo.jupower.fxgui.JuPowerGui;
+import com.github.koshamo.jupower.history.HistoryModule;
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
 import com.github.koshamo.jupower.upower.UpowerModule;
 
 /*
@@ -30,18 +37,49 @@ import com.github.koshamo.jupower.upower.UpowerModule;
  */
 public class JuPower {
 
+	private static final String HEADLESS = "--headless"; //$NON-NLS-1$
+
 	/**
 	 * The main method creates and starts the message bus and all modules
 	 * that are needed to run the application.
-	 * Current modules: JavaFX GUI and Upower integration 
+	 * Current modules: JavaFX GUI, history, Prometheus exporter (if the 
+	 * system property jupower.exporter is set), fleet reporter (if the 
+	 * system property jupower.fleet is set) and Upower integration 
+	 * 
+	 * With the argument --headless or without a display, JuPowerDaemon 
+	 * is started instead, the other arguments are passed to it.
 	 * @param args
 	 */
 	@SuppressWarnings("unused")
 	public static void main(String[] args) {
+		if (args.length > 0 && HEADLESS.equals(args[0]) || !hasDisplay()) {
+			final int skip = args.length > 0 && HEADLESS.equals(args[0]) ? 1 : 0;
+			JuPowerDaemon.main(Arrays.copyOfRange(args, skip, args.length));
+			return;
+		}
+		// the AWT toolkit, the JavaFX toolkit and the upower module start 
+		// in parallel
+		JuPowerGui.prepareTray();
+		JuPowerMetrics.registerAsync();
 		MessageBus messageBus = new MessageBus();
-		new Thread(new FiddlerFxAppRunner(JuPowerGui.class, args)).start();
+		// the GUI needs the message bus as soon as the JavaFX toolkit is up
 		FiddlerFxApp.setMessageBus(messageBus);
+		new Thread(new FiddlerFxAppRunner(JuPowerGui.class, args)).start();
+		// the history, the exporter and the reporter have to listen before
+		// the first snapshots are posted, the GUI requests the state, when 
+		// it registers
+		new HistoryModule(messageBus);
+		ExporterModule.create(messageBus, System.getProperty(ExporterModule.PROPERTY));
+		FleetReporter.create(messageBus, System.getProperty(FleetReporter.PROPERTY));
 		new UpowerModule(messageBus);
 	}
 
+	/**
+	 * @return	true, if an X11 or Wayland display is set
+	 */
+	private static boolean hasDisplay() {
+		return System.getenv("DISPLAY") != null  //$NON-NLS-1$
+				|| System.getenv("WAYLAND_DISPLAY") != null; //$NON-NLS-1$
+	}
+
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.daemon;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.github.koshamo.fiddler.Event;
+import com.github.koshamo.fiddler.EventHandler;
+import com.github.koshamo.fiddler.MessageBus;
+import com.github.koshamo.fiddler.MessageBus.ListenerType;
+import com.github.koshamo.jupower.shared.BatteryAggregateEvent;
+import com.github.koshamo.jupower.shared.DeviceSnapshotEvent;
+import com.github.koshamo.jupower.shared.PowerBoolEvent;
+import com.github.koshamo.jupower.shared.PowerIntEvent;
+import com.github.koshamo.jupower.shared.PowerStateEvent;
+import com.github.koshamo.jupower.shared.StartupMetrics;
+import com.github.koshamo.jupower.shared.TimeEstimateEvent;
+
+/**
+ * DaemonModule writes the data events of the upower module to the sinks
+ * in place of the GUI. The records are written by a thread of this 
+ * module, thus the message bus is never blocked by I/O. The sinks are 
+ * flushed, whenever no more records are waiting.
+ * 
+ * With the first record, a record Started is written with the time since
+ * the start of the JVM, the resident memory of the process and the 
+ * StartupMetrics.
+ * 
+ * @author jochen
+ *
+ */
+public class DaemonModule implements EventHandler {
+
+	public static final String STARTED = "Started"; //$NON-NLS-1$
+	private static final String SNAPSHOT = "Snapshot"; //$NON-NLS-1$
+	private static final String ALL = "all"; //$NON-NLS-1$
+	private static final long SHUTDOWN_TIMEOUT = 2000;
+
+	private final MessageBus messageBus;
+	private final List<EventSink> sinks;
+	private final BlockingQueue<Record> records = new LinkedBlockingQueue<>();
+	private final Thread writer;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private boolean started;
+
+	/**
+	 * creates the module and registers it to the message bus
+	 * 
+	 * @param messageBus	the message bus
+	 * @param sinks			the sinks to write the records to
+	 */
+	public DaemonModule(final MessageBus messageBus, final EventSink... sinks) {
+		this.messageBus = Objects.requireNonNull(messageBus);
+		this.sinks = new ArrayList<>(Arrays.asList(sinks));
+		writer = new Thread(this::write, "daemon-sinks"); //$NON-NLS-1$
+		writer.setDaemon(true);
+		writer.start();
+		messageBus.registerDataEvents(this, ListenerType.TARGET);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.fiddler.EventHandler#handle(com.github.koshamo.fiddler.Event)
+	 */
+	@Override
+	public void handle(final Event event) {
+		final long time = System.currentTimeMillis();
+		if (event instanceof PowerIntEvent) {
+			final PowerIntEvent power = (PowerIntEvent) event;
+			add(time, power, Integer.toString(power.getValue()));
+		}
+		else if (event instanceof PowerBoolEvent) {
+			final PowerBoolEvent power = (PowerBoolEvent) event;
+			add(time, power, Boolean.toString(power.getValue()));
+		}
+		else if (event instanceof DeviceSnapshotEvent) {
+			final DeviceSnapshotEvent snap = (DeviceSnapshotEvent) event;
+			records.add(new Record(time, SNAPSHOT, snap.getMetaInformation(), 
+					String.valueOf(snap.getData())));
+		}
+		else if (event instanceof TimeEstimateEvent) {
+			final TimeEstimateEvent estimate = (TimeEstimateEvent) event;
+			records.add(new Record(time, estimate.getMetaInformation(), ALL, 
+					String.valueOf(estimate.getData())));
+		}
+		else if (event instanceof BatteryAggregateEvent) {
+			final BatteryAggregateEvent aggregate = (BatteryAggregateEvent) event;
+			records.add(new Record(time, aggregate.getMetaInformation(), ALL, 
+					String.valueOf(aggregate.getData())));
+		}
+	}
+
+	/**
+	 * helper method to queue the record of a power state event, events
+	 * without device, like the poll intervals, apply to all devices
+	 * 
+	 * @param time	the time of the event
+	 * @param event	the event
+	 * @param value	the value of the event as text
+	 */
+	private void add(final long time, final PowerStateEvent event, final String value) {
+		final String device = event.getDevice();
+		records.add(new Record(time, event.getKey().getKey(), 
+				device != null ? device : ALL, value));
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the waiting records are written and the sinks are closed
+	 * 
+	 * @see com.github.koshamo.fiddler.EventHandler#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		messageBus.unregisterDataEvents(this);
+		records.add(Record.END);
+		try {
+			writer.join(SHUTDOWN_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (EventSink sink : sinks) {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		stopped.countDown();
+	}
+
+	/**
+	 * waits, until the module has been shut down
+	 * 
+	 * @param timeout	the maximum time to wait in milliseconds
+	 * @return			true, if the module has been shut down
+	 * @throws InterruptedException	if the waiting thread is interrupted
+	 */
+	public boolean awaitShutdown(final long timeout) throws InterruptedException {
+		return stopped.await(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * writes the queued records until the end record is taken
+	 */
+	private void write() {
+		final List<Record> batch = new ArrayList<>();
+		try {
+			while (true) {
+				batch.add(records.take());
+				records.drainTo(batch);
+				for (Record record : batch) {
+					if (record == Record.END) {
+						flush();
+						return;
+					}
+					if (!started) {
+						started = true;
+						write(new Record(record.time, STARTED, ALL, startup()));
+					}
+					write(record);
+				}
+				batch.clear();
+				flush();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * helper method to write a record to all sinks
+	 * 
+	 * @param record	the record
+	 */
+	private void write(final Record record) {
+		for (EventSink sink : sinks) {
+			try {
+				sink.write(record.time, record.key, record.device, record.value);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * helper method to flush all sinks
+	 */
+	private void flush() {
+		for (EventSink sink : sinks) {
+			try {
+				sink.flush();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * @return	the time since the start of the JVM, the resident memory
+	 * of the process and the completed startup steps
+	 */
+	private static String startup() {
+		final long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+		final long rss = residentMemory();
+		final String steps = StartupMetrics.format();
+		return uptime + " ms" + (rss < 0 ? "" : ", " + rss + " kB RSS") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ (steps.isEmpty() ? "" : ", " + steps); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * @return	the resident memory of the process in kB, read from 
+	 * /proc/self/status, -1 if unknown
+	 */
+	static long residentMemory() {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/self/status"), //$NON-NLS-1$
+					StandardCharsets.ISO_8859_1)) {
+				if (line.startsWith("VmRSS:")) //$NON-NLS-1$
+					return Long.parseLong(line.replaceAll("[^0-9]", "")); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		} catch (IOException | NumberFormatException e) {
+			// not on Linux
+		}
+		return -1;
+	}
+
+	/**
+	 * Record is an event, waiting to be written
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static final class Record {
+
+		static final Record END = new Record(0, "", "", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+		final long time;
+		final String key;
+		final String device;
+		final String value;
+
+		Record(final long time, final String key, final String device, final String value) {
+			this.time = time;
+			this.key = key;
+			this.device = device;
+			this.value = value;
+		}
+	}
+}
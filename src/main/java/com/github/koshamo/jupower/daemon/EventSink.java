@@ -0,0 +1,74 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.daemon;
+
+import java.io.IOException;
+
+/**
+ * An EventSink receives the records of the daemon, one record per event.
+ * The records are written by one thread of the daemon, thus a sink needs
+ * not to be thread safe and may block.
+ * 
+ * @author jochen
+ *
+ */
+public interface EventSink {
+
+	/**
+	 * writes one record
+	 * 
+	 * @param time		the time of the event in milliseconds since the epoch
+	 * @param key		the key of the event, see EventKeys
+	 * @param device	the device of the event
+	 * @param value		the value of the event
+	 * @throws IOException	if the record can not be written
+	 */
+	void write(long time, String key, String device, String value) throws IOException;
+
+	/**
+	 * writes the records, which are buffered, to their destination
+	 * 
+	 * @throws IOException	if the records can not be written
+	 */
+	default void flush() throws IOException {
+		// nothing buffered by default
+	}
+
+	/**
+	 * releases the resources of the sink
+	 * 
+	 * @throws IOException	if the resources can not be released
+	 */
+	default void close() throws IOException {
+		// nothing to release by default
+	}
+
+	/**
+	 * formats a record as one line of text, separated by tabs
+	 * 
+	 * @param time		the time of the event in milliseconds since the epoch
+	 * @param key		the key of the event
+	 * @param device	the device of the event
+	 * @param value		the value of the event
+	 * @return			the line without line separator
+	 */
+	static String format(final long time, final String key, 
+			final String device, final String value) {
+		return new StringBuilder(key.length() + device.length() + value.length() + 24)
+				.append(time).append('\t').append(key).append('\t')
+				.append(device).append('\t').append(value).toString();
+	}
+}
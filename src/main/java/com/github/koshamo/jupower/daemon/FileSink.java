@@ -0,0 +1,77 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.daemon;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * FileSink appends the records to a text file, one line per record with
+ * the fields time, key, device and value separated by tabs. The lines 
+ * are buffered and written, when the daemon has no more records to 
+ * write.
+ * 
+ * @author jochen
+ *
+ */
+public class FileSink implements EventSink {
+
+	private final BufferedWriter writer;
+
+	/**
+	 * opens the file, the records are appended
+	 * 
+	 * @param file	the file, created if missing
+	 * @throws IOException	if the file can not be opened
+	 */
+	public FileSink(final Path file) throws IOException {
+		final Path dir = file.toAbsolutePath().getParent();
+		if (dir != null)
+			Files.createDirectories(dir);
+		writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, 
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.daemon.EventSink#write(long, java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void write(final long time, final String key, final String device, 
+			final String value) throws IOException {
+		writer.write(EventSink.format(time, key, device, value));
+		writer.newLine();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.daemon.EventSink#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.daemon.EventSink#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.daemon;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.koshamo.fiddler.ExitEvent;
+import com.github.koshamo.fiddler.MessageBus;
+import com.github.koshamo.jupower.exporter.ExporterModule;
+import com.github.koshamo.jupower.fleet.FleetReporter;
+import com.github.koshamo.jupower.history.HistoryModule;
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+import com.github.koshamo.jupower.upower.UpowerModule;
+
+/**
+ * JuPowerDaemon is the headless entry class of JuPower for servers and 
+ * kiosks: only the upower module runs, its events are written to the 
+ * sinks given as arguments. JavaFX, Swing and AWT are never loaded.
+ * 
+ * Usage: JuPowerDaemon [log] [file=path] [socket=port] [history] 
+ * [exporter=[host:]port] [fleet=[tcp:]host:port]
+ * <ul>
+ * <li>log: print the events to the standard output, the default</li>
+ * <li>file: append the events to the file</li>
+ * <li>socket: serve the events on the port of the loopback interface</li>
+ * <li>history: record the history like the GUI application</li>
+ * <li>exporter: serve the state and the metrics for Prometheus, 
+ * defaults to the system property jupower.exporter</li>
+ * <li>fleet: report the state to a FleetCollector, defaults to the 
+ * system property jupower.fleet</li>
+ * </ul>
+ * On SIGTERM or SIGINT the modules are shut down and the sinks are 
+ * flushed. The metrics are exposed via JMX, see JuPowerMetrics.
+ * 
+ * @author jochen
+ *
+ */
+public class JuPowerDaemon {
+
+	private static final String FILE = "file="; //$NON-NLS-1$
+	private static final String SOCKET = "socket="; //$NON-NLS-1$
+	private static final String EXPORTER = "exporter="; //$NON-NLS-1$
+	private static final String FLEET = "fleet="; //$NON-NLS-1$
+	private static final long SHUTDOWN_TIMEOUT = 3000;
+
+	/**
+	 * The main method creates and starts the message bus, the daemon 
+	 * module with the sinks and the upower module.
+	 * 
+	 * @param args	the sinks, see the class description
+	 */
+	@SuppressWarnings("unused")
+	public static void main(final String[] args) {
+		final List<EventSink> sinks = new ArrayList<>();
+		boolean history = false;
+		String exporter = System.getProperty(ExporterModule.PROPERTY);
+		String fleet = System.getProperty(FleetReporter.PROPERTY);
+		try {
+			for (String arg : args) {
+				if ("log".equals(arg)) //$NON-NLS-1$
+					sinks.add(new LogSink());
+				else if (arg.startsWith(FILE))
+					sinks.add(new FileSink(Paths.get(arg.substring(FILE.length()))));
+				else if (arg.startsWith(SOCKET))
+					sinks.add(new SocketSink(Integer.parseInt(arg.substring(SOCKET.length()))));
+				else if ("history".equals(arg)) //$NON-NLS-1$
+					history = true;
+				else if (arg.startsWith(EXPORTER))
+					exporter = arg.substring(EXPORTER.length());
+				else if (arg.startsWith(FLEET))
+					fleet = arg.substring(FLEET.length());
+				else {
+					System.err.println("Usage: JuPowerDaemon [log] [file=path] [socket=port] [history] [exporter=[host:]port] [fleet=[tcp:]host:port]"); //$NON-NLS-1$
+					System.exit(2);
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+		if (sinks.isEmpty())
+			sinks.add(new LogSink());
+
+		JuPowerMetrics.registerAsync();
+		final MessageBus messageBus = new MessageBus();
+		final DaemonModule daemon = new DaemonModule(messageBus, 
+				sinks.toArray(new EventSink[sinks.size()]));
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			messageBus.postEvent(new ExitEvent(null, null));
+			try {
+				daemon.awaitShutdown(SHUTDOWN_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "daemon-shutdown")); //$NON-NLS-1$
+		// the history, the exporter and the reporter have to listen before
+		// the first snapshots are posted
+		if (history)
+			new HistoryModule(messageBus);
+		ExporterModule.create(messageBus, exporter);
+		FleetReporter.create(messageBus, fleet);
+		new UpowerModule(messageBus);
+	}
+}
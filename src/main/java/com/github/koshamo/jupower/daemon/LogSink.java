@@ -0,0 +1,62 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.daemon;
+
+import java.io.PrintStream;
+import java.util.Objects;
+
+/**
+ * LogSink prints the records to a stream, by default to the standard 
+ * output, thus they end in the journal, if the daemon is run by systemd.
+ * 
+ * @author jochen
+ *
+ */
+public class LogSink implements EventSink {
+
+	private final PrintStream out;
+
+	/**
+	 * creates a sink printing to the standard output
+	 */
+	public LogSink() {
+		this(System.out);
+	}
+
+	/**
+	 * @param out	the stream to print the records to
+	 */
+	public LogSink(final PrintStream out) {
+		this.out = Objects.requireNonNull(out);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.daemon.EventSink#write(long, java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void write(final long time, final String key, final String device, 
+			final String value) {
+		out.println(key + ' ' + device + ": " + value); //$NON-NLS-1$
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.daemon.EventSink#flush()
+	 */
+	@Override
+	public void flush() {
+		out.flush();
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.daemon;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.github.koshamo.jupower.shared.EventKeys;
+
+/**
+ * SocketSink serves the records on a TCP port of the loopback interface,
+ * thus only local clients can connect. Every client receives the latest
+ * record of every key and device first, then every new record, one line 
+ * per record like the FileSink. The records of a removed device are not
+ * sent to new clients anymore.
+ * 
+ * Every client has a queue of MAX_QUEUED lines and a thread writing 
+ * them, thus a client, which does not read, never blocks the daemon. A 
+ * client, whose queue is full or which can not be written to, is dropped.
+ * 
+ * Java 8 has no Unix domain sockets, thus a loopback port is used.
+ * 
+ * @author jochen
+ *
+ */
+public class SocketSink implements EventSink {
+
+	public static final int MAX_QUEUED = 1024;
+
+	private final ServerSocket server;
+	private final Thread acceptor;
+	private final List<Client> clients = new ArrayList<>();
+	private final Map<String, String> latest = new LinkedHashMap<>();
+
+	/**
+	 * binds the port and starts accepting clients
+	 * 
+	 * @param port	the port on the loopback interface, 0 for any free port
+	 * @throws IOException	if the port can not be bound
+	 */
+	public SocketSink(final int port) throws IOException {
+		server = new ServerSocket();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		acceptor = new Thread(this::accept, "daemon-socket"); //$NON-NLS-1$
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @return	the port, the sink is bound to
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * @return	the number of connected clients
+	 */
+	public synchronized int getClients() {
+		return clients.size();
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the line is queued for every client, the clients write it on their
+	 * own threads
+	 * 
+	 * @see com.github.koshamo.jupower.daemon.EventSink#write(long, java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	public synchronized void write(final long time, final String key, 
+			final String device, final String value) {
+		final String line = EventSink.format(time, key, device, value);
+		if (EventKeys.DEVICE_REMOVED.getKey().equals(key)) {
+			final String suffix = '\t' + device;
+			latest.keySet().removeIf(k -> k.endsWith(suffix));
+		}
+		else
+			latest.put(key + '\t' + device, line);
+		for (Iterator<Client> it = clients.iterator(); it.hasNext();) {
+			final Client client = it.next();
+			if (!client.offer(line))
+				it.remove();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.daemon.EventSink#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		server.close();
+		for (Client client : clients)
+			client.end();
+		clients.clear();
+	}
+
+	/**
+	 * accepts the clients until the server socket is closed
+	 */
+	private void accept() {
+		while (!server.isClosed()) {
+			try {
+				final Socket socket = server.accept();
+				add(new Client(socket));
+			} catch (IOException e) {
+				if (!server.isClosed())
+					e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * queues the latest records for a new client and adds it to the 
+	 * clients
+	 * 
+	 * @param client	the new client
+	 */
+	private synchronized void add(final Client client) {
+		for (String line : latest.values()) {
+			if (!client.offer(line))
+				return;
+		}
+		client.start();
+		clients.add(client);
+	}
+
+	/**
+	 * Client is a connected socket with its queue and its writing thread,
+	 * it is closed on the first failure or if its queue is full
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static class Client implements Runnable {
+
+		// queued to end the writing thread
+		private static final String END = new String();
+
+		private final Socket socket;
+		private final Writer writer;
+		private final BlockingQueue<String> lines = new ArrayBlockingQueue<>(MAX_QUEUED);
+		private volatile boolean closed;
+
+		Client(final Socket socket) throws IOException {
+			this.socket = socket;
+			socket.shutdownInput();
+			writer = new BufferedWriter(new OutputStreamWriter(
+					socket.getOutputStream(), StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * starts the thread writing the queued lines
+		 */
+		void start() {
+			final Thread thread = new Thread(this, "daemon-socket-client"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * queues a line without blocking
+		 * 
+		 * @param line	the line to be written
+		 * @return		false, if the client has been closed, as it can not
+		 * be written to or its queue is full
+		 */
+		boolean offer(final String line) {
+			if (closed)
+				return false;
+			if (lines.offer(line))
+				return true;
+			close();
+			return false;
+		}
+
+		/**
+		 * writes the queued lines and ends the client
+		 */
+		void end() {
+			if (!lines.offer(END))
+				close();
+		}
+
+		/* (non-Javadoc)
+		 * 
+		 * writes the queued lines, the writer is flushed, whenever no more
+		 * lines are waiting
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				while (!closed) {
+					final String line = lines.take();
+					if (line == END)
+						break;
+					writer.write(line);
+					writer.write('\n');
+					if (lines.isEmpty())
+						writer.flush();
+				}
+				writer.flush();
+			} catch (IOException e) {
+				// the client is dropped
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				close();
+			}
+		}
+
+		/**
+		 * closes the socket, a blocked write of the writing thread fails
+		 * then
+		 */
+		void close() {
+			closed = true;
+			lines.clear();
+			lines.offer(END);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// the client is dropped anyway
+			}
+		}
+	}
+}
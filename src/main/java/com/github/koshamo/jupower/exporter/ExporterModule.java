@@ -0,0 +1,319 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.exporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.github.koshamo.fiddler.Event;
+import com.github.koshamo.fiddler.EventHandler;
+import com.github.koshamo.fiddler.MessageBus;
+import com.github.koshamo.fiddler.MessageBus.ListenerType;
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+import com.github.koshamo.jupower.shared.BatteryAggregate;
+import com.github.koshamo.jupower.shared.BatteryAggregateEvent;
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+import com.github.koshamo.jupower.shared.DeviceSnapshotEvent;
+import com.github.koshamo.jupower.shared.EventKeys;
+import com.github.koshamo.jupower.shared.PowerBoolEvent;
+import com.github.koshamo.jupower.shared.StartupMetrics;
+import com.github.koshamo.jupower.shared.TimeEstimate;
+import com.github.koshamo.jupower.shared.TimeEstimateEvent;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * ExporterModule serves the current power state and the metrics of 
+ * JuPower in the Prometheus text format on the path /metrics, thus a 
+ * scrape needs no upower call. The server of the JDK runs on one thread 
+ * of this module.
+ * 
+ * The power state is encoded into a byte array by the message bus thread,
+ * whenever the upower module posts a change, a scrape only writes the 
+ * array. The metrics of JuPowerMetrics change with every poll, thus they
+ * are encoded by a scrape, but at most once per second.
+ * 
+ * The address is set with the system property jupower.exporter: a port,
+ * which is bound on the loopback interface, or host:port.
+ * 
+ * @author jochen
+ *
+ */
+public class ExporterModule implements EventHandler {
+
+	public static final String PROPERTY = "jupower.exporter"; //$NON-NLS-1$
+	public static final String PATH = "/metrics"; //$NON-NLS-1$
+	private static final long METRICS_REFRESH = 1000;
+	private static final String DEVICE = "device"; //$NON-NLS-1$
+	private static final String TYPE = "type"; //$NON-NLS-1$
+
+	private final MessageBus messageBus;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, DeviceSnapshot> devices = new ConcurrentHashMap<>();
+	private final Map<String, String> labels = new ConcurrentHashMap<>();
+	private final PrometheusWriter stateWriter = new PrometheusWriter();
+	private final PrometheusWriter metricsWriter = new PrometheusWriter();
+	private BatteryAggregate aggregate;
+	private TimeEstimate estimate;
+	private volatile byte[] state;
+	private byte[] metrics;
+	private long metricsTime;
+
+	/**
+	 * creates the module, registers it to the message bus and starts the
+	 * server
+	 * 
+	 * @param messageBus	the message bus
+	 * @param address		the address to bind the server to
+	 * @throws IOException	if the address can not be bound
+	 */
+	public ExporterModule(final MessageBus messageBus, final InetSocketAddress address) 
+			throws IOException {
+		this.messageBus = Objects.requireNonNull(messageBus);
+		state = encodeState();
+		server = HttpServer.create(address, 0);
+		executor = Executors.newSingleThreadExecutor(r -> {
+			final Thread thread = new Thread(r, "exporter-http"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext(PATH, this::serve);
+		server.start();
+		messageBus.registerDataEvents(this, ListenerType.TARGET);
+	}
+
+	/**
+	 * creates the module, if an address is given
+	 * 
+	 * @param messageBus	the message bus
+	 * @param address		a port or host:port, usually the value of the 
+	 * system property jupower.exporter
+	 * @return				the module, null if no address is given or the
+	 * server can not be started
+	 */
+	public static ExporterModule create(final MessageBus messageBus, final String address) {
+		if (address == null || address.isEmpty())
+			return null;
+		try {
+			return new ExporterModule(messageBus, parse(address));
+		} catch (IOException | IllegalArgumentException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @param address	a port or host:port
+	 * @return			the socket address, on the loopback interface, if
+	 * no host is given
+	 */
+	static InetSocketAddress parse(final String address) {
+		final int colon = address.lastIndexOf(':');
+		if (colon < 0)
+			return new InetSocketAddress(InetAddress.getLoopbackAddress(), 
+					Integer.parseInt(address));
+		return new InetSocketAddress(address.substring(0, colon), 
+				Integer.parseInt(address.substring(colon + 1)));
+	}
+
+	/**
+	 * @return	the address, the server is bound to
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the state is encoded again, if it has changed. A removed device is
+	 * dropped with its labels.
+	 * 
+	 * @see com.github.koshamo.fiddler.EventHandler#handle(com.github.koshamo.fiddler.Event)
+	 */
+	@Override
+	public void handle(final Event event) {
+		if (event instanceof DeviceSnapshotEvent) {
+			final DeviceSnapshot snap = ((DeviceSnapshotEvent) event).getData();
+			devices.put(snap.getDevice(), snap);
+		}
+		else if (event instanceof PowerBoolEvent 
+				&& ((PowerBoolEvent) event).getKey() == EventKeys.DEVICE_REMOVED) {
+			final String device = ((PowerBoolEvent) event).getDevice();
+			if (devices.remove(device) == null)
+				return;
+			labels.remove(device);
+		}
+		else if (event instanceof BatteryAggregateEvent)
+			aggregate = ((BatteryAggregateEvent) event).getData();
+		else if (event instanceof TimeEstimateEvent)
+			estimate = ((TimeEstimateEvent) event).getData();
+		else
+			return;
+		state = encodeState();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.fiddler.EventHandler#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		messageBus.unregisterDataEvents(this);
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	/**
+	 * answers a scrape with the encoded state and metrics
+	 * 
+	 * @param exchange	the request and response
+	 * @throws IOException	if the response can not be sent
+	 */
+	private void serve(final HttpExchange exchange) throws IOException {
+		try {
+			final String method = exchange.getRequestMethod();
+			final boolean head = "HEAD".equals(method); //$NON-NLS-1$
+			if (!head && !"GET".equals(method)) { //$NON-NLS-1$
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			final byte[] currentState = state;
+			final byte[] currentMetrics = encodeMetrics();
+			exchange.getResponseHeaders().set("Content-Type", PrometheusWriter.CONTENT_TYPE); //$NON-NLS-1$
+			exchange.sendResponseHeaders(200, 
+					head ? -1 : currentState.length + currentMetrics.length);
+			if (head)
+				return;
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(currentState);
+				out.write(currentMetrics);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * encodes the current state of all devices, the battery aggregate and
+	 * the time estimate
+	 * 
+	 * @return	the state in Prometheus text format
+	 */
+	private byte[] encodeState() {
+		final PrometheusWriter w = stateWriter;
+		w.gauge("jupower_device_percent", "Load of the device battery in percent."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (DeviceSnapshot snap : devices.values())
+			w.sample("jupower_device_percent", labels(snap), snap.getPercentage()); //$NON-NLS-1$
+		w.gauge("jupower_device_energy_wh", "Energy of the device battery in Wh."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (DeviceSnapshot snap : devices.values())
+			w.sample("jupower_device_energy_wh", labels(snap), snap.getEnergy()); //$NON-NLS-1$
+		w.gauge("jupower_device_energy_full_wh", "Energy of the full device battery in Wh."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (DeviceSnapshot snap : devices.values())
+			w.sample("jupower_device_energy_full_wh", labels(snap), snap.getEnergyFull()); //$NON-NLS-1$
+		w.gauge("jupower_device_energy_rate_w", "Charge or discharge rate of the device in W."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (DeviceSnapshot snap : devices.values())
+			w.sample("jupower_device_energy_rate_w", labels(snap), snap.getEnergyRate()); //$NON-NLS-1$
+		w.gauge("jupower_device_charging", "1, if the device battery is charging."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (DeviceSnapshot snap : devices.values())
+			w.sample("jupower_device_charging", labels(snap), snap.isCharging() ? 1 : 0); //$NON-NLS-1$
+		w.gauge("jupower_device_online", "1, if the line power device is supplying."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (DeviceSnapshot snap : devices.values())
+			w.sample("jupower_device_online", labels(snap), snap.isOnline() ? 1 : 0); //$NON-NLS-1$
+		final BatteryAggregate batteries = aggregate;
+		if (batteries != null) {
+			w.gauge("jupower_batteries", "Number of system batteries.") //$NON-NLS-1$ //$NON-NLS-2$
+					.sample("jupower_batteries", batteries.getBatteries()); //$NON-NLS-1$
+			w.gauge("jupower_battery_percent", "Combined load of all system batteries in percent.") //$NON-NLS-1$ //$NON-NLS-2$
+					.sample("jupower_battery_percent", batteries.getPercentage()); //$NON-NLS-1$
+			w.gauge("jupower_battery_energy_rate_w", "Combined rate of all system batteries in W, negative while discharging.") //$NON-NLS-1$ //$NON-NLS-2$
+					.sample("jupower_battery_energy_rate_w", batteries.getEnergyRate()); //$NON-NLS-1$
+			w.gauge("jupower_battery_charging", "1, if the system batteries are charging.") //$NON-NLS-1$ //$NON-NLS-2$
+					.sample("jupower_battery_charging", batteries.isCharging() ? 1 : 0); //$NON-NLS-1$
+		}
+		final TimeEstimate time = estimate;
+		if (time != null) {
+			final String name = time.isCharging() 
+					? "jupower_time_to_full_seconds" : "jupower_time_to_empty_seconds"; //$NON-NLS-1$ //$NON-NLS-2$
+			w.gauge(name, "Estimated time until the system batteries are full or empty.") //$NON-NLS-1$
+					.sample(name, time.getSeconds());
+			w.gauge("jupower_time_estimate_confidence", "Confidence of the time estimate between 0 and 1.") //$NON-NLS-1$ //$NON-NLS-2$
+					.sample("jupower_time_estimate_confidence", time.getConfidence()); //$NON-NLS-1$
+		}
+		return w.toBytes();
+	}
+
+	/**
+	 * helper method to get the labels of a device, which are created once
+	 * 
+	 * @param snap	the snapshot of the device
+	 * @return		the labels of the device
+	 */
+	private String labels(final DeviceSnapshot snap) {
+		return labels.computeIfAbsent(snap.getDevice(), device -> 
+				PrometheusWriter.labels(DEVICE, device, TYPE, snap.getType().getKey()));
+	}
+
+	/**
+	 * encodes the metrics of JuPowerMetrics and StartupMetrics, if the last
+	 * encoding is older than a second. Called by the server thread only.
+	 * 
+	 * @return	the metrics in Prometheus text format
+	 */
+	private byte[] encodeMetrics() {
+		final long now = System.currentTimeMillis();
+		if (metrics != null && now - metricsTime < METRICS_REFRESH)
+			return metrics;
+		final PrometheusWriter w = metricsWriter;
+		w.counter("jupower_process_spawns_total", "upower processes spawned.") //$NON-NLS-1$ //$NON-NLS-2$
+				.sample("jupower_process_spawns_total", JuPowerMetrics.PROCESS_SPAWNS.getCount()); //$NON-NLS-1$
+		w.counter("jupower_process_timeouts_total", "upower processes killed on timeout.") //$NON-NLS-1$ //$NON-NLS-2$
+				.sample("jupower_process_timeouts_total", JuPowerMetrics.PROCESS_TIMEOUTS.getCount()); //$NON-NLS-1$
+		w.histogram("jupower_process_exec_seconds", "Execution time of upower processes.", //$NON-NLS-1$ //$NON-NLS-2$
+				JuPowerMetrics.PROCESS_EXEC);
+		w.histogram("jupower_parse_seconds", "Time to parse an upower output.", //$NON-NLS-1$ //$NON-NLS-2$
+				JuPowerMetrics.PARSE);
+		w.counter("jupower_events_posted_total", "Events posted on the message bus per key."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (Map.Entry<String, Long> posted : JuPowerMetrics.EVENTS.getPosted().entrySet())
+			w.sample("jupower_events_posted_total", //$NON-NLS-1$
+					PrometheusWriter.labels("key", posted.getKey()), posted.getValue().longValue()); //$NON-NLS-1$
+		w.histogram("jupower_gui_run_later_lag_seconds", "Lag of the GUI updates on the JavaFX thread.", //$NON-NLS-1$ //$NON-NLS-2$
+				JuPowerMetrics.RUN_LATER_LAG);
+		w.counter("jupower_icon_updates_total", "Tray icon updates.") //$NON-NLS-1$ //$NON-NLS-2$
+				.sample("jupower_icon_updates_total", JuPowerMetrics.ICON_UPDATES.getCount()); //$NON-NLS-1$
+		w.counter("jupower_icon_redraws_total", "Tray icon image swaps.") //$NON-NLS-1$ //$NON-NLS-2$
+				.sample("jupower_icon_redraws_total", JuPowerMetrics.ICON_REDRAWS.getCount()); //$NON-NLS-1$
+		w.counter("jupower_icon_draws_total", "Tray icon images drawn.") //$NON-NLS-1$ //$NON-NLS-2$
+				.sample("jupower_icon_draws_total", JuPowerMetrics.ICON_DRAWS.getCount()); //$NON-NLS-1$
+		w.gauge("jupower_startup_seconds", "Time from the start of the JVM to the startup step."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (StartupMetrics.Step step : StartupMetrics.Step.values()) {
+			final long time = StartupMetrics.get(step);
+			if (time >= 0)
+				w.sample("jupower_startup_seconds", //$NON-NLS-1$
+						PrometheusWriter.labels("step", step.getKey()), time / 1000.0); //$NON-NLS-1$
+		}
+		metrics = w.toBytes();
+		metricsTime = now;
+		return metrics;
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.exporter;
+
+import java.nio.charset.StandardCharsets;
+
+import com.github.koshamo.jupower.metrics.Histogram;
+
+/**
+ * PrometheusWriter builds a text in the Prometheus exposition format, 
+ * version 0.0.4, and encodes it as UTF-8. The writer is reused, thus 
+ * the buffer grows once to the size of the text.
+ * 
+ * This class is not thread safe.
+ * 
+ * @author jochen
+ *
+ */
+final class PrometheusWriter {
+
+	static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8"; //$NON-NLS-1$
+
+	private static final String GAUGE = "gauge"; //$NON-NLS-1$
+	private static final String COUNTER = "counter"; //$NON-NLS-1$
+	private static final String HISTOGRAM = "histogram"; //$NON-NLS-1$
+
+	private final StringBuilder sb = new StringBuilder(4096);
+
+	/**
+	 * writes the help and type lines of a gauge
+	 * 
+	 * @param name	the name of the metric
+	 * @param help	the description of the metric
+	 * @return		this writer
+	 */
+	PrometheusWriter gauge(final String name, final String help) {
+		return header(name, GAUGE, help);
+	}
+
+	/**
+	 * writes the help and type lines of a counter
+	 * 
+	 * @param name	the name of the metric, ending with _total
+	 * @param help	the description of the metric
+	 * @return		this writer
+	 */
+	PrometheusWriter counter(final String name, final String help) {
+		return header(name, COUNTER, help);
+	}
+
+	/**
+	 * writes a sample without labels
+	 * 
+	 * @param name	the name of the metric
+	 * @param value	the value
+	 * @return		this writer
+	 */
+	PrometheusWriter sample(final String name, final double value) {
+		sb.append(name).append(' ');
+		return value(value);
+	}
+
+	/**
+	 * writes a sample with labels
+	 * 
+	 * @param name		the name of the metric
+	 * @param labels	the labels, created by labels
+	 * @param value		the value
+	 * @return			this writer
+	 */
+	PrometheusWriter sample(final String name, final String labels, final double value) {
+		sb.append(name).append(labels).append(' ');
+		return value(value);
+	}
+
+	/**
+	 * writes a histogram, the times of the histogram are converted to 
+	 * seconds, bucket i is written with the upper bound 2^i microseconds,
+	 * the last bucket as +Inf
+	 * 
+	 * @param name		the name of the metric, ending with _seconds
+	 * @param help		the description of the metric
+	 * @param histogram	the histogram
+	 * @return			this writer
+	 */
+	PrometheusWriter histogram(final String name, final String help, 
+			final Histogram histogram) {
+		header(name, HISTOGRAM, help);
+		final long[] buckets = histogram.getBuckets();
+		long count = 0;
+		for (int i = 0; i < buckets.length; ++i) {
+			count += buckets[i];
+			sb.append(name).append("_bucket{le=\""); //$NON-NLS-1$
+			if (i == buckets.length - 1)
+				sb.append("+Inf"); //$NON-NLS-1$
+			else
+				sb.append((1L << i) / 1e6);
+			sb.append("\"} ").append(count).append('\n'); //$NON-NLS-1$
+		}
+		sb.append(name).append("_sum "); //$NON-NLS-1$
+		value(histogram.getSumMicros() / 1e6);
+		sb.append(name).append("_count ").append(count).append('\n'); //$NON-NLS-1$
+		return this;
+	}
+
+	/**
+	 * @return	the text written so far in UTF-8, the writer is empty then
+	 */
+	byte[] toBytes() {
+		final byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+		sb.setLength(0);
+		return bytes;
+	}
+
+	/**
+	 * creates the labels of samples
+	 * 
+	 * @param pairs	the names and values of the labels, alternating
+	 * @return		the labels in braces
+	 */
+	static String labels(final String... pairs) {
+		final StringBuilder labels = new StringBuilder().append('{');
+		for (int i = 0; i + 1 < pairs.length; i += 2) {
+			if (i > 0)
+				labels.append(',');
+			labels.append(pairs[i]).append("=\""); //$NON-NLS-1$
+			escape(labels, pairs[i + 1]);
+			labels.append('"');
+		}
+		return labels.append('}').toString();
+	}
+
+	/**
+	 * helper method to write the help and type lines of a metric
+	 * 
+	 * @param name	the name of the metric
+	 * @param type	the type of the metric
+	 * @param help	the description of the metric
+	 * @return		this writer
+	 */
+	private PrometheusWriter header(final String name, final String type, 
+			final String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n'); //$NON-NLS-1$
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n'); //$NON-NLS-1$
+		return this;
+	}
+
+	/**
+	 * helper method to write the value of a sample and the line end, whole
+	 * numbers are written without fraction
+	 * 
+	 * @param value	the value
+	 * @return		this writer
+	 */
+	private PrometheusWriter value(final double value) {
+		if (value == (long) value)
+			sb.append((long) value);
+		else if (Double.isNaN(value))
+			sb.append("NaN"); //$NON-NLS-1$
+		else if (Double.isInfinite(value))
+			sb.append(value > 0 ? "+Inf" : "-Inf"); //$NON-NLS-1$ //$NON-NLS-2$
+		else
+			sb.append(value);
+		sb.append('\n');
+		return this;
+	}
+
+	/**
+	 * helper method to escape a label value
+	 * 
+	 * @param labels	the labels to append to
+	 * @param value		the label value
+	 */
+	private static void escape(final StringBuilder labels, final String value) {
+		for (int i = 0; i < value.length(); ++i) {
+			final char c = value.charAt(i);
+			if (c == '\\' || c == '"')
+				labels.append('\\').append(c);
+			else if (c == '\n')
+				labels.append("\\n"); //$NON-NLS-1$
+			else
+				labels.append(c);
+		}
+	}
+}
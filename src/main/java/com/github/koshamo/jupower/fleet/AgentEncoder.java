@@ -0,0 +1,142 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fleet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * AgentEncoder keeps the device states of an agent and encodes the
+ * changes since the last frame. The states may be set by one thread and
+ * encoded by another, but frames have to be encoded by one thread at a
+ * time. A removed device is sent as a keyframe without its slot, which
+ * empties the slot on the collector.
+ * 
+ * @author jochen
+ *
+ */
+final class AgentEncoder {
+
+	private final long agent;
+	private final AtomicLongArray states = new AtomicLongArray(FleetProtocol.SLOTS);
+	private final AtomicReferenceArray<String> names = 
+			new AtomicReferenceArray<>(FleetProtocol.SLOTS);
+	// the encoding thread only
+	private final long[] current = new long[FleetProtocol.SLOTS];
+	private final long[] sent = new long[FleetProtocol.SLOTS];
+	private final String[] sentNames = new String[FleetProtocol.SLOTS];
+	private int sequence;
+
+	/**
+	 * @param agent	the id of the agent
+	 */
+	AgentEncoder(final long agent) {
+		this.agent = agent;
+		for (int i = 0; i < FleetProtocol.SLOTS; ++i)
+			states.set(i, FleetProtocol.EMPTY);
+		Arrays.fill(sent, FleetProtocol.EMPTY);
+	}
+
+	/**
+	 * @return	the id of the agent
+	 */
+	long getAgent() {
+		return agent;
+	}
+
+	/**
+	 * sets the state of a device
+	 * 
+	 * @param slot		the slot of the device, AGGREGATE for the combined 
+	 * batteries
+	 * @param name		the name of the device
+	 * @param packed	the packed state, see FleetProtocol.pack
+	 */
+	void set(final int slot, final String name, final long packed) {
+		names.set(slot, Objects.requireNonNull(name));
+		states.set(slot, packed);
+	}
+
+	/**
+	 * removes a device, its slot may be set again
+	 * 
+	 * @param slot	the slot of the device
+	 */
+	void remove(final int slot) {
+		states.set(slot, FleetProtocol.EMPTY);
+	}
+
+	/**
+	 * @param slot	the slot of the device
+	 * @return		the packed state of the device, EMPTY if not set
+	 */
+	long get(final int slot) {
+		return states.get(slot);
+	}
+
+	/**
+	 * encodes the changes since the last frame, a keyframe, if a device 
+	 * has been removed
+	 * 
+	 * @param out		the buffer, at least MAX_FRAME bytes have to remain
+	 * @param all		true, to encode all fields of all devices
+	 * @return			true, if a frame has been encoded, false, if 
+	 * nothing has changed
+	 */
+	boolean encode(final ByteBuffer out, final boolean all) {
+		// the states of this frame, a removal may not change them anymore
+		boolean keyframe = all;
+		for (int slot = 0; slot < FleetProtocol.SLOTS; ++slot) {
+			current[slot] = states.get(slot);
+			if (current[slot] == FleetProtocol.EMPTY && sent[slot] != FleetProtocol.EMPTY)
+				keyframe = true;
+		}
+		final int start = out.position();
+		out.position(start + FleetProtocol.HEADER);
+		int records = 0;
+		for (int slot = 0; slot < FleetProtocol.SLOTS; ++slot) {
+			final long packed = current[slot];
+			if (packed == FleetProtocol.EMPTY) {
+				sent[slot] = FleetProtocol.EMPTY;
+				sentNames[slot] = null;
+				continue;
+			}
+			final String name = names.get(slot);
+			int fields = keyframe ? FleetProtocol.VALUES : FleetProtocol.changed(sent[slot], packed);
+			if (keyframe || !name.equals(sentNames[slot]))
+				fields |= FleetProtocol.NAME;
+			if (fields == 0)
+				continue;
+			FleetProtocol.writeRecord(out, slot, fields, name, packed);
+			sent[slot] = packed;
+			sentNames[slot] = name;
+			++records;
+		}
+		if (records == 0 && !keyframe) {
+			out.position(start);
+			return false;
+		}
+		final int end = out.position();
+		out.position(start);
+		FleetProtocol.writeHeader(out, keyframe ? FleetProtocol.KEYFRAME : 0, 
+				agent, sequence++, records);
+		out.position(end);
+		return true;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fleet;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * AgentSlot holds the device states of one agent in the collector. The 
+ * states are packed longs, which are swapped by compare and set, thus 
+ * the frames of an agent may be applied by any thread without locks.
+ * 
+ * @author jochen
+ *
+ */
+final class AgentSlot {
+
+	private static final long NONE = Long.MIN_VALUE;
+
+	final long agent;
+	final AtomicLongArray states = new AtomicLongArray(FleetProtocol.SLOTS);
+	final AtomicReferenceArray<String> names = 
+			new AtomicReferenceArray<>(FleetProtocol.SLOTS);
+	private final AtomicLong sequence = new AtomicLong(NONE);
+	volatile long lastSeen;
+	// set, before the slot is removed from the collector
+	volatile boolean expired;
+
+	/**
+	 * @param agent	the id of the agent
+	 */
+	AgentSlot(final long agent) {
+		this.agent = agent;
+		for (int i = 0; i < FleetProtocol.SLOTS; ++i)
+			states.set(i, FleetProtocol.EMPTY);
+	}
+
+	/**
+	 * checks the sequence of a frame, a frame older than the last one is
+	 * rejected. A keyframe is always accepted, as the agent may have been
+	 * restarted.
+	 * 
+	 * @param number	the sequence of the frame
+	 * @param keyframe	true, if the frame is a keyframe
+	 * @return			true, if the frame is applied
+	 */
+	boolean accept(final int number, final boolean keyframe) {
+		while (true) {
+			final long last = sequence.get();
+			if (!keyframe && last != NONE && number - (int) last <= 0)
+				return false;
+			if (sequence.compareAndSet(last, number))
+				return true;
+		}
+	}
+}
@@ -0,0 +1,618 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fleet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.koshamo.jupower.shared.BatteryAggregate;
+
+/**
+ * FleetCollector receives the frames of the agents on a UDP and a TCP 
+ * port with the same number and keeps the aggregates of the fleet: the
+ * number of agents below EARLY_WARNING and URGENT_WARNING, the average 
+ * load and the average time to empty. 
+ * 
+ * One thread receives the datagrams, one thread serves all TCP 
+ * connections, a third thread expires agents, which have not reported 
+ * for some time. The frames are applied to the AgentSlot of the agent 
+ * without locks, the aggregates are updated by the difference of the old
+ * and the new state, thus they are never recomputed.
+ * 
+ * Only the combined state of the batteries of an agent, slot 0, counts 
+ * for the aggregates. An agent is below a warning, if it is discharging 
+ * and its load is at or below the warning.
+ * 
+ * @author jochen
+ *
+ */
+public class FleetCollector implements Closeable {
+
+	public static final int DEFAULT_PORT = 7340;
+	public static final long DEFAULT_EXPIRY = 120 * 1000;
+	private static final long SUMMARY_INTERVAL = 10 * 1000;
+
+	private final ConcurrentHashMap<Long, AgentSlot> agents = new ConcurrentHashMap<>();
+	private final DatagramChannel udp;
+	private final ServerSocketChannel tcp;
+	private final Selector selector;
+	private final ScheduledExecutorService expirer;
+	private final long expiry;
+	private volatile boolean running = true;
+
+	// the aggregates
+	private final LongAdder reporting = new LongAdder();
+	private final LongAdder early = new LongAdder();
+	private final LongAdder urgent = new LongAdder();
+	private final LongAdder levelSum = new LongAdder();
+	private final LongAdder timeSum = new LongAdder();
+	private final LongAdder timeCount = new LongAdder();
+	// the statistics
+	private final LongAdder frames = new LongAdder();
+	private final LongAdder stale = new LongAdder();
+	private final LongAdder invalid = new LongAdder();
+
+	/**
+	 * creates the collector and starts its threads
+	 * 
+	 * @param address	the address to bind the UDP and the TCP port to,
+	 * with port 0 a free port is chosen
+	 * @param expiry	the time in milliseconds, after which an agent is 
+	 * removed, if it has not reported
+	 * @throws IOException	if the ports can not be bound
+	 */
+	public FleetCollector(final InetSocketAddress address, final long expiry) 
+			throws IOException {
+		this.expiry = expiry;
+		udp = DatagramChannel.open();
+		udp.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+		udp.bind(address);
+		tcp = ServerSocketChannel.open();
+		selector = Selector.open();
+		try {
+			tcp.bind(new InetSocketAddress(address.getAddress(), 
+					((InetSocketAddress) udp.getLocalAddress()).getPort()), 256);
+			tcp.configureBlocking(false);
+			tcp.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			udp.close();
+			tcp.close();
+			selector.close();
+			throw e;
+		}
+		start(this::receive, "fleet-udp"); //$NON-NLS-1$
+		start(this::serve, "fleet-tcp"); //$NON-NLS-1$
+		expirer = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "fleet-expiry"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		});
+		expirer.scheduleWithFixedDelay(this::expire, expiry / 4, expiry / 4, 
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * helper method to start a daemon thread
+	 * 
+	 * @param task	the task of the thread
+	 * @param name	the name of the thread
+	 */
+	private static void start(final Runnable task, final String name) {
+		final Thread thread = new Thread(task, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return	the port of the collector
+	 */
+	public int getPort() {
+		return tcp.socket().getLocalPort();
+	}
+
+	/**
+	 * receives the datagrams until the collector is closed
+	 */
+	private void receive() {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(FleetProtocol.MAX_FRAME + 1);
+		final Frame frame = new Frame();
+		try {
+			while (running) {
+				buffer.clear();
+				udp.receive(buffer);
+				buffer.flip();
+				if (buffer.remaining() > FleetProtocol.MAX_FRAME)
+					invalid.increment();
+				else
+					apply(frame, buffer);
+			}
+		} catch (ClosedChannelException e) {
+			// closed
+		} catch (IOException e) {
+			if (running)
+				e.printStackTrace();
+		}
+	}
+
+	/**
+	 * serves the TCP connections until the collector is closed, every 
+	 * connection has a buffer, which takes the frames
+	 */
+	private void serve() {
+		final Frame frame = new Frame();
+		try {
+			while (running) {
+				selector.select();
+				final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					final SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable()) {
+						final SocketChannel channel = tcp.accept();
+						if (channel == null)
+							continue;
+						channel.configureBlocking(false);
+						channel.register(selector, SelectionKey.OP_READ, 
+								ByteBuffer.allocate(2 + FleetProtocol.MAX_FRAME));
+					}
+					else if (key.isReadable())
+						read(key, frame);
+				}
+			}
+		} catch (ClosedChannelException e) {
+			// closed
+		} catch (IOException e) {
+			if (running)
+				e.printStackTrace();
+		} finally {
+			for (SelectionKey key : selector.keys())
+				close(key);
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+		}
+	}
+
+	/**
+	 * reads the frames of a TCP connection, the connection is closed at 
+	 * its end or on a frame too long
+	 * 
+	 * @param key	the key of the connection
+	 * @param frame	the frame to decode into
+	 */
+	private void read(final SelectionKey key, final Frame frame) {
+		final SocketChannel channel = (SocketChannel) key.channel();
+		final ByteBuffer buffer = (ByteBuffer) key.attachment();
+		try {
+			if (channel.read(buffer) < 0) {
+				close(key);
+				return;
+			}
+		} catch (IOException e) {
+			close(key);
+			return;
+		}
+		buffer.flip();
+		while (buffer.remaining() >= 2) {
+			final int length = buffer.getShort(buffer.position()) & 0xFFFF;
+			if (length > FleetProtocol.MAX_FRAME) {
+				invalid.increment();
+				close(key);
+				return;
+			}
+			if (buffer.remaining() < 2 + length)
+				break;
+			final int end = buffer.position() + 2 + length;
+			final int limit = buffer.limit();
+			buffer.position(buffer.position() + 2).limit(end);
+			apply(frame, buffer);
+			buffer.limit(limit).position(end);
+		}
+		buffer.compact();
+	}
+
+	/**
+	 * helper method to close a TCP connection
+	 * 
+	 * @param key	the key of the connection
+	 */
+	private static void close(final SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+
+	/**
+	 * decodes a frame and applies it to the slot of its agent
+	 * 
+	 * @param frame		the frame to decode into
+	 * @param buffer	the frame, from its position to its limit
+	 */
+	private void apply(final Frame frame, final ByteBuffer buffer) {
+		if (!frame.read(buffer)) {
+			invalid.increment();
+			return;
+		}
+		frames.increment();
+		AgentSlot agent = agents.get(Long.valueOf(frame.agent));
+		if (agent == null)
+			agent = agents.computeIfAbsent(Long.valueOf(frame.agent), AgentSlot::new);
+		final boolean keyframe = (frame.flags & FleetProtocol.KEYFRAME) != 0;
+		if (!agent.accept(frame.sequence, keyframe)) {
+			stale.increment();
+			return;
+		}
+		agent.lastSeen = System.currentTimeMillis();
+		int present = 0;
+		for (int i = 0; i < frame.records; ++i) {
+			final int slot = frame.slots[i];
+			present |= 1 << slot;
+			if (frame.names[i] != null)
+				agent.names.set(slot, frame.names[i]);
+			update(agent, slot, frame.fields[i], frame.values[i]);
+		}
+		if (keyframe) {
+			for (int slot = 0; slot < FleetProtocol.SLOTS; ++slot) {
+				if ((present & 1 << slot) == 0)
+					clear(agent, slot);
+			}
+		}
+		if (agent.expired)
+			clear(agent);
+	}
+
+	/**
+	 * applies the fields of a record to a slot. A record for an empty slot
+	 * is ignored, unless it holds all fields, as a lost keyframe is 
+	 * repaired by the next one.
+	 * 
+	 * @param agent		the agent
+	 * @param slot		the slot of the device
+	 * @param fields	the fields of the record
+	 * @param values	the values of the fields as packed state
+	 */
+	private void update(final AgentSlot agent, final int slot, final int fields, 
+			final long values) {
+		final long bits = FleetProtocol.bits(fields);
+		while (true) {
+			final long old = agent.states.get(slot);
+			final long state;
+			if (old == FleetProtocol.EMPTY) {
+				if ((fields & FleetProtocol.VALUES) != FleetProtocol.VALUES)
+					return;
+				state = values;
+			}
+			else
+				state = old & ~bits | values & bits;
+			if (state == old)
+				return;
+			if (agent.states.compareAndSet(slot, old, state)) {
+				if (slot == FleetProtocol.AGGREGATE) {
+					count(old, -1);
+					count(state, 1);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * empties all slots of an agent
+	 * 
+	 * @param agent	the agent
+	 */
+	private void clear(final AgentSlot agent) {
+		for (int slot = 0; slot < FleetProtocol.SLOTS; ++slot)
+			clear(agent, slot);
+	}
+
+	/**
+	 * empties a slot, its state is removed from the aggregates
+	 * 
+	 * @param agent	the agent
+	 * @param slot	the slot of the device
+	 */
+	private void clear(final AgentSlot agent, final int slot) {
+		while (true) {
+			final long old = agent.states.get(slot);
+			if (old == FleetProtocol.EMPTY)
+				return;
+			if (agent.states.compareAndSet(slot, old, FleetProtocol.EMPTY)) {
+				if (slot == FleetProtocol.AGGREGATE)
+					count(old, -1);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * adds a combined battery state to the aggregates or removes it
+	 * 
+	 * @param packed	the packed state, EMPTY is ignored
+	 * @param sign		1 to add, -1 to remove
+	 */
+	private void count(final long packed, final int sign) {
+		if (packed == FleetProtocol.EMPTY)
+			return;
+		final int percent = FleetProtocol.percent(packed);
+		reporting.add(sign);
+		levelSum.add(sign * percent);
+		if (!FleetProtocol.discharging(packed))
+			return;
+		if (percent <= BatteryAggregate.EARLY_WARNING)
+			early.add(sign);
+		if (percent <= BatteryAggregate.URGENT_WARNING)
+			urgent.add(sign);
+		final int time = FleetProtocol.time(packed);
+		if (time >= 0) {
+			timeSum.add(sign * (long) time);
+			timeCount.add(sign);
+		}
+	}
+
+	/**
+	 * removes the agents, which have not reported within the expiry time
+	 */
+	private void expire() {
+		final long oldest = System.currentTimeMillis() - expiry;
+		for (AgentSlot agent : agents.values()) {
+			if (agent.lastSeen < oldest) {
+				agent.expired = true;
+				agents.remove(Long.valueOf(agent.agent), agent);
+				clear(agent);
+			}
+		}
+	}
+
+	/**
+	 * @return	the number of known agents
+	 */
+	public int getAgents() {
+		return agents.size();
+	}
+
+	/**
+	 * @return	the number of agents, which have reported batteries
+	 */
+	public long getReporting() {
+		return reporting.sum();
+	}
+
+	/**
+	 * @return	the number of discharging agents at or below EARLY_WARNING
+	 */
+	public long getBelowEarlyWarning() {
+		return early.sum();
+	}
+
+	/**
+	 * @return	the number of discharging agents at or below URGENT_WARNING
+	 */
+	public long getBelowUrgentWarning() {
+		return urgent.sum();
+	}
+
+	/**
+	 * @return	the average load of the agents in percent, 0 if no agent 
+	 * has reported batteries
+	 */
+	public double getAverageLevel() {
+		final long count = reporting.sum();
+		return count <= 0 ? 0 : (double) levelSum.sum() / count;
+	}
+
+	/**
+	 * @return	the average time to empty of the discharging agents in 
+	 * seconds, -1 if no agent is discharging
+	 */
+	public long getAverageTimeToEmpty() {
+		final long count = timeCount.sum();
+		return count <= 0 ? -1 : timeSum.sum() / count;
+	}
+
+	/**
+	 * @return	the number of applied frames
+	 */
+	public long getFrames() {
+		return frames.sum();
+	}
+
+	/**
+	 * @return	the number of frames, which arrived after a newer frame
+	 */
+	public long getStale() {
+		return stale.sum();
+	}
+
+	/**
+	 * @return	the number of frames, which could not be decoded
+	 */
+	public long getInvalid() {
+		return invalid.sum();
+	}
+
+	/**
+	 * @param agent	the id of an agent
+	 * @param slot	the slot of a device
+	 * @return		the packed state of the device, EMPTY if unknown
+	 */
+	long getState(final long agent, final int slot) {
+		final AgentSlot known = agents.get(Long.valueOf(agent));
+		return known == null ? FleetProtocol.EMPTY : known.states.get(slot);
+	}
+
+	/**
+	 * @return	the aggregates as text
+	 */
+	public String format() {
+		final long time = getAverageTimeToEmpty();
+		return String.format("agents %d, reporting %d, at or below %d%%: %d, at or below %d%%: %d, " //$NON-NLS-1$
+				+ "level %.1f%%, time to empty %s, frames %d, stale %d, invalid %d", //$NON-NLS-1$
+				Integer.valueOf(getAgents()), Long.valueOf(getReporting()), 
+				Integer.valueOf(BatteryAggregate.EARLY_WARNING), Long.valueOf(getBelowEarlyWarning()),
+				Integer.valueOf(BatteryAggregate.URGENT_WARNING), Long.valueOf(getBelowUrgentWarning()),
+				Double.valueOf(getAverageLevel()), 
+				time < 0 ? "-" : time / 3600 + ":" + String.format("%02d", Long.valueOf(time / 60 % 60)), //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				Long.valueOf(getFrames()), Long.valueOf(getStale()), Long.valueOf(getInvalid()));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		expirer.shutdownNow();
+		udp.close();
+		tcp.close();
+		// the TCP thread closes the connections
+		selector.wakeup();
+	}
+
+	/**
+	 * The main method starts a collector and prints its aggregates every 
+	 * ten seconds.
+	 * 
+	 * Usage: FleetCollector [[host:]port]
+	 * 
+	 * @param args	the address, by default DEFAULT_PORT on all interfaces
+	 */
+	public static void main(final String[] args) {
+		final InetSocketAddress address;
+		try {
+			address = args.length > 0 
+					? FleetReporter.parse(args[0], null) 
+					: new InetSocketAddress(DEFAULT_PORT);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Usage: FleetCollector [[host:]port]"); //$NON-NLS-1$
+			System.exit(2);
+			return;
+		}
+		try (FleetCollector collector = new FleetCollector(address, DEFAULT_EXPIRY)) {
+			System.out.println("Collecting on port " + collector.getPort()); //$NON-NLS-1$
+			while (true) {
+				Thread.sleep(SUMMARY_INTERVAL);
+				System.out.println(collector.format());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Frame holds a decoded frame, it is reused by the receiving thread
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static final class Frame {
+
+		int flags;
+		long agent;
+		int sequence;
+		int records;
+		final int[] slots = new int[FleetProtocol.SLOTS];
+		final int[] fields = new int[FleetProtocol.SLOTS];
+		final long[] values = new long[FleetProtocol.SLOTS];
+		final String[] names = new String[FleetProtocol.SLOTS];
+
+		Frame() {
+			// reused
+		}
+
+		/**
+		 * decodes a frame, the frame is rejected as a whole, if it is 
+		 * truncated or holds an unknown slot or field
+		 * 
+		 * @param in	the frame, from its position to its limit
+		 * @return		true, if the frame is valid
+		 */
+		boolean read(final ByteBuffer in) {
+			try {
+				if (in.getShort() != FleetProtocol.MAGIC || in.get() != FleetProtocol.VERSION)
+					return false;
+				flags = in.get();
+				agent = in.getLong();
+				sequence = in.getInt();
+				records = in.get() & 0xFF;
+				if (records > FleetProtocol.SLOTS)
+					return false;
+				for (int i = 0; i < records; ++i) {
+					final int slot = in.get() & 0xFF;
+					final int mask = in.get() & 0xFF;
+					if (slot >= FleetProtocol.SLOTS 
+							|| (mask & ~(FleetProtocol.NAME | FleetProtocol.VALUES)) != 0)
+						return false;
+					names[i] = null;
+					if ((mask & FleetProtocol.NAME) != 0) {
+						final byte[] name = new byte[in.get() & 0xFF];
+						in.get(name);
+						names[i] = new String(name, StandardCharsets.UTF_8);
+					}
+					long packed = 0;
+					if ((mask & FleetProtocol.PERCENT) != 0) {
+						final int percent = in.get() & 0xFF;
+						if (percent > 100)
+							return false;
+						packed |= percent;
+					}
+					if ((mask & FleetProtocol.STATE) != 0)
+						packed |= (in.get() & 0xFFL) << 8;
+					if ((mask & FleetProtocol.RATE) != 0)
+						packed |= (in.getShort() & 0xFFFFL) << 16;
+					if ((mask & FleetProtocol.TIME) != 0)
+						packed |= (long) in.getInt() << 32;
+					slots[i] = slot;
+					fields[i] = mask;
+					values[i] = packed;
+				}
+				return !in.hasRemaining();
+			} catch (BufferUnderflowException e) {
+				// truncated
+				return false;
+			} finally {
+				in.position(in.limit());
+			}
+		}
+	}
+}
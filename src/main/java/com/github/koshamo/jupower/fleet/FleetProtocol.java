@@ -0,0 +1,231 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fleet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FleetProtocol defines the frames, the agents send to the collector. A 
+ * frame holds the changes of the device states of one agent since its 
+ * last frame:
+ * <pre>
+ * short	magic 0x4A50
+ * byte		version
+ * byte		flags, KEYFRAME
+ * long		agent
+ * int		sequence
+ * byte		number of records
+ * records:
+ * byte		slot
+ * byte		mask of the following fields
+ * [byte length, UTF-8 name]	NAME
+ * [byte percent]				PERCENT
+ * [byte state]					STATE, CHARGING and ONLINE
+ * [short rate in 10 mW]		RATE
+ * [int time to empty in s]		TIME, -1 if not discharging
+ * </pre>
+ * Slot 0 holds the combined state of all batteries of the agent, the 
+ * other slots the devices. A keyframe contains all fields of all slots, 
+ * thus it repairs lost frames. Over UDP a frame is one datagram, over TCP
+ * every frame is preceded by its length as short.
+ * 
+ * The state of a device is packed into a long, thus it is compared and 
+ * swapped as a whole.
+ * 
+ * @author jochen
+ *
+ */
+final class FleetProtocol {
+
+	static final short MAGIC = 0x4A50;
+	static final byte VERSION = 1;
+	static final int KEYFRAME = 1;
+
+	static final int AGGREGATE = 0;
+	static final int SLOTS = 16;
+	static final int MAX_NAME = 64;
+	static final int HEADER = 2 + 1 + 1 + 8 + 4 + 1;
+	static final int MAX_FRAME = HEADER + SLOTS * (2 + 1 + MAX_NAME + 1 + 1 + 2 + 4);
+
+	// the fields of a record
+	static final int NAME = 1;
+	static final int PERCENT = 2;
+	static final int STATE = 4;
+	static final int RATE = 8;
+	static final int TIME = 16;
+	static final int VALUES = PERCENT | STATE | RATE | TIME;
+
+	// the state flags
+	static final int CHARGING = 1;
+	static final int ONLINE = 2;
+
+	// a slot without device, never a valid state, as the percent is 255
+	static final long EMPTY = -1L;
+
+	private static final long PERCENT_BITS = 0xFFL;
+	private static final long STATE_BITS = 0xFF00L;
+	private static final long RATE_BITS = 0xFFFF0000L;
+	private static final long TIME_BITS = 0xFFFFFFFF00000000L;
+
+	private FleetProtocol() {
+		// constants and helper methods only
+	}
+
+	/**
+	 * packs the state of a device
+	 * 
+	 * @param percent		the load in percent
+	 * @param state			the state flags CHARGING and ONLINE
+	 * @param energyRate	the charge or discharge rate in W
+	 * @param timeToEmpty	the time to empty in seconds, -1 if unknown
+	 * @return				the packed state
+	 */
+	static long pack(final int percent, final int state, final double energyRate, 
+			final long timeToEmpty) {
+		final long rate = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, 
+				Math.round(energyRate * 100)));
+		final long time = timeToEmpty < 0 ? -1 : Math.min(Integer.MAX_VALUE, timeToEmpty);
+		return Math.max(0, Math.min(100, percent)) 
+				| (state & 0xFFL) << 8 
+				| (rate & 0xFFFFL) << 16 
+				| time << 32;
+	}
+
+	/**
+	 * @param packed	the packed state
+	 * @return			the load in percent
+	 */
+	static int percent(final long packed) {
+		return (int) (packed & PERCENT_BITS);
+	}
+
+	/**
+	 * @param packed	the packed state
+	 * @return			the state flags
+	 */
+	static int state(final long packed) {
+		return (int) ((packed & STATE_BITS) >>> 8);
+	}
+
+	/**
+	 * @param packed	the packed state
+	 * @return			the charge or discharge rate in W
+	 */
+	static double rate(final long packed) {
+		return (short) (packed >>> 16) / 100.0;
+	}
+
+	/**
+	 * @param packed	the packed state
+	 * @return			the time to empty in seconds, -1 if unknown
+	 */
+	static int time(final long packed) {
+		return (int) (packed >>> 32);
+	}
+
+	/**
+	 * @param packed	the packed state
+	 * @return			true, if the device is discharging, thus neither 
+	 * charging nor supplied
+	 */
+	static boolean discharging(final long packed) {
+		return (state(packed) & (CHARGING | ONLINE)) == 0;
+	}
+
+	/**
+	 * @param fields	the fields of a record
+	 * @return			the bits of the fields in a packed state
+	 */
+	static long bits(final int fields) {
+		return ((fields & PERCENT) != 0 ? PERCENT_BITS : 0)
+				| ((fields & STATE) != 0 ? STATE_BITS : 0)
+				| ((fields & RATE) != 0 ? RATE_BITS : 0)
+				| ((fields & TIME) != 0 ? TIME_BITS : 0);
+	}
+
+	/**
+	 * @param from	the last sent state
+	 * @param to	the current state
+	 * @return		the fields, which differ
+	 */
+	static int changed(final long from, final long to) {
+		if (from == EMPTY)
+			return VALUES;
+		final long diff = from ^ to;
+		return ((diff & PERCENT_BITS) != 0 ? PERCENT : 0)
+				| ((diff & STATE_BITS) != 0 ? STATE : 0)
+				| ((diff & RATE_BITS) != 0 ? RATE : 0)
+				| ((diff & TIME_BITS) != 0 ? TIME : 0);
+	}
+
+	/**
+	 * writes the header of a frame
+	 * 
+	 * @param out		the buffer of the frame
+	 * @param flags		the flags of the frame
+	 * @param agent		the id of the agent
+	 * @param sequence	the number of the frame
+	 * @param records	the number of records
+	 */
+	static void writeHeader(final ByteBuffer out, final int flags, final long agent, 
+			final int sequence, final int records) {
+		out.putShort(MAGIC).put(VERSION).put((byte) flags)
+				.putLong(agent).putInt(sequence).put((byte) records);
+	}
+
+	/**
+	 * writes a record of a frame
+	 * 
+	 * @param out		the buffer of the frame
+	 * @param slot		the slot of the device
+	 * @param fields	the fields to write
+	 * @param name		the name of the device, if NAME is set
+	 * @param packed	the packed state of the device
+	 */
+	static void writeRecord(final ByteBuffer out, final int slot, final int fields, 
+			final String name, final long packed) {
+		out.put((byte) slot).put((byte) fields);
+		if ((fields & NAME) != 0) {
+			final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			final int length = Math.min(bytes.length, MAX_NAME);
+			out.put((byte) length).put(bytes, 0, length);
+		}
+		if ((fields & PERCENT) != 0)
+			out.put((byte) percent(packed));
+		if ((fields & STATE) != 0)
+			out.put((byte) state(packed));
+		if ((fields & RATE) != 0)
+			out.putShort((short) (packed >>> 16));
+		if ((fields & TIME) != 0)
+			out.putInt(time(packed));
+	}
+
+	/**
+	 * creates the id of an agent by the FNV-1a hash of its name
+	 * 
+	 * @param name	the name of the agent, usually the host name
+	 * @return		the id of the agent
+	 */
+	static long agentId(final String name) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+}
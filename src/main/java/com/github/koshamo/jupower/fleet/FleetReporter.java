@@ -0,0 +1,326 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fleet;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.github.koshamo.fiddler.Event;
+import com.github.koshamo.fiddler.EventHandler;
+import com.github.koshamo.fiddler.MessageBus;
+import com.github.koshamo.fiddler.MessageBus.ListenerType;
+import com.github.koshamo.jupower.shared.BatteryAggregate;
+import com.github.koshamo.jupower.shared.BatteryAggregateEvent;
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+import com.github.koshamo.jupower.shared.DeviceSnapshotEvent;
+import com.github.koshamo.jupower.shared.EventKeys;
+import com.github.koshamo.jupower.shared.PowerBoolEvent;
+import com.github.koshamo.jupower.shared.TimeEstimate;
+import com.github.koshamo.jupower.shared.TimeEstimateEvent;
+
+/**
+ * FleetReporter reports the device states of the upower module to a 
+ * FleetCollector. The states are taken from the events on the message 
+ * bus, a thread of this module sends the changes every REPORT_INTERVAL 
+ * and all states every KEYFRAME_INTERVAL reports, which is the heartbeat
+ * of the agent, too. Nothing is sent, while the collector is not 
+ * reachable. The slot of a removed device is freed, the collector 
+ * empties it with the next keyframe.
+ * 
+ * The collector is set with the system property jupower.fleet: 
+ * host:port for UDP or tcp:host:port for TCP. The agent is named by the 
+ * system property jupower.fleet.agent, by default the host name.
+ * 
+ * @author jochen
+ *
+ */
+public class FleetReporter implements EventHandler {
+
+	public static final String PROPERTY = "jupower.fleet"; //$NON-NLS-1$
+	public static final String AGENT_PROPERTY = "jupower.fleet.agent"; //$NON-NLS-1$
+	public static final long REPORT_INTERVAL = 2000;
+	public static final int KEYFRAME_INTERVAL = 15;
+	private static final String TCP = "tcp:"; //$NON-NLS-1$
+	private static final String ALL = "all"; //$NON-NLS-1$
+
+	private final MessageBus messageBus;
+	private final InetSocketAddress collector;
+	private final boolean tcp;
+	private final AgentEncoder encoder;
+	private final ScheduledExecutorService sender;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(2 + FleetProtocol.MAX_FRAME);
+	// the message bus thread only
+	private final Map<String, Integer> slots = new HashMap<>();
+	private BatteryAggregate aggregate;
+	private TimeEstimate estimate;
+	private boolean online;
+	// the sending thread only
+	private WritableByteChannel channel;
+	private int reports;
+	private boolean failed;
+
+	/**
+	 * creates the module, registers it to the message bus and starts 
+	 * reporting
+	 * 
+	 * @param messageBus	the message bus
+	 * @param agent			the name of the agent
+	 * @param collector		the address of the collector
+	 * @param tcp			true to report over TCP, false for UDP
+	 */
+	public FleetReporter(final MessageBus messageBus, final String agent, 
+			final InetSocketAddress collector, final boolean tcp) {
+		this.messageBus = Objects.requireNonNull(messageBus);
+		this.collector = Objects.requireNonNull(collector);
+		this.tcp = tcp;
+		encoder = new AgentEncoder(FleetProtocol.agentId(agent));
+		sender = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "fleet-reporter"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		});
+		sender.scheduleWithFixedDelay(this::report, REPORT_INTERVAL, REPORT_INTERVAL, 
+				TimeUnit.MILLISECONDS);
+		messageBus.registerDataEvents(this, ListenerType.TARGET);
+	}
+
+	/**
+	 * creates the module, if an address is given
+	 * 
+	 * @param messageBus	the message bus
+	 * @param address		host:port or tcp:host:port, usually the value of
+	 * the system property jupower.fleet
+	 * @return				the module, null if no address is given or it
+	 * is not valid
+	 */
+	public static FleetReporter create(final MessageBus messageBus, final String address) {
+		if (address == null || address.isEmpty())
+			return null;
+		final boolean tcp = address.startsWith(TCP);
+		try {
+			return new FleetReporter(messageBus, agentName(), 
+					parse(tcp ? address.substring(TCP.length()) : address, null), tcp);
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * parses an address
+	 * 
+	 * @param address	host:port or port
+	 * @param host		the host, if only a port is given, null for all 
+	 * interfaces
+	 * @return			the socket address
+	 * @throws IllegalArgumentException	if the port is missing or invalid
+	 */
+	static InetSocketAddress parse(final String address, final String host) {
+		final int colon = address.lastIndexOf(':');
+		if (colon < 0)
+			return host == null 
+					? new InetSocketAddress(Integer.parseInt(address)) 
+					: new InetSocketAddress(host, Integer.parseInt(address));
+		return new InetSocketAddress(address.substring(0, colon), 
+				Integer.parseInt(address.substring(colon + 1)));
+	}
+
+	/**
+	 * @return	the name of the agent, the system property or the host name
+	 */
+	private static String agentName() {
+		final String name = System.getProperty(AGENT_PROPERTY);
+		if (name != null && !name.isEmpty())
+			return name;
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			return "localhost"; //$NON-NLS-1$
+		}
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the states are set on the encoder, they are sent by the next report.
+	 * The agent is online, if any line power device is supplying.
+	 * 
+	 * @see com.github.koshamo.fiddler.EventHandler#handle(com.github.koshamo.fiddler.Event)
+	 */
+	@Override
+	public void handle(final Event event) {
+		if (event instanceof DeviceSnapshotEvent)
+			update(((DeviceSnapshotEvent) event).getData());
+		else if (event instanceof BatteryAggregateEvent)
+			aggregate = ((BatteryAggregateEvent) event).getData();
+		else if (event instanceof TimeEstimateEvent)
+			estimate = ((TimeEstimateEvent) event).getData();
+		else if (event instanceof PowerBoolEvent) {
+			final PowerBoolEvent power = (PowerBoolEvent) event;
+			if (power.getKey() == EventKeys.DEVICE_REMOVED) {
+				remove(power.getDevice());
+				return;
+			}
+			if (power.getKey() != EventKeys.AGGREGATE_SUPPLYING)
+				return;
+			online = power.getValue();
+		}
+		else
+			return;
+		updateAggregate();
+	}
+
+	/**
+	 * helper method to set the state of a device, the lowest free slot is
+	 * assigned to a new device, devices beyond the last slot are not 
+	 * reported
+	 * 
+	 * @param snap	the snapshot of the device
+	 */
+	private void update(final DeviceSnapshot snap) {
+		Integer slot = slots.get(snap.getDevice());
+		if (slot == null) {
+			slot = freeSlot();
+			if (slot == null)
+				return;
+			slots.put(snap.getDevice(), slot);
+		}
+		encoder.set(slot.intValue(), snap.getDevice(), FleetProtocol.pack(
+				snap.getPercentage(), 
+				(snap.isCharging() ? FleetProtocol.CHARGING : 0) 
+						| (snap.isOnline() ? FleetProtocol.ONLINE : 0), 
+				snap.getEnergyRate(), 
+				snap.isDischarging() ? snap.getTimeToEmpty() : -1));
+	}
+
+	/**
+	 * @return	the lowest slot, which is not assigned to a device, null if
+	 * all slots are assigned
+	 */
+	private Integer freeSlot() {
+		for (int slot = FleetProtocol.AGGREGATE + 1; slot < FleetProtocol.SLOTS; ++slot) {
+			final Integer free = Integer.valueOf(slot);
+			if (!slots.containsValue(free))
+				return free;
+		}
+		return null;
+	}
+
+	/**
+	 * helper method to free the slot of a removed device
+	 * 
+	 * @param device	the removed device
+	 */
+	private void remove(final String device) {
+		final Integer slot = slots.remove(device);
+		if (slot != null)
+			encoder.remove(slot.intValue());
+	}
+
+	/**
+	 * helper method to set the combined state of the batteries, the time 
+	 * to empty is taken from the time estimate, if any
+	 */
+	private void updateAggregate() {
+		final BatteryAggregate batteries = aggregate;
+		if (batteries == null)
+			return;
+		final long time;
+		if (batteries.isCharging() || online)
+			time = -1;
+		else if (estimate != null && !estimate.isCharging())
+			time = estimate.getSeconds();
+		else
+			time = batteries.getTimeToEmpty();
+		encoder.set(FleetProtocol.AGGREGATE, ALL, FleetProtocol.pack(
+				batteries.getPercentage(), 
+				(batteries.isCharging() ? FleetProtocol.CHARGING : 0) 
+						| (online ? FleetProtocol.ONLINE : 0), 
+				batteries.getEnergyRate(), time));
+	}
+
+	/**
+	 * sends the changes or, every KEYFRAME_INTERVAL reports or after a 
+	 * failure, a keyframe
+	 */
+	private void report() {
+		final boolean keyframe = failed || reports++ % KEYFRAME_INTERVAL == 0;
+		buffer.clear();
+		if (tcp)
+			buffer.position(2);
+		if (!encoder.encode(buffer, keyframe))
+			return;
+		buffer.flip();
+		if (tcp)
+			buffer.putShort(0, (short) (buffer.remaining() - 2));
+		try {
+			if (channel == null)
+				channel = tcp 
+						? SocketChannel.open(collector) 
+						: DatagramChannel.open().connect(collector);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			failed = false;
+		} catch (IOException e) {
+			// reported once, until the collector is reachable again
+			if (!failed)
+				e.printStackTrace();
+			failed = true;
+			close();
+		}
+	}
+
+	/**
+	 * helper method to close the channel, it is opened again by the next
+	 * report
+	 */
+	private void close() {
+		if (channel == null)
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+		channel = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.fiddler.EventHandler#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		messageBus.unregisterDataEvents(this);
+		sender.shutdown();
+		try {
+			sender.awaitTermination(REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		close();
+	}
+}
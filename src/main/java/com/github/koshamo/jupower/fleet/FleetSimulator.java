@@ -0,0 +1,312 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fleet;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.koshamo.jupower.shared.BatteryAggregate;
+
+/**
+ * FleetSimulator load tests a FleetCollector on localhost with many 
+ * simulated agents. Every agent has a battery, which is discharged and 
+ * charged at random, and a line power device. A few sender threads share
+ * the agents, every sender reports its agents at the given interval over 
+ * one UDP or TCP channel.
+ * 
+ * At the end, the collector takes the waiting frames, then every agent 
+ * sends a keyframe and the aggregates of the collector are compared with
+ * the states of the agents.
+ * 
+ * Usage: FleetSimulator [agents] [seconds] [interval in ms] [tcp]
+ * 
+ * @author jochen
+ *
+ */
+public class FleetSimulator {
+
+	private static final int SENDERS = 4;
+	private static final long SETTLE = 2000;
+	private static final String BATTERY = "battery_BAT0"; //$NON-NLS-1$
+	private static final String LINE_POWER = "line_power_AC"; //$NON-NLS-1$
+	private static final String ALL = "all"; //$NON-NLS-1$
+
+	private final InetSocketAddress collector;
+	private final boolean tcp;
+	private final long interval;
+	private final AtomicLong sent = new AtomicLong();
+	private volatile boolean running = true;
+
+	/**
+	 * @param collector	the address of the collector
+	 * @param tcp		true to report over TCP, false for UDP
+	 * @param interval	the report interval of every agent in milliseconds
+	 */
+	FleetSimulator(final InetSocketAddress collector, final boolean tcp, final long interval) {
+		this.collector = collector;
+		this.tcp = tcp;
+		this.interval = interval;
+	}
+
+	/**
+	 * The main method starts a collector and the simulated agents and 
+	 * prints the results.
+	 * 
+	 * @param args	see the class description
+	 * @throws Exception	if the collector or a sender fails
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int agents = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		final long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+		final long interval = args.length > 2 ? Long.parseLong(args[2]) : 100;
+		final boolean tcp = args.length > 3 && "tcp".equals(args[3]); //$NON-NLS-1$
+
+		try (FleetCollector collector = new FleetCollector(
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 
+				FleetCollector.DEFAULT_EXPIRY)) {
+			final FleetSimulator simulator = new FleetSimulator(new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), collector.getPort()), tcp, interval);
+			final List<SimulatedAgent> all = new ArrayList<>();
+			final List<Thread> senders = new ArrayList<>();
+			for (int s = 0; s < SENDERS; ++s) {
+				final List<SimulatedAgent> own = new ArrayList<>();
+				for (int i = s; i < agents; i += SENDERS)
+					own.add(new SimulatedAgent("agent-" + i, new SplittableRandom(i))); //$NON-NLS-1$
+				all.addAll(own);
+				final Thread sender = new Thread(() -> simulator.send(own), "fleet-sender-" + s); //$NON-NLS-1$
+				senders.add(sender);
+				sender.start();
+			}
+			final long start = System.nanoTime();
+			for (long i = 0; i < seconds; ++i) {
+				Thread.sleep(1000);
+				System.out.println(collector.format());
+			}
+			simulator.running = false;
+			for (Thread sender : senders)
+				sender.join();
+			final double elapsed = (System.nanoTime() - start) / 1e9;
+			Thread.sleep(SETTLE);
+			simulator.flush(all);
+			Thread.sleep(SETTLE);
+
+			final long received = collector.getFrames() + collector.getStale() + collector.getInvalid();
+			System.out.println(collector.format());
+			System.out.println(String.format("%d agents over %s: sent %d frames, %.0f/s, received %d, lost %d", //$NON-NLS-1$
+					Integer.valueOf(agents), tcp ? "TCP" : "UDP", Long.valueOf(simulator.sent.get()), //$NON-NLS-1$ //$NON-NLS-2$
+					Double.valueOf(simulator.sent.get() / elapsed), Long.valueOf(received), 
+					Long.valueOf(simulator.sent.get() - received)));
+			System.out.println(verify(collector, all));
+		}
+	}
+
+	/**
+	 * reports the agents of a sender until the simulation ends
+	 * 
+	 * @param agents	the agents of the sender
+	 */
+	private void send(final List<SimulatedAgent> agents) {
+		try (Sender sender = new Sender()) {
+			long next = System.nanoTime();
+			int reports = 0;
+			while (running) {
+				final boolean keyframe = reports++ % FleetReporter.KEYFRAME_INTERVAL == 0;
+				for (SimulatedAgent agent : agents) {
+					agent.step();
+					sender.send(agent, keyframe);
+				}
+				next += TimeUnit.MILLISECONDS.toNanos(interval);
+				final long wait = next - System.nanoTime();
+				if (wait > 0)
+					TimeUnit.NANOSECONDS.sleep(wait);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * sends a keyframe of every agent, after the collector has taken the 
+	 * waiting frames
+	 * 
+	 * @param agents	all agents
+	 * @throws IOException	if a frame can not be sent
+	 */
+	private void flush(final List<SimulatedAgent> agents) throws IOException {
+		try (Sender sender = new Sender()) {
+			for (SimulatedAgent agent : agents)
+				sender.send(agent, true);
+		}
+	}
+
+	/**
+	 * compares the collector with the states of the agents
+	 * 
+	 * @param collector	the collector
+	 * @param agents	the agents
+	 * @return			the result as text
+	 */
+	private static String verify(final FleetCollector collector, final List<SimulatedAgent> agents) {
+		long early = 0;
+		long urgent = 0;
+		long timeSum = 0;
+		long timeCount = 0;
+		int differing = 0;
+		for (SimulatedAgent agent : agents) {
+			final long packed = agent.encoder.get(FleetProtocol.AGGREGATE);
+			if (collector.getState(agent.encoder.getAgent(), FleetProtocol.AGGREGATE) != packed)
+				++differing;
+			if (!FleetProtocol.discharging(packed))
+				continue;
+			final int percent = FleetProtocol.percent(packed);
+			if (percent <= BatteryAggregate.EARLY_WARNING)
+				++early;
+			if (percent <= BatteryAggregate.URGENT_WARNING)
+				++urgent;
+			timeSum += FleetProtocol.time(packed);
+			++timeCount;
+		}
+		final long time = timeCount == 0 ? -1 : timeSum / timeCount;
+		final boolean match = differing == 0 
+				&& early == collector.getBelowEarlyWarning() 
+				&& urgent == collector.getBelowUrgentWarning() 
+				&& time == collector.getAverageTimeToEmpty();
+		return String.format("expected at or below %d%%: %d, at or below %d%%: %d, time to empty %d s; " //$NON-NLS-1$
+				+ "collector %d, %d, %d s; agents differing %d: %s", //$NON-NLS-1$
+				Integer.valueOf(BatteryAggregate.EARLY_WARNING), Long.valueOf(early), 
+				Integer.valueOf(BatteryAggregate.URGENT_WARNING), Long.valueOf(urgent), Long.valueOf(time), 
+				Long.valueOf(collector.getBelowEarlyWarning()), Long.valueOf(collector.getBelowUrgentWarning()), 
+				Long.valueOf(collector.getAverageTimeToEmpty()), Integer.valueOf(differing), 
+				match ? "MATCH" : "MISMATCH"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Sender sends frames over one UDP or TCP channel
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private final class Sender implements AutoCloseable {
+
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(2 + FleetProtocol.MAX_FRAME);
+		private final DatagramChannel udp;
+		private final SocketChannel stream;
+
+		Sender() throws IOException {
+			udp = tcp ? null : DatagramChannel.open();
+			stream = tcp ? SocketChannel.open(collector) : null;
+		}
+
+		/**
+		 * encodes and sends the frame of an agent, if anything has changed
+		 * 
+		 * @param agent		the agent
+		 * @param keyframe	true to send all states
+		 * @throws IOException	if the frame can not be sent
+		 */
+		void send(final SimulatedAgent agent, final boolean keyframe) throws IOException {
+			buffer.clear();
+			if (tcp)
+				buffer.position(2);
+			if (!agent.encoder.encode(buffer, keyframe))
+				return;
+			buffer.flip();
+			if (tcp) {
+				buffer.putShort(0, (short) (buffer.remaining() - 2));
+				while (buffer.hasRemaining())
+					stream.write(buffer);
+			}
+			else
+				udp.send(buffer, collector);
+			sent.incrementAndGet();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.AutoCloseable#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			if (udp != null)
+				udp.close();
+			if (stream != null)
+				stream.close();
+		}
+	}
+
+	/**
+	 * SimulatedAgent is an agent with one battery of 50 Wh, which is 
+	 * discharged at 5 to 15 W and charged at 20 W
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static final class SimulatedAgent {
+
+		private static final double CAPACITY = 50;
+
+		final AgentEncoder encoder;
+		private final SplittableRandom random;
+		private double energy;
+		private double rate;
+		private boolean charging;
+
+		SimulatedAgent(final String name, final SplittableRandom random) {
+			this.encoder = new AgentEncoder(FleetProtocol.agentId(name));
+			this.random = random;
+			energy = random.nextDouble() * CAPACITY;
+			rate = -5 - random.nextDouble() * 10;
+			charging = random.nextInt(4) == 0;
+			update();
+		}
+
+		/**
+		 * advances the battery by one report
+		 */
+		void step() {
+			if (random.nextInt(50) == 0)
+				charging = !charging;
+			rate = charging ? 20 : Math.max(-15, Math.min(-5, rate + random.nextDouble() - 0.5));
+			energy = Math.max(0, Math.min(CAPACITY, energy + rate / 360));
+			update();
+		}
+
+		/**
+		 * helper method to set the states on the encoder
+		 */
+		private void update() {
+			final int percent = (int) Math.round(energy / CAPACITY * 100);
+			final long time = charging ? -1 : (long) (energy / -rate * 3600);
+			final int state = charging ? FleetProtocol.CHARGING | FleetProtocol.ONLINE : 0;
+			encoder.set(FleetProtocol.AGGREGATE, ALL, 
+					FleetProtocol.pack(percent, state, rate, time));
+			encoder.set(1, BATTERY, FleetProtocol.pack(percent, 
+					charging ? FleetProtocol.CHARGING : 0, rate, time));
+			encoder.set(2, LINE_POWER, FleetProtocol.pack(0, 
+					charging ? FleetProtocol.ONLINE : 0, 0, -1));
+		}
+	}
+}
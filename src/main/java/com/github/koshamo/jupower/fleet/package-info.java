@@ -0,0 +1,26 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * the fleet package reports the power state of many JuPower agents to a
+ * collector, which keeps the aggregates of the whole fleet. The agents 
+ * send binary deltas of their device states over UDP or TCP, see 
+ * FleetProtocol. FleetSimulator load tests a collector with simulated
+ * agents on localhost.
+ * 
+ * @author jochen
+ *
+ */
+package com.github.koshamo.jupower.fleet;
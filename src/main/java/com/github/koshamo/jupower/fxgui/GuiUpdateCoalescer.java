@@ -0,0 +1,129 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fxgui;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+
+/**
+ * GuiUpdateCoalescer merges the power state changes of the message bus
+ * into one pending state. The first change after a drain schedules one
+ * drain on the GUI thread, all following changes up to the drain are
+ * merged into the pending state. Thus a burst of events queues one
+ * runnable and leads to one update of the GUI with the latest state.
+ * 
+ * The state is packed into a long: the load in the lower 32 bits and the
+ * supplying and charging flags above, thus merging is one compare and set.
+ * 
+ * The lag from scheduling a drain to running it, i.e. the queue lag of 
+ * the GUI executor, is recorded in JuPowerMetrics.
+ * 
+ * @author jochen
+ *
+ */
+final class GuiUpdateCoalescer {
+
+	private static final long LOAD_MASK = 0xFFFFFFFFL;
+	private static final long SUPPLYING = 1L << 32;
+	private static final long CHARGING = 1L << 33;
+
+	private final Executor guiExecutor;
+	private final Target target;
+	private final AtomicLong pending = new AtomicLong();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private volatile long scheduledAt;
+
+	/**
+	 * The Target applies the merged state on the GUI thread
+	 * 
+	 * @author jochen
+	 *
+	 */
+	@FunctionalInterface
+	interface Target {
+		/**
+		 * @param load		the current battery load in percent
+		 * @param supplying	is the battery on line
+		 * @param charging	is the battery charging
+		 */
+		void apply(int load, boolean supplying, boolean charging);
+	}
+
+	/**
+	 * @param guiExecutor	the executor of the GUI thread, e.g.
+	 * Platform::runLater
+	 * @param target		the target, which applies the merged state
+	 */
+	GuiUpdateCoalescer(final Executor guiExecutor, final Target target) {
+		this.guiExecutor = guiExecutor;
+		this.target = target;
+	}
+
+	/**
+	 * @param load	the new battery load in percent
+	 */
+	void setLoad(final int load) {
+		merge(LOAD_MASK, load & LOAD_MASK);
+	}
+
+	/**
+	 * @param supplying	the new supplying / on-line status
+	 */
+	void setSupplying(final boolean supplying) {
+		merge(SUPPLYING, supplying ? SUPPLYING : 0);
+	}
+
+	/**
+	 * @param charging	the new charging status
+	 */
+	void setCharging(final boolean charging) {
+		merge(CHARGING, charging ? CHARGING : 0);
+	}
+
+	/**
+	 * helper method to replace the bits of the mask in the pending state
+	 * and to schedule a drain, if none is scheduled yet
+	 * 
+	 * @param mask	the bits to replace
+	 * @param bits	the new bits
+	 */
+	private void merge(final long mask, final long bits) {
+		long current;
+		do {
+			current = pending.get();
+		} while (!pending.compareAndSet(current, (current & ~mask) | bits));
+		if (scheduled.compareAndSet(false, true)) {
+			scheduledAt = System.nanoTime();
+			guiExecutor.execute(this::drain);
+		}
+	}
+
+	/**
+	 * applies the pending state, runs on the GUI thread. The flag is cleared
+	 * before the state is read, thus a change during the drain schedules
+	 * another drain and is not lost.
+	 */
+	private void drain() {
+		JuPowerMetrics.RUN_LATER_LAG.recordSince(scheduledAt);
+		scheduled.set(false);
+		final long state = pending.get();
+		target.apply((int) (state & LOAD_MASK), (state & SUPPLYING) != 0, 
+				(state & CHARGING) != 0);
+	}
+}
@@ -15,12 +15,18 @@
  */
 package com.github.koshamo.jupower.fxgui;
 
+import javax.swing.SwingUtilities;
+
 import com.github.koshamo.fiddler.Event;
+import com.github.koshamo.fiddler.ExitEvent;
 import com.github.koshamo.fiddler.MessageBus.ListenerType;
 import com.github.koshamo.fiddler.jfx.FiddlerFxApp;
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+import com.github.koshamo.jupower.shared.BatteryAggregate;
 import com.github.koshamo.jupower.shared.EventKeys;
-import com.github.koshamo.jupower.shared.StrBoolDataEvent;
-import com.github.koshamo.jupower.shared.StrIntDataEvent;
+import com.github.koshamo.jupower.shared.PowerBoolEvent;
+import com.github.koshamo.jupower.shared.PowerStateDispatcher;
+import com.github.koshamo.jupower.shared.StartupMetrics;
 
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
@@ -54,10 +60,13 @@ public class JuPowerGui extends FiddlerFxApp {
 	IntegerProperty onBatteryLoad;
 	BooleanProperty onSupplying;
 	BooleanProperty onCharging;
+	private GuiUpdateCoalescer updates;
+	private final PowerStateDispatcher dispatcher = new PowerStateDispatcher();
+	private boolean received;
+	private boolean iconShown;
 	
-	private final int STARTUP_TRIES = 5;
-	private final int EARLY_WARNING = 20;
-	private final int URGENT_WARNING = 7;
+	private final int EARLY_WARNING = BatteryAggregate.EARLY_WARNING;
+	private final int URGENT_WARNING = BatteryAggregate.URGENT_WARNING;
 	
 
 	/* (non-Javadoc)
@@ -67,10 +76,13 @@ public class JuPowerGui extends FiddlerFxApp {
 	 */
 	@Override
 	public void start(Stage primaryStage) throws Exception {
-		
-		javax.swing.SwingUtilities.invokeLater(
-				() -> { systemTray = new SystemTrayIntegration(primaryStage, this, getMessageBus()); 
-				});
+		StartupMetrics.record(StartupMetrics.Step.TOOLKIT_READY);
+		// the tray is created on the AWT thread, when the AWT toolkit is
+		// ready, the JavaFX thread is never blocked
+		SystemTrayIntegration.prepare()
+				.thenApplyAsync(tray -> new SystemTrayIntegration(
+						primaryStage, this, getMessageBus(), tray), SwingUtilities::invokeLater)
+				.whenCompleteAsync(this::trayReady, Platform::runLater);
 		
 		HBox hbox = new HBox();
 		hbox.getChildren().addAll(buildMainPane());
@@ -81,42 +93,65 @@ public class JuPowerGui extends FiddlerFxApp {
 		// prevent application to be closed, when last window is closed
 		Platform.setImplicitExit(false);
 		
-		setTrayIcon();
 		createProperties();
 		getMessageBus().registerAllEvents(this, ListenerType.TARGET);
+		// the first values may have been posted, before the GUI listened
+		JuPowerMetrics.EVENTS.record(EventKeys.STATE_REQUEST);
+		getMessageBus().postEvent(new PowerBoolEvent(
+				this, null, EventKeys.STATE_REQUEST, null, true));
+		// the upower module polls more often, while the window is visible
+		primaryStage.showingProperty().addListener(new ChangeListener<Boolean>() {
+			@Override
+			public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
+				JuPowerMetrics.EVENTS.record(EventKeys.GUI_VISIBLE);
+				getMessageBus().postEvent(new PowerBoolEvent(
+						JuPowerGui.this, null, EventKeys.GUI_VISIBLE, null, newValue.booleanValue()));
+			}
+		});
 	}
 
 	
 	/**
+	 * prepares the system tray, thus the AWT toolkit is initialized in 
+	 * parallel to the JavaFX toolkit. To be called before the JavaFX 
+	 * application is launched.
+	 */
+	public static void prepareTray() {
+		SystemTrayIntegration.prepare();
+	}
+	
+	/**
+	 * called on the JavaFX thread, when the tray icon has been created or
+	 * the system tray is not supported, thus the application is shut down
 	 * 
+	 * @param tray	the tray integration, null on failure
+	 * @param error	the failure, null on success
 	 */
-	private void setTrayIcon() {
-		int count = 0;
-		while (count < STARTUP_TRIES) {
-			if (systemTray == null) {
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			} else
-				break;
-			++count;
-		}
-		count = 0;
-		while (count < STARTUP_TRIES) {
-			if (!systemTray.initTrayIcon()) {
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			} else
-				break;
-			++count;
+	private void trayReady(final SystemTrayIntegration tray, final Throwable error) {
+		if (error != null) {
+			System.out.println(error.getCause() != null 
+					? error.getCause().getMessage() : error.getMessage());
+			getMessageBus().postEvent(new ExitEvent(this, null));
+			return;
 		}
+		systemTray = tray;
+		StartupMetrics.record(StartupMetrics.Step.TRAY_READY);
+		showIcon();
+	}
+	
+	/**
+	 * updates the tray icon with the current properties, as soon as both,
+	 * the tray icon and the first power state, are available. The time to
+	 * the first correct icon is recorded.
+	 */
+	private void showIcon() {
+		if (systemTray == null || !received)
+			return;
+		systemTray.updateIcon(onBatteryLoad.get(), onSupplying.get(), onCharging.get());
+		if (iconShown)
+			return;
+		iconShown = true;
+		StartupMetrics.record(StartupMetrics.Step.FIRST_ICON);
 	}
 
 
@@ -141,36 +176,47 @@ public class JuPowerGui extends FiddlerFxApp {
 		onCharging = new SimpleBooleanProperty(false);
 		BatteryWarningPopupWindow bwpw = new BatteryWarningPopupWindow();
 
+		updates = new GuiUpdateCoalescer(Platform::runLater, this::applyPowerState);
+		// the tray and the warnings show all batteries and all line power 
+		// devices combined
+		dispatcher.onInt(EventKeys.AGGREGATE_BATTERY, (device, load) -> updates.setLoad(load));
+		dispatcher.onBool(EventKeys.AGGREGATE_CHARGING, (device, charging) -> updates.setCharging(charging));
+		dispatcher.onBool(EventKeys.AGGREGATE_SUPPLYING, (device, supplying) -> updates.setSupplying(supplying));
+
 		onBatteryLoad.addListener(new ChangeListener<Number>() {
 			@Override
 			public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-				systemTray.updateIcon(newValue.intValue(), onSupplying.get(), onCharging.get());
-				// battery load falling beneath EARLY_WARNING
-				if (newValue.intValue() == EARLY_WARNING && 
-						oldValue.intValue() == EARLY_WARNING + 1)
-					if (!bwpw.isShowing())
-						bwpw.show(onBatteryLoad.get(), BatteryWarningPopupWindow.WarningType.EARLY);
-				// battery load falling beneath URGENT_WARNING
-				if (newValue.intValue() == URGENT_WARNING && 
-						oldValue.intValue() == URGENT_WARNING + 1)
+				// updates are coalesced, thus the load may skip a value:
+				// warn, when the load falls to or beneath the limit
+				if (newValue.intValue() <= URGENT_WARNING && 
+						oldValue.intValue() > URGENT_WARNING) {
 					if (!bwpw.isShowing())
 						bwpw.show(onBatteryLoad.get(), BatteryWarningPopupWindow.WarningType.URGENT);
+				}
+				else if (newValue.intValue() <= EARLY_WARNING && 
+						oldValue.intValue() > EARLY_WARNING)
+					if (!bwpw.isShowing())
+						bwpw.show(onBatteryLoad.get(), BatteryWarningPopupWindow.WarningType.EARLY);
 			}
 		});
-		
-		onSupplying.addListener(new ChangeListener<Boolean>() {
-			@Override
-			public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
-				systemTray.updateIcon(onBatteryLoad.get(), newValue.booleanValue(), onCharging.get());
-			}
-		});
-
-		onCharging.addListener(new ChangeListener<Boolean>() {
-			@Override
-			public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
-				systemTray.updateIcon(onBatteryLoad.get(), onSupplying.get(), newValue.booleanValue());
-			}
-		});
+	}
+	
+	/**
+	 * applies the merged power state of the coalescer on the JavaFX thread:
+	 * the properties are set and the tray icon is updated once, if it has
+	 * been created already
+	 * 
+	 * @param load		the current battery load in percent
+	 * @param supplying	is the battery on line
+	 * @param charging	is the battery charging
+	 */
+	private void applyPowerState(final int load, final boolean supplying, 
+			final boolean charging) {
+		onSupplying.set(supplying);
+		onCharging.set(charging);
+		onBatteryLoad.set(load);
+		received = true;
+		showIcon();
 	}
 	
 	
@@ -196,18 +242,7 @@ public class JuPowerGui extends FiddlerFxApp {
 	 */
 	@Override
 	public void handle(Event event) {
-		if (event instanceof StrBoolDataEvent) {
-			StrBoolDataEvent de = (StrBoolDataEvent) event;
-			if (de.getMetaInformation().equals(EventKeys.SUPPLYING.getKey()))
-				Platform.runLater(()-> onSupplying.set(de.getData().booleanValue()));
-			if (de.getMetaInformation().equals(EventKeys.CHARGING.getKey()))
-				Platform.runLater(()-> onCharging.set(de.getData().booleanValue()));
-		}
-		if (event instanceof StrIntDataEvent) {
-			StrIntDataEvent de = (StrIntDataEvent) event;
-			if (de.getMetaInformation().equals(EventKeys.BATTERY.getKey()))
-				Platform.runLater(()-> onBatteryLoad.set(de.getData().intValue()));
-		}
+		dispatcher.dispatch(event);
 	}
 
 
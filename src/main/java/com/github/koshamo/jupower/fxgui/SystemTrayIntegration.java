@@ -16,21 +16,22 @@
 package com.github.koshamo.jupower.fxgui;
 
 import java.awt.AWTException;
-import java.awt.Color;
-import java.awt.Graphics;
+import java.awt.Dimension;
 import java.awt.GraphicsEnvironment;
-import java.awt.Image;
 import java.awt.MenuItem;
 import java.awt.PopupMenu;
 import java.awt.SystemTray;
 import java.awt.Toolkit;
 import java.awt.TrayIcon;
-import java.awt.image.BufferedImage;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import javax.swing.SwingUtilities;
 
 import com.github.koshamo.fiddler.EventHandler;
 import com.github.koshamo.fiddler.ExitEvent;
 import com.github.koshamo.fiddler.MessageBus;
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
 
 import javafx.application.Platform;
 
@@ -45,24 +46,22 @@ import javafx.application.Platform;
  */
 public class SystemTrayIntegration {
 
+	private static CompletableFuture<SystemTray> prepared;
+
 	private final javafx.stage.Stage stage;
-	private SystemTray systemTray;
-	private TrayIcon trayIcon;
+	private final SystemTray systemTray;
+	private final TrayIcon trayIcon;
 	private final EventHandler eventSource;
 	private final MessageBus messageBus;
-	private final int WIDTH = 32;
-	private final int HEIGHT = 32;
-	private final int YELLOW_UPPER_BOUND = 74;
-	private final int RED_UPPER_BOUND = 24;
-	private final int LOAD_LOW = 5;
-	private final int LOAD_MEDIUM_LOW = 24;
-	private final int LOAD_MEDIUM_HIGH = 49;
-	private final int LOAD_FULL = 79;
-	private final int LOAD_COMPLETE = 97;
+	private final TrayIconPainter painter = new TrayIconPainter();
+	private final TrayIconCache icons;
+	private int shownState = -1;
+	private String shownTooltip;
 	
 	/**
-	 * The constructor checks, if system tray is supported and creates the 
-	 * system tray icon.
+	 * The constructor creates the system tray icon and adds it to the 
+	 * system tray, thus it has to be called on the AWT event dispatching
+	 * thread, when prepare() has completed.
 	 * 
 	 * As this class can show / hide the application window, the stage object
 	 * for the application must be provided.
@@ -78,38 +77,54 @@ public class SystemTrayIntegration {
 	 * application window to show / hide
 	 * @param eventSource	the message module, where this class belongs to
 	 * @param messageBus	the message bus to send signals
+	 * @param systemTray	the system tray, prepare() has completed with
 	 */
 	public SystemTrayIntegration (final javafx.stage.Stage stage, 
-			final EventHandler eventSource, final MessageBus messageBus) {
+			final EventHandler eventSource, final MessageBus messageBus,
+			final SystemTray systemTray) {
 		this.stage = Objects.requireNonNull(stage);
 		this.eventSource = Objects.requireNonNull(eventSource);
 		this.messageBus = Objects.requireNonNull(messageBus);
-
-		// initialize AWT toolkit
-		Toolkit.getDefaultToolkit();
-		
-		if (!SystemTray.isSupported()) {
-//			throw new UnsupportedLookAndFeelException("System Tray is not supported on this system!");
-			System.out.println("System Tray is not supported on this system!");
-			messageBus.postEvent(new ExitEvent(eventSource, null));
-		}
-		GraphicsEnvironment
-				.getLocalGraphicsEnvironment()
-				.getDefaultScreenDevice()
-				.getDefaultConfiguration();
-		
+		this.systemTray = Objects.requireNonNull(systemTray);
+		// draw the images in the size of the tray, thus they are not scaled
+		final Dimension size = systemTray.getTrayIconSize();
+		icons = new TrayIconCache(painter, 
+				Math.max(TrayIconPainter.SIZE, Math.max(size.width, size.height)));
+		trayIcon = new TrayIcon(icons.get(0, false));
+		trayIcon.setImageAutoSize(false);
+		addAppToTray();
 	}
 
 	/**
+	 * initializes the AWT toolkit and the system tray on the AWT event 
+	 * dispatching thread. The first call starts the initialization, thus 
+	 * it can run in parallel to the JavaFX toolkit, all calls return the 
+	 * same future.
 	 * 
+	 * @return	a future, which completes with the system tray, or 
+	 * exceptionally, if the system tray is not supported
 	 */
-	public boolean initTrayIcon() {
-		systemTray = SystemTray.getSystemTray();
-		if (systemTray == null) 
-			return false;
-		trayIcon = new TrayIcon(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB));
-		addAppToTray();
-		return true;
+	public static synchronized CompletableFuture<SystemTray> prepare() {
+		if (prepared == null) {
+			prepared = new CompletableFuture<>();
+			SwingUtilities.invokeLater(() -> {
+				try {
+					// initialize AWT toolkit
+					Toolkit.getDefaultToolkit();
+					if (!SystemTray.isSupported())
+						throw new UnsupportedOperationException(
+								"System Tray is not supported on this system!");
+					GraphicsEnvironment
+							.getLocalGraphicsEnvironment()
+							.getDefaultScreenDevice()
+							.getDefaultConfiguration();
+					prepared.complete(SystemTray.getSystemTray());
+				} catch (RuntimeException | Error e) {
+					prepared.completeExceptionally(e);
+				}
+			});
+		}
+		return prepared;
 	}
 	
 	/**
@@ -172,16 +187,15 @@ public class SystemTrayIntegration {
 			// TODO: seriously handle capacity check
 			System.out.println("Capacity error");
 		}
-		// create image, fill background black
-		Image offscrnImage = trayIcon.getImage();
-		Graphics graphics = offscrnImage.getGraphics();
-		drawIcon32x32(graphics, load, supplying);
-	
-		Toolkit.getDefaultToolkit().sync();
-		
-		// need this line of code to secure update method is called
-		// and image is redrawn immediately
-		trayIcon.setImageAutoSize(false);
+		JuPowerMetrics.ICON_UPDATES.increment();
+		// the images are cached per state, thus the image is swapped only,
+		// if the state changes
+		final int state = painter.state(load, supplying);
+		if (state != shownState) {
+			JuPowerMetrics.ICON_REDRAWS.increment();
+			trayIcon.setImage(icons.get(load, supplying));
+			shownState = state;
+		}
 		
 		String tooltip;
 		if (supplying)
@@ -191,86 +205,10 @@ public class SystemTrayIntegration {
 				tooltip = "on line power, battery: " + load + "%";
 		else
 			tooltip = "on battery: " + load + "%";
-		trayIcon.setToolTip(tooltip);
-	}
-
-	/**
-	 * draws the Icon for a 32x32 pixel image 
-	 * @param graphics	the graphics context to be drawn on
-	 * @param load		the current battery load 
-	 * @param supplying	the current supplying /in-line status
-	 */
-	private void drawIcon32x32(Graphics graphics, final int load, final boolean supplying) {
-		drawImageBackground(graphics);
-
-		drawBattery32x32(graphics, load);
-
-		drawCharging32x32(graphics, supplying);
-	}
-
-	/**
-	 * draws the image background
-	 * @param graphics	the graphics context to be drawn on
-	 */
-	private void drawImageBackground(Graphics graphics) {
-		graphics.setColor(Color.BLACK);
-		graphics.fillRect(0, 0, WIDTH, HEIGHT);
-	}
-
-	/**
-	 * draws the charging area of the image
-	 * @param graphics	the graphics context to be drawn on
-	 * @param supplying	the current supplying / on-line status
-	 */
-	private void drawCharging32x32(Graphics graphics, final boolean supplying) {
-		// draw charging
-		graphics.setColor(Color.GRAY);
-		if (supplying) {
-			graphics.fillRect(5, 6, 2, 20);
-			graphics.fillRect(3, 14, 6, 4);
-		}
-		else {
-			graphics.fillRect(5, 6, 2, 7);
-			graphics.fillRect(3, 11, 6, 2);
-			graphics.fillRect(5, 18, 2, 7);
-			graphics.fillRect(3, 18, 6, 2);
+		if (!tooltip.equals(shownTooltip)) {
+			trayIcon.setToolTip(tooltip);
+			shownTooltip = tooltip;
 		}
 	}
 
-	/**
-	 * draws the battery area of the image
-	 * @param graphics	the graphics context to be drawn on
-	 * @param load		the current battery load
-	 */
-	private void drawBattery32x32(Graphics graphics, final int load) {
-		// draw battery outlines
-		graphics.setColor(Color.lightGray);
-		graphics.drawRect(12, 6, 15, 23);
-		graphics.drawRect(16, 3, 8, 3);
-
-		// draw battery fillings depending on capacity
-		if (load > YELLOW_UPPER_BOUND)
-			graphics.setColor(Color.GREEN);
-		else if (load > RED_UPPER_BOUND)
-			graphics.setColor(Color.YELLOW);
-		else
-			graphics.setColor(Color.RED);
-		if (load > LOAD_COMPLETE)
-			graphics.fillRect(18, 4, 5, 2);
-		if (load > LOAD_FULL)
-			// full
-			graphics.fillRect(14, 8, 12, 4);
-		if (load > LOAD_MEDIUM_HIGH) 
-			// more than half
-			graphics.fillRect(14, 13, 12, 4); 
-		if (load > LOAD_MEDIUM_LOW) 
-			// less than half
-			graphics.fillRect(14, 18, 12, 4);
-		if (load > LOAD_LOW) 
-			// low
-			graphics.fillRect(14, 23, 12, 4);
-		// print always
-		graphics.fillRect(14, 28, 12, 1);
-	}
-
 }
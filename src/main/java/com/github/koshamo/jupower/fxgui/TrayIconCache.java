@@ -0,0 +1,77 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fxgui;
+
+import java.awt.image.BufferedImage;
+
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+
+/**
+ * TrayIconCache holds one image per state of the tray icon. An image is
+ * drawn, when its state is shown the first time, afterwards it is reused,
+ * thus showing a battery change only swaps the image of the tray icon.
+ * 
+ * The images are drawn in the size of the system tray, which may be larger
+ * than 32x32 pixel on HiDPI screens.
+ * 
+ * This class is not thread safe, it is used from the JavaFX thread only.
+ * 
+ * @author jochen
+ *
+ */
+final class TrayIconCache {
+
+	private final TrayIconPainter painter;
+	private final int size;
+	private final BufferedImage[] images = new BufferedImage[TrayIconPainter.STATES];
+
+	/**
+	 * @param painter	the painter, which draws the images
+	 * @param size		the width and height of the images in pixel
+	 */
+	TrayIconCache(final TrayIconPainter painter, final int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("size must be positive"); //$NON-NLS-1$
+		this.painter = painter;
+		this.size = size;
+	}
+
+	/**
+	 * returns the image of the state of the given values, the image is
+	 * drawn, if it is not cached yet
+	 * 
+	 * @param load		the current battery load
+	 * @param supplying	the current supplying /in-line status
+	 * @return			the image of the tray icon
+	 */
+	BufferedImage get(final int load, final boolean supplying) {
+		final int state = painter.state(load, supplying);
+		BufferedImage image = images[state];
+		if (image == null) {
+			JuPowerMetrics.ICON_DRAWS.increment();
+			image = painter.drawIcon(size, load, supplying);
+			images[state] = image;
+		}
+		return image;
+	}
+
+	/**
+	 * @return	the width and height of the images in pixel
+	 */
+	int getSize() {
+		return size;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.fxgui;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * TrayIconPainter draws the battery symbol of the system tray icon. It is
+ * separated from SystemTrayIntegration, thus drawing can be done without
+ * a system tray, e.g. for benchmarks.
+ * 
+ * @author jochen
+ *
+ */
+final class TrayIconPainter {
+
+	static final int SIZE = 32;
+	// 6 fill levels x 3 colours x supplying
+	static final int STATES = 6 * 3 * 2;
+	private final int YELLOW_UPPER_BOUND = 74;
+	private final int RED_UPPER_BOUND = 24;
+	private final int LOAD_LOW = 5;
+	private final int LOAD_MEDIUM_LOW = 24;
+	private final int LOAD_MEDIUM_HIGH = 49;
+	private final int LOAD_FULL = 79;
+	private final int LOAD_COMPLETE = 97;
+
+	/**
+	 * classifies the icon: two loads with the same state draw the same
+	 * image, thus an image per state can be drawn once and reused
+	 * 
+	 * @param load		the current battery load
+	 * @param supplying	the current supplying /in-line status
+	 * @return			the state of the icon, from 0 to STATES - 1
+	 */
+	int state(final int load, final boolean supplying) {
+		int fill = 0;
+		if (load > LOAD_COMPLETE)
+			fill = 5;
+		else if (load > LOAD_FULL)
+			fill = 4;
+		else if (load > LOAD_MEDIUM_HIGH)
+			fill = 3;
+		else if (load > LOAD_MEDIUM_LOW)
+			fill = 2;
+		else if (load > LOAD_LOW)
+			fill = 1;
+		int colour = 0;
+		if (load > YELLOW_UPPER_BOUND)
+			colour = 2;
+		else if (load > RED_UPPER_BOUND)
+			colour = 1;
+		return (fill * 3 + colour) * 2 + (supplying ? 1 : 0);
+	}
+
+	/**
+	 * draws the icon into a new image of the given size, the 32x32 pixel
+	 * drawing is scaled, thus the icon is sharp on HiDPI trays
+	 * 
+	 * @param size		the width and height of the image in pixel
+	 * @param load		the current battery load 
+	 * @param supplying	the current supplying /in-line status
+	 * @return			the image of the icon
+	 */
+	BufferedImage drawIcon(final int size, final int load, final boolean supplying) {
+		final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D graphics = image.createGraphics();
+		try {
+			if (size != SIZE) {
+				graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, 
+						RenderingHints.VALUE_STROKE_PURE);
+				graphics.scale((double) size / SIZE, (double) size / SIZE);
+			}
+			drawIcon32x32(graphics, load, supplying);
+		} finally {
+			graphics.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * draws the Icon for a 32x32 pixel image 
+	 * @param graphics	the graphics context to be drawn on
+	 * @param load		the current battery load 
+	 * @param supplying	the current supplying /in-line status
+	 */
+	void drawIcon32x32(Graphics graphics, final int load, final boolean supplying) {
+		drawImageBackground(graphics);
+
+		drawBattery32x32(graphics, load);
+
+		drawCharging32x32(graphics, supplying);
+	}
+
+	/**
+	 * draws the image background
+	 * @param graphics	the graphics context to be drawn on
+	 */
+	private void drawImageBackground(Graphics graphics) {
+		graphics.setColor(Color.BLACK);
+		graphics.fillRect(0, 0, SIZE, SIZE);
+	}
+
+	/**
+	 * draws the charging area of the image
+	 * @param graphics	the graphics context to be drawn on
+	 * @param supplying	the current supplying / on-line status
+	 */
+	private void drawCharging32x32(Graphics graphics, final boolean supplying) {
+		// draw charging
+		graphics.setColor(Color.GRAY);
+		if (supplying) {
+			graphics.fillRect(5, 6, 2, 20);
+			graphics.fillRect(3, 14, 6, 4);
+		}
+		else {
+			graphics.fillRect(5, 6, 2, 7);
+			graphics.fillRect(3, 11, 6, 2);
+			graphics.fillRect(5, 18, 2, 7);
+			graphics.fillRect(3, 18, 6, 2);
+		}
+	}
+
+	/**
+	 * draws the battery area of the image
+	 * @param graphics	the graphics context to be drawn on
+	 * @param load		the current battery load
+	 */
+	private void drawBattery32x32(Graphics graphics, final int load) {
+		// draw battery outlines
+		graphics.setColor(Color.lightGray);
+		graphics.drawRect(12, 6, 15, 23);
+		graphics.drawRect(16, 3, 8, 3);
+
+		// draw battery fillings depending on capacity
+		if (load > YELLOW_UPPER_BOUND)
+			graphics.setColor(Color.GREEN);
+		else if (load > RED_UPPER_BOUND)
+			graphics.setColor(Color.YELLOW);
+		else
+			graphics.setColor(Color.RED);
+		if (load > LOAD_COMPLETE)
+			graphics.fillRect(18, 4, 5, 2);
+		if (load > LOAD_FULL)
+			// full
+			graphics.fillRect(14, 8, 12, 4);
+		if (load > LOAD_MEDIUM_HIGH) 
+			// more than half
+			graphics.fillRect(14, 13, 12, 4); 
+		if (load > LOAD_MEDIUM_LOW) 
+			// less than half
+			graphics.fillRect(14, 18, 12, 4);
+		if (load > LOAD_LOW) 
+			// low
+			graphics.fillRect(14, 23, 12, 4);
+		// print always
+		graphics.fillRect(14, 28, 12, 1);
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.history;
+
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+
+/**
+ * DeviceHistory records the samples of one device with a fixed memory
+ * footprint. The samples are kept in tiers of ring buffers: the first
+ * tier stores every sample, the following tiers store averages of longer
+ * intervals, thus they reach further back. By default
+ * <ul>
+ * <li>every sample is kept for 6 hours at one sample per second</li>
+ * <li>averages of one minute are kept for a week</li>
+ * <li>averages of 15 minutes are kept for 90 days</li>
+ * </ul>
+ * which takes about 560 KB per device.
+ * 
+ * Appending a sample takes constant time, a range query finds its start
+ * by binary search. No objects are created for either.
+ * 
+ * @author jochen
+ *
+ */
+public class DeviceHistory {
+
+	public static final int CHARGING = 1;
+	public static final int ONLINE = 2;
+
+	private static final long[] RESOLUTIONS = {0, 60 * 1000, 15 * 60 * 1000};
+	private static final int[] CAPACITIES = {6 * 60 * 60, 7 * 24 * 60, 90 * 24 * 4};
+
+	private final HistoryTier[] tiers;
+
+	/**
+	 * creates a history with the default tiers
+	 */
+	public DeviceHistory() {
+		this(RESOLUTIONS, CAPACITIES);
+	}
+
+	/**
+	 * creates a history with the given tiers
+	 * 
+	 * @param resolutions	the interval of the averaged samples of every
+	 * tier in milliseconds, ascending, 0 for the first tier to store every
+	 * sample
+	 * @param capacities	the number of samples of every tier
+	 */
+	public DeviceHistory(final long[] resolutions, final int[] capacities) {
+		if (resolutions.length == 0 || resolutions.length != capacities.length)
+			throw new IllegalArgumentException("one capacity per tier required"); //$NON-NLS-1$
+		tiers = new HistoryTier[resolutions.length];
+		for (int i = 0; i < tiers.length; ++i) {
+			if (i > 0 && resolutions[i] <= resolutions[i - 1])
+				throw new IllegalArgumentException("resolutions must ascend"); //$NON-NLS-1$
+			tiers[i] = new HistoryTier(resolutions[i], capacities[i]);
+		}
+	}
+
+	/**
+	 * appends the values of a snapshot
+	 * 
+	 * @param time	the time of the snapshot in milliseconds since the epoch
+	 * @param snap	the snapshot of the device
+	 * @return		true, if the sample has been appended, false, if it is
+	 * older than the newest sample
+	 */
+	public boolean append(final long time, final DeviceSnapshot snap) {
+		return append(time, snap.getPercentage(), (float) snap.getEnergyRate(), state(snap));
+	}
+
+	/**
+	 * appends a sample
+	 * 
+	 * @param time			the time in milliseconds since the epoch
+	 * @param percentage	the battery load in percent
+	 * @param energyRate	the charge or discharge rate in W
+	 * @param state			the state flags CHARGING and ONLINE
+	 * @return				true, if the sample has been appended, false, if
+	 * it is older than the newest sample
+	 */
+	public synchronized boolean append(final long time, final int percentage,
+			final float energyRate, final int state) {
+		if (time < tiers[0].newest())
+			return false;
+		for (HistoryTier tier : tiers)
+			tier.add(time, percentage, energyRate, state);
+		return true;
+	}
+
+	/**
+	 * passes the samples of the time range to the consumer, the oldest
+	 * first. The samples are taken from the finest tier, which reaches back
+	 * to the start of the range, or from the last tier otherwise.
+	 * 
+	 * @param from		the start of the range in milliseconds, inclusive
+	 * @param to		the end of the range in milliseconds, inclusive
+	 * @param consumer	the consumer of the samples
+	 * @return			the number of samples passed
+	 */
+	public int query(final long from, final long to, final SampleConsumer consumer) {
+		return query(from, to, 0, consumer);
+	}
+
+	/**
+	 * like query(long, long, SampleConsumer), but the coarsest tier with at
+	 * most the given resolution is preferred, thus a graph of a long range
+	 * does not need to process every sample
+	 * 
+	 * @param from			the start of the range in milliseconds, inclusive
+	 * @param to			the end of the range in milliseconds, inclusive
+	 * @param resolution	the interval between samples, the consumer needs
+	 * at most, in milliseconds
+	 * @param consumer		the consumer of the samples
+	 * @return				the number of samples passed
+	 */
+	public synchronized int query(final long from, final long to,
+			final long resolution, final SampleConsumer consumer) {
+		if (from > to)
+			return 0;
+		HistoryTier selected = tiers[0];
+		for (int i = 1; i < tiers.length; ++i) {
+			final HistoryTier tier = tiers[i];
+			if (tier.size() == 0)
+				break;
+			if (tier.getResolution() <= resolution || selected.oldest() > from)
+				selected = tier;
+		}
+		return selected.forEach(from, to, consumer);
+	}
+
+	/**
+	 * @return	the number of samples of the first tier
+	 */
+	public synchronized int size() {
+		return tiers[0].size();
+	}
+
+	/**
+	 * @return	the time of the newest sample in milliseconds, Long.MIN_VALUE
+	 * if the history is empty
+	 */
+	public synchronized long newest() {
+		return tiers[0].newest();
+	}
+
+	/**
+	 * @return	the memory of the samples of all tiers in bytes
+	 */
+	public long footprint() {
+		long bytes = 0;
+		for (HistoryTier tier : tiers)
+			bytes += (long) tier.capacity() * HistoryTier.SAMPLE_BYTES;
+		return bytes;
+	}
+
+	/**
+	 * @param snap	the snapshot of a device
+	 * @return		the state flags of the snapshot
+	 */
+	public static int state(final DeviceSnapshot snap) {
+		return (snap.isCharging() ? CHARGING : 0) | (snap.isOnline() ? ONLINE : 0);
+	}
+}
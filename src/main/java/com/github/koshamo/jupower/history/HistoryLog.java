@@ -0,0 +1,498 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+
+/**
+ * HistoryLog persists samples in an append-only log of memory mapped
+ * segment files, without any database. Every record has the same size:
+ * <pre>
+ * time         long   milliseconds since the epoch
+ * device       short  index of the device in the file devices
+ * percentage   byte   battery load in percent
+ * flags        byte   CHARGING, ONLINE and TRANSITION
+ * energy rate  float  W
+ * energy       float  Wh
+ * energy full  float  Wh
+ * voltage      float  V
+ * checksum     int    CRC32 of the bytes before
+ * </pre>
+ * Appending copies the record into a staging buffer only, thus the poller
+ * is never blocked by I/O. flush copies the staged records into the
+ * mapped segment, from where the operating system writes them lazily,
+ * force writes them to disk. A new segment is started, if the segment is
+ * full or older than the segment age, segments older than the retention
+ * are deleted.
+ * 
+ * The segments are preallocated with zeros. At startup the last segment
+ * is scanned up to the first record with a wrong checksum, which is where
+ * a crash has interrupted writing. The rest of the segment is cleared and
+ * appending continues there.
+ * 
+ * @author jochen
+ *
+ */
+public class HistoryLog implements Closeable {
+
+	public static final int RECORD_SIZE = 32;
+	public static final int TRANSITION = 4;
+	public static final long SEGMENT_SIZE = 1024 * 1024;
+	public static final long SEGMENT_AGE = 7L * 24 * 60 * 60 * 1000;
+	public static final long RETENTION = 400L * 24 * 60 * 60 * 1000;
+
+	private static final int HEADER_SIZE = 32;
+	private static final int MAGIC = 0x4A555057;
+	private static final int VERSION = 1;
+	private static final int CHECKED_SIZE = RECORD_SIZE - 4;
+	private static final int STAGING_RECORDS = 1024;
+	private static final String PREFIX = "history-"; //$NON-NLS-1$
+	private static final String SUFFIX = ".log"; //$NON-NLS-1$
+	private static final String DEVICES = "devices"; //$NON-NLS-1$
+
+	private final Path dir;
+	private final long segmentSize;
+	private final long segmentAge;
+	private final long retention;
+
+	// staging, guarded by itself
+	private final ByteBuffer staging =
+			ByteBuffer.allocate(STAGING_RECORDS * RECORD_SIZE);
+	private final CRC32 crc = new CRC32();
+	private final List<String> devices = new ArrayList<>();
+	private final Map<String, Integer> ids = new HashMap<>();
+	private long dropped;
+	private boolean closed;
+
+	// writing, guarded by this
+	private final ByteBuffer pending =
+			ByteBuffer.allocate(STAGING_RECORDS * RECORD_SIZE);
+	private int persistedDevices;
+	private FileChannel channel;
+	private MappedByteBuffer segment;
+	private long segmentBase;
+
+	/**
+	 * The consumer of replayed records
+	 * 
+	 * @author jochen
+	 *
+	 */
+	@FunctionalInterface
+	public interface RecordConsumer {
+		/**
+		 * receives one record
+		 * 
+		 * @param device		the device
+		 * @param time			the time in milliseconds since the epoch
+		 * @param percentage	the battery load in percent
+		 * @param energyRate	the charge or discharge rate in W
+		 * @param energy		the energy in Wh
+		 * @param flags			the flags DeviceHistory.CHARGING,
+		 * DeviceHistory.ONLINE and TRANSITION
+		 */
+		void accept(String device, long time, int percentage, float energyRate,
+				float energy, int flags);
+	}
+
+	/**
+	 * opens the log in the given directory with the default segment size,
+	 * age and retention
+	 * 
+	 * @param dir	the directory of the log, created if it does not exist
+	 * @throws IOException	if the directory or the last segment can not be
+	 * opened
+	 */
+	public HistoryLog(final Path dir) throws IOException {
+		this(dir, SEGMENT_SIZE, SEGMENT_AGE, RETENTION);
+	}
+
+	/**
+	 * opens the log in the given directory
+	 * 
+	 * @param dir			the directory of the log, created if it does not
+	 * exist
+	 * @param segmentSize	the size of a segment file in bytes
+	 * @param segmentAge	the time span of a segment in milliseconds
+	 * @param retention		the time in milliseconds, after which a segment
+	 * is deleted
+	 * @throws IOException	if the directory or the last segment can not be
+	 * opened
+	 */
+	public HistoryLog(final Path dir, final long segmentSize,
+			final long segmentAge, final long retention) throws IOException {
+		if (segmentSize < HEADER_SIZE + RECORD_SIZE || segmentSize > Integer.MAX_VALUE
+				|| segmentAge <= 0 || retention <= 0)
+			throw new IllegalArgumentException();
+		this.dir = dir;
+		this.segmentSize = segmentSize - (segmentSize - HEADER_SIZE) % RECORD_SIZE;
+		this.segmentAge = segmentAge;
+		this.retention = retention;
+		Files.createDirectories(dir);
+		loadDevices();
+		recover();
+	}
+
+	/**
+	 * stages the values of a snapshot
+	 * 
+	 * @param time			the time in milliseconds since the epoch
+	 * @param snap			the snapshot of the device
+	 * @param transition	true, if the state has changed
+	 * @return				true, if the record has been staged, false, if
+	 * the staging buffer is full or the log is closed
+	 */
+	public boolean append(final long time, final DeviceSnapshot snap, final boolean transition) {
+		final int flags = DeviceHistory.state(snap) | (transition ? TRANSITION : 0);
+		synchronized (staging) {
+			if (closed || staging.remaining() < RECORD_SIZE || time <= 0) {
+				++dropped;
+				return false;
+			}
+			final int start = staging.position();
+			staging.putLong(time)
+				.putShort((short) id(snap.getDevice()))
+				.put((byte) snap.getPercentage())
+				.put((byte) flags)
+				.putFloat((float) snap.getEnergyRate())
+				.putFloat((float) snap.getEnergy())
+				.putFloat((float) snap.getEnergyFull())
+				.putFloat((float) snap.getVoltage());
+			crc.reset();
+			crc.update(staging.array(), start, CHECKED_SIZE);
+			staging.putInt((int) crc.getValue());
+			return true;
+		}
+	}
+
+	/**
+	 * writes the staged records into the mapped segment, new devices are
+	 * written to disk before
+	 * 
+	 * @throws IOException	if a file can not be written
+	 */
+	public synchronized void flush() throws IOException {
+		final List<String> added;
+		synchronized (staging) {
+			staging.flip();
+			pending.clear();
+			pending.put(staging);
+			staging.clear();
+			added = devices.size() > persistedDevices
+					? new ArrayList<>(devices.subList(persistedDevices, devices.size()))
+					: Collections.<String>emptyList();
+		}
+		pending.flip();
+		if (!added.isEmpty())
+			writeDevices(added);
+		while (pending.hasRemaining()) {
+			final long time = pending.getLong(pending.position());
+			if (segment == null || segment.remaining() < RECORD_SIZE
+					|| time - segmentBase >= segmentAge)
+				roll(time);
+			final int limit = pending.limit();
+			pending.limit(pending.position() + RECORD_SIZE);
+			segment.put(pending);
+			pending.limit(limit);
+		}
+	}
+
+	/**
+	 * writes the staged records and forces the segment to disk
+	 * 
+	 * @throws IOException	if a file can not be written
+	 */
+	public synchronized void force() throws IOException {
+		flush();
+		if (segment != null)
+			segment.force();
+	}
+
+	/**
+	 * passes all records at or after the given time to the consumer, the
+	 * oldest first. Staged records are flushed before.
+	 * 
+	 * @param from		the time in milliseconds since the epoch
+	 * @param consumer	the consumer of the records
+	 * @return			the number of records passed
+	 * @throws IOException	if a segment can not be read
+	 */
+	public synchronized int replay(final long from, final RecordConsumer consumer)
+			throws IOException {
+		flush();
+		final List<String> names;
+		synchronized (staging) {
+			names = new ArrayList<>(devices);
+		}
+		final List<Path> segments = listSegments();
+		int passed = 0;
+		for (int i = 0; i < segments.size(); ++i) {
+			// the next segment starts before the range, thus this one, too
+			if (i + 1 < segments.size() && baseTime(segments.get(i + 1)) <= from)
+				continue;
+			try (FileChannel in = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+				final ByteBuffer buffer = in.map(MapMode.READ_ONLY, 0, in.size());
+				if (!hasHeader(buffer))
+					continue;
+				final CRC32 check = new CRC32();
+				for (int pos = HEADER_SIZE; isValid(buffer, pos, check); pos += RECORD_SIZE) {
+					final long time = buffer.getLong(pos);
+					final int id = buffer.getShort(pos + 8) & 0xFFFF;
+					if (time < from || id >= names.size())
+						continue;
+					consumer.accept(names.get(id), time, buffer.get(pos + 10),
+							buffer.getFloat(pos + 12), buffer.getFloat(pos + 16),
+							buffer.get(pos + 11));
+					++passed;
+				}
+			}
+		}
+		return passed;
+	}
+
+	/**
+	 * @return	the number of records, which could not be staged
+	 */
+	public long getDropped() {
+		synchronized (staging) {
+			return dropped;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the staged records are written to disk
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		synchronized (staging) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		try {
+			force();
+		} finally {
+			if (channel != null)
+				channel.close();
+			channel = null;
+			segment = null;
+		}
+	}
+
+	/**
+	 * helper method to find the index of a device, new devices are added
+	 * 
+	 * @param device	the device
+	 * @return			the index of the device
+	 */
+	private int id(final String device) {
+		final Integer id = ids.get(device);
+		if (id != null)
+			return id.intValue();
+		devices.add(device);
+		ids.put(device, Integer.valueOf(devices.size() - 1));
+		return devices.size() - 1;
+	}
+
+	/**
+	 * reads the devices, one per line, the line number is the index
+	 * 
+	 * @throws IOException	if the file can not be read
+	 */
+	private void loadDevices() throws IOException {
+		final Path file = dir.resolve(DEVICES);
+		if (!Files.exists(file))
+			return;
+		for (String device : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			if (device.isEmpty())
+				continue;
+			ids.put(device, Integer.valueOf(devices.size()));
+			devices.add(device);
+		}
+		persistedDevices = devices.size();
+	}
+
+	/**
+	 * appends new devices to the file of devices and forces it to disk
+	 * 
+	 * @param added	the new devices
+	 * @throws IOException	if the file can not be written
+	 */
+	private void writeDevices(final List<String> added) throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		for (String device : added)
+			sb.append(device).append('\n');
+		try (FileChannel out = FileChannel.open(dir.resolve(DEVICES),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND)) {
+			final ByteBuffer bytes = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+			while (bytes.hasRemaining())
+				out.write(bytes);
+			out.force(true);
+		}
+		persistedDevices += added.size();
+	}
+
+	/**
+	 * opens the last segment and continues after its last valid record
+	 * 
+	 * @throws IOException	if the segment can not be opened
+	 */
+	private void recover() throws IOException {
+		final List<Path> segments = listSegments();
+		if (segments.isEmpty())
+			return;
+		final Path last = segments.get(segments.size() - 1);
+		final FileChannel opened = FileChannel.open(last,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (opened.size() < HEADER_SIZE + RECORD_SIZE) {
+			opened.close();
+			return;
+		}
+		final MappedByteBuffer mapped = opened.map(MapMode.READ_WRITE, 0, opened.size());
+		if (!hasHeader(mapped)) {
+			opened.close();
+			return;
+		}
+		final CRC32 check = new CRC32();
+		int pos = HEADER_SIZE;
+		while (isValid(mapped, pos, check))
+			pos += RECORD_SIZE;
+		// a crash may have left parts of records behind the last valid one
+		for (int i = pos; i < mapped.capacity(); ++i)
+			mapped.put(i, (byte) 0);
+		mapped.position(pos);
+		channel = opened;
+		segment = mapped;
+		segmentBase = mapped.getLong(16);
+	}
+
+	/**
+	 * starts a new segment and deletes the segments beyond the retention
+	 * 
+	 * @param time	the time of the first record of the segment
+	 * @throws IOException	if the segment can not be created
+	 */
+	private void roll(final long time) throws IOException {
+		if (segment != null)
+			segment.force();
+		if (channel != null)
+			channel.close();
+		segment = null;
+		channel = null;
+		final Path file = dir.resolve(String.format("%s%013d%s", PREFIX, //$NON-NLS-1$
+				Long.valueOf(time), SUFFIX));
+		final FileChannel created = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		final MappedByteBuffer mapped = created.map(MapMode.READ_WRITE, 0, segmentSize);
+		mapped.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0)
+			.putLong(time).putLong(0);
+		mapped.force();
+		channel = created;
+		segment = mapped;
+		segmentBase = time;
+		deleteExpired(time);
+	}
+
+	/**
+	 * deletes the segments, which only hold records older than the
+	 * retention
+	 * 
+	 * @param now	the current time in milliseconds since the epoch
+	 * @throws IOException	if the directory can not be read
+	 */
+	private void deleteExpired(final long now) throws IOException {
+		final List<Path> segments = listSegments();
+		for (int i = 0; i + 1 < segments.size(); ++i)
+			if (baseTime(segments.get(i + 1)) < now - retention)
+				Files.deleteIfExists(segments.get(i));
+	}
+
+	/**
+	 * @return	the segment files, the oldest first
+	 * @throws IOException	if the directory can not be read
+	 */
+	private List<Path> listSegments() throws IOException {
+		final List<Path> segments = new ArrayList<>();
+		try (DirectoryStream<Path> stream =
+				Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) { //$NON-NLS-1$
+			for (Path path : stream)
+				segments.add(path);
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	/**
+	 * @param segment	the segment file
+	 * @return			the time of the first record, from the file name
+	 */
+	private static long baseTime(final Path segment) {
+		final String name = segment.getFileName().toString();
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(),
+					name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * @param buffer	the mapped segment
+	 * @return			true, if the segment has a valid header
+	 */
+	private static boolean hasHeader(final ByteBuffer buffer) {
+		return buffer.capacity() >= HEADER_SIZE && buffer.getInt(0) == MAGIC
+				&& buffer.getInt(4) == VERSION && buffer.getInt(8) == RECORD_SIZE;
+	}
+
+	/**
+	 * @param buffer	the mapped segment
+	 * @param pos		the position of a record
+	 * @param check		the checksum to be reused
+	 * @return			true, if a complete record with a valid checksum is
+	 * at the position
+	 */
+	private static boolean isValid(final ByteBuffer buffer, final int pos, final CRC32 check) {
+		if (pos + RECORD_SIZE > buffer.capacity() || buffer.getLong(pos) <= 0)
+			return false;
+		check.reset();
+		for (int i = 0; i < CHECKED_SIZE; ++i)
+			check.update(buffer.get(pos + i));
+		return (int) check.getValue() == buffer.getInt(pos + CHECKED_SIZE);
+	}
+}
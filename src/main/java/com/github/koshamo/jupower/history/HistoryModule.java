@@ -0,0 +1,231 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.history;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.github.koshamo.fiddler.Event;
+import com.github.koshamo.fiddler.EventHandler;
+import com.github.koshamo.fiddler.MessageBus;
+import com.github.koshamo.fiddler.MessageBus.ListenerType;
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+import com.github.koshamo.jupower.shared.DeviceSnapshotEvent;
+import com.github.koshamo.jupower.shared.EventKeys;
+import com.github.koshamo.jupower.shared.PowerBoolEvent;
+
+/**
+ * HistoryModule records the device snapshots, which the upower module 
+ * posts on the message bus, in a HistoryStore. Snapshots are posted on 
+ * change only, thus a value holds until the next sample of its device.
+ * 
+ * The snapshots are persisted in a HistoryLog, too: every change at once,
+ * marked as transition, if the charging or supplying state has changed,
+ * and the last snapshot of every attached device periodically. At 
+ * startup, the store is filled from the log. The log is written by a thread of this 
+ * module, thus the message bus is never blocked by I/O.
+ * 
+ * The log is kept in $XDG_DATA_HOME/jupower/history, the directory can be
+ * set with the system property jupower.history.
+ * 
+ * @author jochen
+ *
+ */
+public class HistoryModule implements EventHandler {
+
+	public static final String PROPERTY = "jupower.history"; //$NON-NLS-1$
+	private static final long FLUSH_INTERVAL = 1000;
+	private static final long SAMPLE_INTERVAL = 60 * 1000;
+	private static final long REPLAY = 90L * 24 * 60 * 60 * 1000;
+	private static final long SHUTDOWN_TIMEOUT = 2000;
+
+	private final MessageBus messageBus;
+	private final HistoryStore store = new HistoryStore();
+	private final HistoryLog log;
+	private final ScheduledExecutorService writer;
+	private final Map<String, DeviceSnapshot> latest = new ConcurrentHashMap<>();
+	private final Map<String, Long> logged = new ConcurrentHashMap<>();
+
+	/**
+	 * creates the module with the log in the default directory and 
+	 * registers it to the message bus
+	 * 
+	 * @param messageBus	the message bus
+	 */
+	public HistoryModule(final MessageBus messageBus) {
+		this(messageBus, defaultDirectory());
+	}
+
+	/**
+	 * creates the module and registers it to the message bus
+	 * 
+	 * @param messageBus	the message bus
+	 * @param dir			the directory of the log, null to keep the 
+	 * history in memory only
+	 */
+	public HistoryModule(final MessageBus messageBus, final Path dir) {
+		this.messageBus = Objects.requireNonNull(messageBus);
+		log = open(dir);
+		if (log != null) {
+			writer = Executors.newSingleThreadScheduledExecutor(r -> {
+				final Thread thread = new Thread(r, "history-log"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			});
+			writer.scheduleWithFixedDelay(this::flush, 
+					FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+			writer.scheduleWithFixedDelay(this::sample, 
+					SAMPLE_INTERVAL, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+		} else {
+			writer = null;
+		}
+		messageBus.registerDataEvents(this, ListenerType.TARGET);
+	}
+
+	/**
+	 * @return	the history of all devices
+	 */
+	public HistoryStore getStore() {
+		return store;
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * a removed device is not sampled anymore, its history is kept
+	 * 
+	 * @see com.github.koshamo.fiddler.EventHandler#handle(com.github.koshamo.fiddler.Event)
+	 */
+	@Override
+	public void handle(final Event event) {
+		if (event instanceof PowerBoolEvent 
+				&& ((PowerBoolEvent) event).getKey() == EventKeys.DEVICE_REMOVED) {
+			final String device = ((PowerBoolEvent) event).getDevice();
+			latest.remove(device);
+			logged.remove(device);
+			return;
+		}
+		if (!(event instanceof DeviceSnapshotEvent))
+			return;
+		final DeviceSnapshot snap = ((DeviceSnapshotEvent) event).getData();
+		final long time = System.currentTimeMillis();
+		store.record(time, snap);
+		if (log == null)
+			return;
+		final DeviceSnapshot last = latest.put(snap.getDevice(), snap);
+		final boolean transition = last == null 
+				|| DeviceHistory.state(last) != DeviceHistory.state(snap);
+		if (log.append(time, snap, transition))
+			logged.put(snap.getDevice(), Long.valueOf(time));
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the log is written to disk
+	 * 
+	 * @see com.github.koshamo.fiddler.EventHandler#shutdown()
+	 */
+	@Override
+	public void shutdown() {
+		messageBus.unregisterDataEvents(this);
+		if (log == null)
+			return;
+		writer.shutdown();
+		try {
+			writer.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			log.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * opens the log and fills the store with its recent records
+	 * 
+	 * @param dir	the directory of the log, may be null
+	 * @return		the log, null if it can not be opened
+	 */
+	private HistoryLog open(final Path dir) {
+		if (dir == null)
+			return null;
+		try {
+			final HistoryLog opened = new HistoryLog(dir);
+			opened.replay(System.currentTimeMillis() - REPLAY, 
+					(device, time, percentage, energyRate, energy, flags) -> 
+						store.record(device, time, percentage, energyRate, 
+								flags & ~HistoryLog.TRANSITION));
+			return opened;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * writes the staged records of the log into its segment
+	 */
+	private void flush() {
+		try {
+			log.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * logs the last snapshot of every device, which has not been logged 
+	 * within the sample interval, and writes the log to disk
+	 */
+	private void sample() {
+		final long now = System.currentTimeMillis();
+		for (DeviceSnapshot snap : latest.values()) {
+			final Long last = logged.get(snap.getDevice());
+			if (last != null && now - last.longValue() < SAMPLE_INTERVAL)
+				continue;
+			if (log.append(now, snap, false))
+				logged.put(snap.getDevice(), Long.valueOf(now));
+		}
+		try {
+			log.force();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return	the directory of the log, set by the system property or in 
+	 * the user's data directory
+	 */
+	private static Path defaultDirectory() {
+		final String property = System.getProperty(PROPERTY);
+		if (property != null)
+			return Paths.get(property);
+		final String data = System.getenv("XDG_DATA_HOME"); //$NON-NLS-1$
+		final Path base = data != null && !data.isEmpty() ? Paths.get(data)
+				: Paths.get(System.getProperty("user.home"), ".local", "share"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return base.resolve("jupower").resolve("history"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
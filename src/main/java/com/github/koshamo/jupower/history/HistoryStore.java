@@ -0,0 +1,93 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+
+/**
+ * HistoryStore holds the DeviceHistory of every device, which is created
+ * with the first snapshot of the device.
+ * 
+ * @author jochen
+ *
+ */
+public class HistoryStore {
+
+	private final ConcurrentMap<String, DeviceHistory> histories = 
+			new ConcurrentHashMap<>();
+
+	/**
+	 * appends the snapshot to the history of its device
+	 * 
+	 * @param time	the time of the snapshot in milliseconds since the epoch
+	 * @param snap	the snapshot of the device
+	 * @return		true, if the sample has been appended, false, if it is 
+	 * older than the newest sample of the device
+	 */
+	public boolean record(final long time, final DeviceSnapshot snap) {
+		return histories.computeIfAbsent(snap.getDevice(), d -> new DeviceHistory())
+				.append(time, snap);
+	}
+
+	/**
+	 * appends a sample to the history of the device, e.g. a sample read 
+	 * from the HistoryLog
+	 * 
+	 * @param device		the device
+	 * @param time			the time in milliseconds since the epoch
+	 * @param percentage	the battery load in percent
+	 * @param energyRate	the charge or discharge rate in W
+	 * @param state			the state flags DeviceHistory.CHARGING and 
+	 * DeviceHistory.ONLINE
+	 * @return				true, if the sample has been appended, false, if 
+	 * it is older than the newest sample of the device
+	 */
+	public boolean record(final String device, final long time, final int percentage, 
+			final float energyRate, final int state) {
+		return histories.computeIfAbsent(device, d -> new DeviceHistory())
+				.append(time, percentage, energyRate, state);
+	}
+
+	/**
+	 * @param device	the device of interest
+	 * @return			the history of the device, null if nothing has been
+	 * recorded for it
+	 */
+	public DeviceHistory get(final String device) {
+		return histories.get(device);
+	}
+
+	/**
+	 * @return	the devices with a history
+	 */
+	public List<String> getDevices() {
+		return new ArrayList<>(histories.keySet());
+	}
+
+	/**
+	 * removes the history of a device
+	 * 
+	 * @param device	the device to be removed
+	 */
+	public void forget(final String device) {
+		histories.remove(device);
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.history;
+
+/**
+ * HistoryTier is a ring buffer of samples in parallel primitive arrays,
+ * the oldest sample is overwritten, when the buffer is full. Samples are
+ * added in the order of their time, thus a range is found by binary
+ * search.
+ * 
+ * A tier with a resolution greater than 0 downsamples: all samples of an
+ * interval are averaged into one sample, which is stored, when the first
+ * sample of the next interval arrives.
+ * 
+ * This class is not thread safe, DeviceHistory synchronizes it.
+ * 
+ * @author jochen
+ *
+ */
+final class HistoryTier {
+
+	// time, percentage, rate and state
+	static final int SAMPLE_BYTES = 8 + 1 + 4 + 1;
+
+	private final long resolution;
+	private final long[] times;
+	private final byte[] percentages;
+	private final float[] rates;
+	private final byte[] states;
+	private int head;
+	private int size;
+
+	// the interval being averaged
+	private long interval = Long.MIN_VALUE;
+	private int count;
+	private long percentageSum;
+	private double rateSum;
+	private int lastState;
+
+	/**
+	 * @param resolution	the interval of the averaged samples in
+	 * milliseconds, 0 to store every sample
+	 * @param capacity		the number of samples
+	 */
+	HistoryTier(final long resolution, final int capacity) {
+		if (resolution < 0 || capacity < 1)
+			throw new IllegalArgumentException();
+		this.resolution = resolution;
+		this.times = new long[capacity];
+		this.percentages = new byte[capacity];
+		this.rates = new float[capacity];
+		this.states = new byte[capacity];
+	}
+
+	/**
+	 * adds a sample, which is averaged, if the tier downsamples
+	 * 
+	 * @param time			the time in milliseconds
+	 * @param percentage	the battery load in percent
+	 * @param rate			the energy rate in W
+	 * @param state			the state flags
+	 */
+	void add(final long time, final int percentage, final float rate, final int state) {
+		if (resolution == 0) {
+			store(time, percentage, rate, state);
+			return;
+		}
+		final long start = time - Math.floorMod(time, resolution);
+		if (start != interval) {
+			flush();
+			interval = start;
+		}
+		++count;
+		percentageSum += percentage;
+		rateSum += rate;
+		lastState = state;
+	}
+
+	/**
+	 * stores the average of the current interval
+	 */
+	private void flush() {
+		if (count == 0)
+			return;
+		store(interval, (int) ((percentageSum + count / 2) / count),
+				(float) (rateSum / count), lastState);
+		count = 0;
+		percentageSum = 0;
+		rateSum = 0;
+	}
+
+	/**
+	 * helper method to store a sample in the ring buffer
+	 * 
+	 * @param time			the time in milliseconds
+	 * @param percentage	the battery load in percent
+	 * @param rate			the energy rate in W
+	 * @param state			the state flags
+	 */
+	private void store(final long time, final int percentage, final float rate, final int state) {
+		times[head] = time;
+		percentages[head] = (byte) percentage;
+		rates[head] = rate;
+		states[head] = (byte) state;
+		head = (head + 1) % times.length;
+		if (size < times.length)
+			++size;
+	}
+
+	/**
+	 * @return	the interval of the averaged samples in milliseconds, 0 if
+	 * every sample is stored
+	 */
+	long getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * @return	the number of stored samples
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return	the number of samples, which can be stored
+	 */
+	int capacity() {
+		return times.length;
+	}
+
+	/**
+	 * @return	the time of the oldest stored sample, Long.MAX_VALUE if empty
+	 */
+	long oldest() {
+		return size == 0 ? Long.MAX_VALUE : times[slot(0)];
+	}
+
+	/**
+	 * @return	the time of the newest stored sample, Long.MIN_VALUE if empty
+	 */
+	long newest() {
+		return size == 0 ? Long.MIN_VALUE : times[slot(size - 1)];
+	}
+
+	/**
+	 * passes the stored samples of the time range to the consumer, the
+	 * oldest first
+	 * 
+	 * @param from		the start of the range in milliseconds, inclusive
+	 * @param to		the end of the range in milliseconds, inclusive
+	 * @param consumer	the consumer of the samples
+	 * @return			the number of samples passed
+	 */
+	int forEach(final long from, final long to, final SampleConsumer consumer) {
+		int passed = 0;
+		for (int i = lowerBound(from); i < size; ++i) {
+			final int slot = slot(i);
+			if (times[slot] > to)
+				break;
+			consumer.accept(times[slot], percentages[slot], rates[slot], states[slot]);
+			++passed;
+		}
+		return passed;
+	}
+
+	/**
+	 * helper method to find the first sample at or after the given time
+	 * 
+	 * @param time	the time in milliseconds
+	 * @return		the index of the sample, counted from the oldest, size
+	 * if all samples are older
+	 */
+	private int lowerBound(final long time) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (times[slot(mid)] < time)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @param index	the index of a sample, counted from the oldest
+	 * @return		the slot of the sample in the arrays
+	 */
+	private int slot(final int index) {
+		final int slot = head - size + index;
+		return slot < 0 ? slot + times.length : slot;
+	}
+}
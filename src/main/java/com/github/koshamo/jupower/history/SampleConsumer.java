@@ -0,0 +1,40 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.history;
+
+/**
+ * A SampleConsumer receives the samples of a range query of a
+ * DeviceHistory. The values are primitives, thus a query creates no
+ * objects.
+ * 
+ * @author jochen
+ *
+ */
+@FunctionalInterface
+public interface SampleConsumer {
+
+	/**
+	 * receives one sample
+	 * 
+	 * @param time			the time of the sample in milliseconds since the
+	 * epoch, for downsampled samples the start of the interval
+	 * @param percentage	the battery load in percent
+	 * @param energyRate	the charge or discharge rate in W
+	 * @param state			the state flags DeviceHistory.CHARGING and
+	 * DeviceHistory.ONLINE
+	 */
+	void accept(long time, int percentage, float energyRate, int state);
+}
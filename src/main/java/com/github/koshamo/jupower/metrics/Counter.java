@@ -0,0 +1,53 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter is a striped LongAdder, thus counting creates no objects and 
+ * threads counting at the same time do not contend.
+ * 
+ * @author jochen
+ *
+ */
+public final class Counter implements CounterMBean {
+
+	private final LongAdder count = new LongAdder();
+
+	/**
+	 * adds one to the count
+	 */
+	public void increment() {
+		count.increment();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.CounterMBean#getCount()
+	 */
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.CounterMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		count.reset();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.koshamo.jupower.shared.EventKeys;
+
+/**
+ * EventCounter counts the posted events per EventKeys value, the counts 
+ * are indexed by the ordinal of the key, thus counting creates no 
+ * objects. Events without a key, like the device snapshots, are counted
+ * as SNAPSHOT.
+ * 
+ * @author jochen
+ *
+ */
+public final class EventCounter implements EventCounterMXBean {
+
+	public static final String SNAPSHOT = "Snapshot"; //$NON-NLS-1$
+
+	private static final EventKeys[] KEYS = EventKeys.values();
+
+	// the last count is the one of the snapshots
+	private final LongAdder[] counts = new LongAdder[KEYS.length + 1];
+
+	/**
+	 * creates a counter with all counts 0
+	 */
+	public EventCounter() {
+		for (int i = 0; i < counts.length; ++i)
+			counts[i] = new LongAdder();
+	}
+
+	/**
+	 * counts a posted event
+	 * 
+	 * @param key	the key of the event
+	 */
+	public void record(final EventKeys key) {
+		counts[key.ordinal()].increment();
+	}
+
+	/**
+	 * counts a posted device snapshot
+	 */
+	public void recordSnapshot() {
+		counts[KEYS.length].increment();
+	}
+
+	/**
+	 * @param key	the key of the events
+	 * @return		the number of posted events of the key
+	 */
+	public long get(final EventKeys key) {
+		return counts[key.ordinal()].sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.EventCounterMXBean#getPosted()
+	 */
+	@Override
+	public Map<String, Long> getPosted() {
+		final Map<String, Long> posted = new LinkedHashMap<>();
+		for (EventKeys key : KEYS)
+			posted.put(key.getKey(), Long.valueOf(get(key)));
+		posted.put(SNAPSHOT, Long.valueOf(counts[KEYS.length].sum()));
+		return posted;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.EventCounterMXBean#getTotal()
+	 */
+	@Override
+	public long getTotal() {
+		long total = 0;
+		for (LongAdder count : counts)
+			total += count.sum();
+		return total;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.EventCounterMXBean#reset()
+	 */
+	@Override
+	public void reset() {
+		for (LongAdder count : counts)
+			count.reset();
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of an EventCounter. As MXBean, the map is 
+ * shown as table in every JMX client.
+ * 
+ * @author jochen
+ *
+ */
+public interface EventCounterMXBean {
+
+	/**
+	 * @return	the number of posted events per event key
+	 */
+	Map<String, Long> getPosted();
+
+	/**
+	 * @return	the number of posted events of all keys
+	 */
+	long getTotal();
+
+	/**
+	 * sets all counts to 0
+	 */
+	void reset();
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram records times in fixed buckets of powers of two microseconds,
+ * from below 1 microsecond up to about 35 minutes. Every bucket is a 
+ * striped LongAdder, thus recording creates no objects and threads 
+ * recording at the same time do not contend.
+ * 
+ * @author jochen
+ *
+ */
+public final class Histogram implements HistogramMBean {
+
+	public static final int BUCKETS = 32;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * creates an empty histogram
+	 */
+	public Histogram() {
+		for (int i = 0; i < BUCKETS; ++i)
+			buckets[i] = new LongAdder();
+	}
+
+	/**
+	 * records a time
+	 * 
+	 * @param nanos	the time in nanoseconds, like a difference of 
+	 * System.nanoTime
+	 */
+	public void record(final long nanos) {
+		final long micros = Math.max(0, nanos) / 1000;
+		buckets[bucket(micros)].increment();
+		sum.add(micros);
+		max.accumulate(micros);
+	}
+
+	/**
+	 * records the time since the start
+	 * 
+	 * @param start	the System.nanoTime of the start
+	 */
+	public void recordSince(final long start) {
+		record(System.nanoTime() - start);
+	}
+
+	/**
+	 * @param micros	a time in microseconds
+	 * @return			the bucket of the time
+	 */
+	static int bucket(final long micros) {
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.HistogramMBean#getCount()
+	 */
+	@Override
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets)
+			count += bucket.sum();
+		return count;
+	}
+
+	/**
+	 * @return	the sum of all recorded times in microseconds
+	 */
+	public long getSumMicros() {
+		return sum.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.HistogramMBean#getMeanMicros()
+	 */
+	@Override
+	public double getMeanMicros() {
+		final long count = getCount();
+		return count == 0 ? 0 : (double) sum.sum() / count;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.HistogramMBean#getMaxMicros()
+	 */
+	@Override
+	public long getMaxMicros() {
+		return max.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.HistogramMBean#get50thPercentileMicros()
+	 */
+	@Override
+	public long get50thPercentileMicros() {
+		return percentile(0.5);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.HistogramMBean#get90thPercentileMicros()
+	 */
+	@Override
+	public long get90thPercentileMicros() {
+		return percentile(0.9);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.HistogramMBean#get99thPercentileMicros()
+	 */
+	@Override
+	public long get99thPercentileMicros() {
+		return percentile(0.99);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.HistogramMBean#getBuckets()
+	 */
+	@Override
+	public long[] getBuckets() {
+		final long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; ++i)
+			counts[i] = buckets[i].sum();
+		return counts;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.metrics.HistogramMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * helper method to find the bucket of a percentile
+	 * 
+	 * @param p	the percentile between 0 and 1
+	 * @return	the upper bound of the bucket of the percentile in 
+	 * microseconds, but not more than the maximum, 0 if empty
+	 */
+	private long percentile(final double p) {
+		final long[] counts = getBuckets();
+		long count = 0;
+		for (long c : counts)
+			count += c;
+		if (count == 0)
+			return 0;
+		final long rank = (long) Math.ceil(p * count);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(1L << i, getMaxMicros());
+		}
+		return getMaxMicros();
+	}
+}
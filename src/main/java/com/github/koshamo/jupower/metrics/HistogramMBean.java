@@ -0,0 +1,68 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.metrics;
+
+/**
+ * The management interface of a Histogram. All times are in 
+ * microseconds, the percentiles are the upper bounds of their buckets.
+ * 
+ * @author jochen
+ *
+ */
+public interface HistogramMBean {
+
+	/**
+	 * @return	the number of recorded times
+	 */
+	long getCount();
+
+	/**
+	 * @return	the mean of the recorded times
+	 */
+	double getMeanMicros();
+
+	/**
+	 * @return	the longest recorded time
+	 */
+	long getMaxMicros();
+
+	/**
+	 * @return	the median of the recorded times
+	 */
+	long get50thPercentileMicros();
+
+	/**
+	 * @return	the 90th percentile of the recorded times
+	 */
+	long get90thPercentileMicros();
+
+	/**
+	 * @return	the 99th percentile of the recorded times
+	 */
+	long get99thPercentileMicros();
+
+	/**
+	 * @return	the number of recorded times per bucket, bucket i counts 
+	 * the times below 2^i microseconds, which are not counted by bucket 
+	 * i - 1
+	 */
+	long[] getBuckets();
+
+	/**
+	 * sets all counts to 0
+	 */
+	void reset();
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * JuPowerMetrics holds the metrics of all modules. The metrics are 
+ * recorded, whether they are registered or not, register exposes them as
+ * MBeans of the platform MBean server in the domain 
+ * com.github.koshamo.jupower:
+ * <ul>
+ * <li>Process: the upower processes spawned, timed out and their 
+ * execution time from start to exit</li>
+ * <li>Parser: the time to parse an upower output</li>
+ * <li>Events: the events posted per event key</li>
+ * <li>Gui: the lag of Platform.runLater from the first merged event to 
+ * the update of the GUI, the tray icon updates, the image swaps and the 
+ * images drawn</li>
+ * </ul>
+ * 
+ * @author jochen
+ *
+ */
+public final class JuPowerMetrics {
+
+	public static final String DOMAIN = "com.github.koshamo.jupower"; //$NON-NLS-1$
+
+	public static final Counter PROCESS_SPAWNS = new Counter();
+	public static final Counter PROCESS_TIMEOUTS = new Counter();
+	public static final Histogram PROCESS_EXEC = new Histogram();
+	public static final Histogram PARSE = new Histogram();
+	public static final EventCounter EVENTS = new EventCounter();
+	public static final Histogram RUN_LATER_LAG = new Histogram();
+	public static final Counter ICON_UPDATES = new Counter();
+	public static final Counter ICON_REDRAWS = new Counter();
+	public static final Counter ICON_DRAWS = new Counter();
+
+	private static boolean registered;
+
+	/**
+	 * private constructor, to prevent users to instantiate this class
+	 */
+	private JuPowerMetrics() {
+		// prevent instantiation
+	}
+
+	/**
+	 * registers all metrics at the platform MBean server, if not done yet
+	 */
+	public static synchronized void register() {
+		if (registered)
+			return;
+		registered = true;
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(PROCESS_SPAWNS, name("Process", "Spawns")); //$NON-NLS-1$ //$NON-NLS-2$
+			server.registerMBean(PROCESS_TIMEOUTS, name("Process", "Timeouts")); //$NON-NLS-1$ //$NON-NLS-2$
+			server.registerMBean(PROCESS_EXEC, name("Process", "ExecTime")); //$NON-NLS-1$ //$NON-NLS-2$
+			server.registerMBean(PARSE, name("Parser", "ParseTime")); //$NON-NLS-1$ //$NON-NLS-2$
+			server.registerMBean(EVENTS, name("Events", "Posted")); //$NON-NLS-1$ //$NON-NLS-2$
+			server.registerMBean(RUN_LATER_LAG, name("Gui", "RunLaterLag")); //$NON-NLS-1$ //$NON-NLS-2$
+			server.registerMBean(ICON_UPDATES, name("Gui", "IconUpdates")); //$NON-NLS-1$ //$NON-NLS-2$
+			server.registerMBean(ICON_REDRAWS, name("Gui", "IconRedraws")); //$NON-NLS-1$ //$NON-NLS-2$
+			server.registerMBean(ICON_DRAWS, name("Gui", "IconDraws")); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * registers all metrics in the background, thus the JMX classes are 
+	 * not loaded on the startup path
+	 * 
+	 * @return	a future, which completes, when the metrics are registered
+	 */
+	public static CompletableFuture<Void> registerAsync() {
+		return CompletableFuture.runAsync(JuPowerMetrics::register);
+	}
+
+	/**
+	 * helper method to create the name of an MBean
+	 * 
+	 * @param type	the type of the MBean
+	 * @param name	the name of the MBean
+	 * @return		the object name
+	 * @throws JMException	if the name is malformed
+	 */
+	private static ObjectName name(final String type, final String name) throws JMException {
+		return new ObjectName(DOMAIN + ":type=" + type + ",name=" + name); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.koshamo.jupower.shared.Upower;
+import com.github.koshamo.jupower.upower.CommandRunner;
+
+/**
+ * ReplayCommandRunner answers the upower calls of UpowerConnector from a
+ * Timeline instead of running upower:
+ * <ul>
+ * <li>upower -v reports version 0.99.4</li>
+ * <li>upower -e lists the devices of the current frame</li>
+ * <li>upower -i prints a device of the current frame</li>
+ * <li>upower -d prints the current frame</li>
+ * </ul>
+ * In step mode, every upower -d advances the timeline by one frame. In
+ * time mode, the current frame follows the real time since the first
+ * call, multiplied by the speed, thus a discharge of hours can be replayed
+ * in seconds. The last frame stays current at the end of the timeline.
+ * 
+ * A latency with a seeded, thus repeatable, jitter can be added to every
+ * call. The runner counts the calls and the device changes it has served
+ * with upower -d, thus a harness can detect lost events.
+ * 
+ * @author jochen
+ *
+ */
+public class ReplayCommandRunner implements CommandRunner {
+
+	private static final String VERSION =
+			"UPower client version: 0.99.4\nUPower daemon version: 0.99.4\n"; //$NON-NLS-1$
+
+	private final Timeline timeline;
+	private final double speed;
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong dumps = new AtomicLong();
+	private final AtomicLong frames = new AtomicLong();
+	private final AtomicLong changes = new AtomicLong();
+	private final ConcurrentLinkedQueue<Long> changeTimes = new ConcurrentLinkedQueue<>();
+	private long latency;
+	private long jitter;
+	private Random random = new Random(0);
+	private long start = -1;
+	private int index;
+	private Timeline.Frame served;
+
+	/**
+	 * creates a runner in step mode
+	 * 
+	 * @param timeline	the timeline to replay
+	 */
+	public ReplayCommandRunner(final Timeline timeline) {
+		this(timeline, 0);
+	}
+
+	/**
+	 * @param timeline	the timeline to replay
+	 * @param speed		the simulated time per real time, 0 for step mode
+	 */
+	public ReplayCommandRunner(final Timeline timeline, final double speed) {
+		if (speed < 0)
+			throw new IllegalArgumentException("speed must not be negative"); //$NON-NLS-1$
+		this.timeline = timeline;
+		this.speed = speed;
+	}
+
+	/**
+	 * sets the latency of every call
+	 * 
+	 * @param millis		the least latency in milliseconds
+	 * @param jitterMillis	the random latency added, up to this value
+	 * @param seed			the seed of the jitter
+	 */
+	public synchronized void setLatency(final long millis, final long jitterMillis,
+			final long seed) {
+		if (millis < 0 || jitterMillis < 0)
+			throw new IllegalArgumentException("latency must not be negative"); //$NON-NLS-1$
+		latency = millis;
+		jitter = jitterMillis;
+		random = new Random(seed);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.CommandRunner#run(com.github.koshamo.jupower.upower.CommandRunner.OutputReader, java.lang.String[])
+	 */
+	@Override
+	public <T> T run(final OutputReader<T> reader, final String... cmdarray)
+			throws IOException, TimeoutException, InterruptedException {
+		calls.incrementAndGet();
+		final long delay = delay();
+		if (delay > 0)
+			Thread.sleep(delay);
+		final String output = answer(cmdarray);
+		try (InputStream in = new ByteArrayInputStream(
+				output.getBytes(StandardCharsets.UTF_8))) {
+			return reader.read(in);
+		}
+	}
+
+	/**
+	 * @return	the number of calls so far
+	 */
+	public long getCalls() {
+		return calls.get();
+	}
+
+	/**
+	 * @return	the number of upower -d calls so far
+	 */
+	public long getDumps() {
+		return dumps.get();
+	}
+
+	/**
+	 * @return	the number of distinct frames served with upower -d
+	 */
+	public long getFrames() {
+		return frames.get();
+	}
+
+	/**
+	 * @return	the number of device changes served with upower -d, the
+	 * first dump counts every device as changed
+	 */
+	public long getChanges() {
+		return changes.get();
+	}
+
+	/**
+	 * removes the time of the oldest device change, which has not been
+	 * taken yet. A harness takes one time per received change, thus the
+	 * difference to the time of receiving is the lag of the event.
+	 * 
+	 * @return	the System.nanoTime, when the change was served, -1 if no
+	 * change is left
+	 */
+	public long takeChangeTime() {
+		final Long time = changeTimes.poll();
+		return time == null ? -1 : time.longValue();
+	}
+
+	/**
+	 * @return	true, if the last frame of the timeline has been reached
+	 */
+	public synchronized boolean isFinished() {
+		return current() == timeline.size() - 1;
+	}
+
+	/**
+	 * helper method to create the output of a upower call
+	 * 
+	 * @param cmdarray	command and all arguments
+	 * @return			the output
+	 * @throws IOException	if the command is not upower or not known
+	 */
+	private synchronized String answer(final String... cmdarray) throws IOException {
+		if (cmdarray.length < 2 || !Upower.UPOWER_CMD.getKey().equals(cmdarray[0]))
+			throw new IOException("no upower call: " + Arrays.toString(cmdarray)); //$NON-NLS-1$
+		final String cmd = cmdarray[1];
+		if (Upower.VERSION_CMD.getKey().equals(cmd))
+			return VERSION;
+		if (Upower.DEVICES_CMD.getKey().equals(cmd))
+			return String.join("\n", timeline.get(current()).getDevices()); //$NON-NLS-1$
+		if (Upower.DETAILS_CMD.getKey().equals(cmd) && cmdarray.length > 2)
+			return timeline.get(current()).getInfo(cmdarray[2]);
+		if (Upower.DUMP_CMD.getKey().equals(cmd))
+			return serve();
+		throw new IOException("unknown upower call: " + Arrays.toString(cmdarray)); //$NON-NLS-1$
+	}
+
+	/**
+	 * helper method to serve the current frame to upower -d, counting the
+	 * changes against the frame served before
+	 * 
+	 * @return	the dump of the frame
+	 */
+	private String serve() {
+		dumps.incrementAndGet();
+		if (speed == 0 && served != null && index < timeline.size() - 1)
+			++index;
+		final Timeline.Frame frame = timeline.get(current());
+		if (frame != served) {
+			frames.incrementAndGet();
+			final Long now = Long.valueOf(System.nanoTime());
+			for (String device : frame.getDevices())
+				if (frame.hasChanged(device, served)) {
+					changes.incrementAndGet();
+					changeTimes.add(now);
+				}
+			served = frame;
+		}
+		return frame.getDump();
+	}
+
+	/**
+	 * helper method to find the current frame. The clock of the time mode
+	 * starts with the first call.
+	 * 
+	 * @return	the index of the current frame
+	 */
+	private int current() {
+		if (speed == 0)
+			return index;
+		final long now = System.nanoTime();
+		if (start < 0)
+			start = now;
+		index = timeline.indexAt((long) ((now - start) / 1_000_000.0 * speed));
+		return index;
+	}
+
+	/**
+	 * @return	the latency of the next call in milliseconds
+	 */
+	private synchronized long delay() {
+		if (jitter == 0)
+			return latency;
+		return latency + (long) (random.nextDouble() * (jitter + 1));
+	}
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.replay;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.koshamo.fiddler.Event;
+import com.github.koshamo.fiddler.EventHandler;
+import com.github.koshamo.fiddler.ExitEvent;
+import com.github.koshamo.fiddler.MessageBus;
+import com.github.koshamo.fiddler.MessageBus.ListenerType;
+import com.github.koshamo.jupower.shared.DeviceSnapshotEvent;
+import com.github.koshamo.jupower.shared.EventKeys;
+import com.github.koshamo.jupower.shared.PowerStateEvent;
+import com.github.koshamo.jupower.upower.PollingPolicy;
+import com.github.koshamo.jupower.upower.PollingState;
+import com.github.koshamo.jupower.upower.PowerSources;
+import com.github.koshamo.jupower.upower.UpowerCliSource;
+import com.github.koshamo.jupower.upower.UpowerConnector;
+import com.github.koshamo.jupower.upower.UpowerModule;
+
+/**
+ * ReplayHarness load tests the upower module on every Linux box without
+ * batteries. A timeline is replayed instead of upower, in two runs:
+ * <ol>
+ * <li>throughput: UpowerConnector parses snapshots in a loop, as fast as
+ * possible, in step mode</li>
+ * <li>end to end: UpowerModule polls the replay in time mode with a short
+ * tick, a handler registered like the GUI counts the received events.
+ * Every device change the replay has served must arrive as one
+ * DeviceSnapshotEvent, missing events are lost, the time from serving to
+ * receiving is the lag.</li>
+ * </ol>
+ * Usage: ReplayHarness [discharge|cycles|dump files...] [seconds] [tick]
+ * [latency] [jitter]
+ * <ul>
+ * <li>discharge: 3 hours of discharge replayed in the given seconds</li>
+ * <li>cycles: 50 plug and unplug cycles per second</li>
+ * <li>dump files: recorded outputs of upower -d, one per second</li>
+ * </ul>
+ * 
+ * @author jochen
+ *
+ */
+public class ReplayHarness {
+
+	private static final long DISCHARGE = 3 * 60 * 60 * 1000;
+	private static final int CYCLES_PER_SECOND = 50;
+	private static final long RECORDED_STEP = 1000;
+	private static final long DRAIN = 2000;
+
+	private final Timeline timeline;
+	private final double speed;
+	private final long seconds;
+	private final long tick;
+	private final long latency;
+	private final long jitter;
+
+	/**
+	 * @param timeline	the timeline to replay
+	 * @param speed		the simulated time per real time of the end to end run
+	 * @param seconds	the duration of each run in seconds
+	 * @param tick		the tick of the module in milliseconds
+	 * @param latency	the latency of every upower call in milliseconds
+	 * @param jitter	the random latency added in milliseconds
+	 */
+	public ReplayHarness(final Timeline timeline, final double speed,
+			final long seconds, final long tick, final long latency,
+			final long jitter) {
+		this.timeline = timeline;
+		this.speed = speed;
+		this.seconds = seconds;
+		this.tick = tick;
+		this.latency = latency;
+		this.jitter = jitter;
+	}
+
+	/**
+	 * @param args	scenario, seconds, tick, latency and jitter, see the
+	 * class description
+	 * @throws IOException	if a dump file can not be read
+	 * @throws InterruptedException	if the harness is interrupted
+	 */
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		final String scenario = args.length > 0 ? args[0] : "cycles"; //$NON-NLS-1$
+		int next = 1;
+		final Timeline timeline;
+		final double speed;
+		final long seconds;
+		if ("discharge".equals(scenario)) { //$NON-NLS-1$
+			seconds = argument(args, next++, 10);
+			timeline = Timeline.discharge(DISCHARGE);
+			speed = (double) DISCHARGE / TimeUnit.SECONDS.toMillis(seconds);
+		} else if ("cycles".equals(scenario)) { //$NON-NLS-1$
+			seconds = argument(args, next++, 10);
+			timeline = Timeline.plugCycles((int) (CYCLES_PER_SECOND * seconds),
+					1000 / CYCLES_PER_SECOND);
+			speed = 1;
+		} else {
+			int files = 0;
+			while (files < args.length && !isNumber(args[files]))
+				++files;
+			final Path[] paths = new Path[files];
+			for (int i = 0; i < files; ++i)
+				paths[i] = Paths.get(args[i]);
+			next = files;
+			seconds = argument(args, next++, files);
+			timeline = Timeline.load(RECORDED_STEP, paths);
+			speed = 1;
+		}
+		final long tick = argument(args, next++, 10);
+		final long latency = argument(args, next++, 0);
+		final long jitter = argument(args, next++, 0);
+		new ReplayHarness(timeline, speed, seconds, tick, latency, jitter).run();
+	}
+
+	/**
+	 * runs the throughput and the end to end test and prints the results
+	 * 
+	 * @throws InterruptedException	if the harness is interrupted
+	 */
+	public void run() throws InterruptedException {
+		try {
+			runThroughput();
+			runEndToEnd();
+		} finally {
+			UpowerConnector.setCommandRunner(null);
+		}
+	}
+
+	/**
+	 * parses snapshots of the replay in a loop and prints the throughput
+	 */
+	private void runThroughput() {
+		final ReplayCommandRunner runner = createRunner(0);
+		UpowerConnector.setCommandRunner(runner);
+		final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		final long start = System.nanoTime();
+		while (System.nanoTime() < end)
+			UpowerConnector.getSnapshot();
+		final double elapsed = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format(Locale.ROOT,
+				"throughput: %d snapshots in %.1f s, %.0f snapshots/s, %d frames, %d changes", //$NON-NLS-1$
+				Long.valueOf(runner.getDumps()), Double.valueOf(elapsed),
+				Double.valueOf(runner.getDumps() / elapsed),
+				Long.valueOf(runner.getFrames()), Long.valueOf(runner.getChanges())));
+	}
+
+	/**
+	 * runs the upower module against the replay and prints the received
+	 * events, the lost events and the lag
+	 * 
+	 * @throws InterruptedException	if the harness is interrupted
+	 */
+	private void runEndToEnd() throws InterruptedException {
+		final ReplayCommandRunner runner = createRunner(speed);
+		UpowerConnector.setCommandRunner(runner);
+		System.setProperty(PowerSources.PROPERTY, UpowerCliSource.NAME);
+		final MessageBus messageBus = new MessageBus();
+		final CountingHandler handler = new CountingHandler(runner);
+		messageBus.registerAllEvents(handler, ListenerType.TARGET);
+		// every change of the load is published
+		new UpowerModule(messageBus, 1, new ReplayPolicy(tick)).getReady().join();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		// the module keeps on polling, but the last frame does not change
+		final long drain = System.currentTimeMillis() + DRAIN;
+		while (handler.snapshots.sum() < runner.getChanges()
+				&& System.currentTimeMillis() < drain)
+			Thread.sleep(10);
+		final long expected = runner.getChanges();
+		final long received = handler.snapshots.sum();
+		final long lags = handler.lags.sum();
+		System.out.println(String.format(Locale.ROOT,
+				"end to end: %d/%d frames, %d dumps, %d changes, %d received, %d lost", //$NON-NLS-1$
+				Long.valueOf(runner.getFrames()), Integer.valueOf(timeline.size()),
+				Long.valueOf(runner.getDumps()), Long.valueOf(expected),
+				Long.valueOf(received), Long.valueOf(Math.max(0, expected - received))));
+		System.out.println(String.format(Locale.ROOT,
+				"events: %d battery, %d charging, %d supplying, %d aggregate, %d ups, %d peripheral", //$NON-NLS-1$
+				Long.valueOf(handler.battery.sum()), Long.valueOf(handler.charging.sum()),
+				Long.valueOf(handler.supplying.sum()), Long.valueOf(handler.aggregate.sum()),
+				Long.valueOf(handler.ups.sum()), Long.valueOf(handler.peripheral.sum())));
+		System.out.println(String.format(Locale.ROOT,
+				"lag: mean %.3f ms, max %.3f ms", //$NON-NLS-1$
+				Double.valueOf(lags == 0 ? 0 : handler.lagSum.sum() / 1e6 / lags),
+				Double.valueOf(handler.lagMax.get() / 1e6)));
+		messageBus.postEvent(new ExitEvent(handler, null));
+	}
+
+	/**
+	 * @param replaySpeed	the speed of the runner, 0 for step mode
+	 * @return				a new runner of the timeline with the latency
+	 */
+	private ReplayCommandRunner createRunner(final double replaySpeed) {
+		final ReplayCommandRunner runner = new ReplayCommandRunner(timeline, replaySpeed);
+		runner.setLatency(latency, jitter, 1);
+		return runner;
+	}
+
+	/**
+	 * @param args		the arguments
+	 * @param index		the index of the argument
+	 * @param fallback	the value, if the argument is missing
+	 * @return			the argument as number
+	 */
+	private static long argument(final String[] args, final int index, final long fallback) {
+		return index < args.length ? Long.parseLong(args[index]) : fallback;
+	}
+
+	/**
+	 * @param arg	the argument
+	 * @return		true, if the argument is a number
+	 */
+	private static boolean isNumber(final String arg) {
+		return arg.chars().allMatch(Character::isDigit);
+	}
+
+	/**
+	 * The policy of the end to end run polls every check on every tick,
+	 * devices rarely
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static class ReplayPolicy implements PollingPolicy {
+
+		private final long tick;
+
+		/**
+		 * @param tick	the tick in milliseconds
+		 */
+		public ReplayPolicy(final long tick) {
+			this.tick = tick;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.github.koshamo.jupower.upower.PollingPolicy#getInterval(com.github.koshamo.jupower.upower.PollingPolicy.Check, com.github.koshamo.jupower.upower.PollingState)
+		 */
+		@Override
+		public long getInterval(final Check check, final PollingState state) {
+			return check == Check.DEVICES ? DEFAULT_TICK : tick;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.github.koshamo.jupower.upower.PollingPolicy#getTick()
+		 */
+		@Override
+		public long getTick() {
+			return tick;
+		}
+	}
+
+	/**
+	 * The handler counts the events of the upower module and measures the
+	 * lag of the device snapshots
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static class CountingHandler implements EventHandler {
+
+		private final ReplayCommandRunner runner;
+		final LongAdder snapshots = new LongAdder();
+		final LongAdder battery = new LongAdder();
+		final LongAdder charging = new LongAdder();
+		final LongAdder supplying = new LongAdder();
+		final LongAdder aggregate = new LongAdder();
+		final LongAdder ups = new LongAdder();
+		final LongAdder peripheral = new LongAdder();
+		final LongAdder lags = new LongAdder();
+		final LongAdder lagSum = new LongAdder();
+		final AtomicLong lagMax = new AtomicLong();
+
+		/**
+		 * @param runner	the runner, which has served the changes
+		 */
+		public CountingHandler(final ReplayCommandRunner runner) {
+			this.runner = runner;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.github.koshamo.fiddler.EventHandler#handle(com.github.koshamo.fiddler.Event)
+		 */
+		@Override
+		public void handle(final Event event) {
+			if (event instanceof DeviceSnapshotEvent) {
+				snapshots.increment();
+				final long served = runner.takeChangeTime();
+				if (served >= 0) {
+					final long lag = System.nanoTime() - served;
+					lags.increment();
+					lagSum.add(lag);
+					lagMax.accumulateAndGet(lag, Math::max);
+				}
+			}
+			if (event instanceof PowerStateEvent) {
+				final EventKeys key = ((PowerStateEvent) event).getKey();
+				if (key == EventKeys.BATTERY)
+					battery.increment();
+				if (key == EventKeys.CHARGING)
+					charging.increment();
+				if (key == EventKeys.SUPPLYING)
+					supplying.increment();
+				if (key == EventKeys.AGGREGATE_BATTERY)
+					aggregate.increment();
+				if (key == EventKeys.UPS_BATTERY)
+					ups.increment();
+				if (key == EventKeys.PERIPHERAL_BATTERY)
+					peripheral.increment();
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see com.github.koshamo.fiddler.EventHandler#shutdown()
+		 */
+		@Override
+		public void shutdown() {
+			// nothing to clean up
+		}
+	}
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.replay;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.github.koshamo.jupower.shared.Upower;
+
+/**
+ * A Timeline is a sequence of upower dumps, as printed by upower -d, each
+ * valid from its time on. The time is the simulated time, a
+ * ReplayCommandRunner replays it in steps or scaled to real time.
+ * 
+ * Timelines are recorded dumps or generated scripts, such as a complete
+ * discharge or plug and unplug cycles of line power.
+ * 
+ * @author jochen
+ *
+ */
+public final class Timeline {
+
+	private static final String BATTERY =
+			"/org/freedesktop/UPower/devices/battery_BAT0"; //$NON-NLS-1$
+	private static final String LINE_POWER =
+			"/org/freedesktop/UPower/devices/line_power_AC"; //$NON-NLS-1$
+	private static final double ENERGY_FULL = 48.0;
+	private static final double CHARGE_RATE = 24.0;
+	private static final String NL = "\n"; //$NON-NLS-1$
+
+	private final List<Frame> frames;
+
+	/**
+	 * One dump of a timeline with its devices
+	 * 
+	 * @author jochen
+	 *
+	 */
+	public static final class Frame {
+
+		private final long time;
+		private final String dump;
+		private final Map<String, String> blocks;
+		private final Map<String, String> values;
+
+		/**
+		 * @param time	the simulated time in milliseconds
+		 * @param dump	the output of upower -d
+		 */
+		Frame(final long time, final String dump) {
+			this.time = time;
+			this.dump = dump;
+			final Map<String, String> deviceBlocks = new LinkedHashMap<>();
+			final Map<String, String> deviceValues = new LinkedHashMap<>();
+			final String deviceKey = Upower.DUMP_DEVICE_KEY.getKey()
+					+ Upower.SPLITTER.getKey();
+			for (String block : dump.split("\\n\\s*\\n")) { //$NON-NLS-1$
+				final String trimmed = block.trim();
+				if (!trimmed.startsWith(deviceKey))
+					continue;
+				final int end = trimmed.indexOf('\n');
+				final String device = (end < 0 ? trimmed : trimmed.substring(0, end))
+						.substring(deviceKey.length()).trim();
+				deviceBlocks.put(device, trimmed.substring(end < 0 ? trimmed.length() : end + 1));
+				deviceValues.put(device, values(trimmed));
+			}
+			this.blocks = Collections.unmodifiableMap(deviceBlocks);
+			this.values = Collections.unmodifiableMap(deviceValues);
+		}
+
+		/**
+		 * @return	the simulated time in milliseconds, from which on this
+		 * frame is valid
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * @return	the output of upower -d
+		 */
+		public String getDump() {
+			return dump;
+		}
+
+		/**
+		 * @return	the devices as listed by upower -e
+		 */
+		public List<String> getDevices() {
+			return new ArrayList<>(blocks.keySet());
+		}
+
+		/**
+		 * @param device	the device of interest
+		 * @return			the output of upower -i for the device, an empty
+		 * string, if the device is unknown
+		 */
+		public String getInfo(final String device) {
+			final String block = blocks.get(device);
+			return block == null ? "" : block; //$NON-NLS-1$
+		}
+
+		/**
+		 * compares the values of a device with its values in the other
+		 * frame. The update time and the history are ignored, they do not
+		 * change the device snapshot.
+		 * 
+		 * @param device	the device of interest
+		 * @param other		the frame to compare with, may be null
+		 * @return			true, if the device is new or its values differ
+		 */
+		public boolean hasChanged(final String device, final Frame other) {
+			if (other == null)
+				return true;
+			final String before = other.values.get(device);
+			return before == null || !before.equals(values.get(device));
+		}
+
+		/**
+		 * helper method to strip the lines, which upower changes without
+		 * any value change, from a device block
+		 * 
+		 * @param block	the device block
+		 * @return		the lines of the values
+		 */
+		private static String values(final String block) {
+			final StringBuilder sb = new StringBuilder(block.length());
+			for (String line : block.split(NL)) {
+				final String trimmed = line.trim();
+				if (trimmed.startsWith("History")) //$NON-NLS-1$
+					break;
+				if (!trimmed.startsWith("updated")) //$NON-NLS-1$
+					sb.append(trimmed).append('\n');
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * @param frames	the frames in the order of their time
+	 */
+	private Timeline(final List<Frame> frames) {
+		if (frames.isEmpty())
+			throw new IllegalArgumentException("a timeline needs a frame"); //$NON-NLS-1$
+		this.frames = Collections.unmodifiableList(frames);
+	}
+
+	/**
+	 * creates a timeline of recorded dumps, which follow each other in the
+	 * given step
+	 * 
+	 * @param step	the simulated time between two dumps in milliseconds
+	 * @param dumps	the outputs of upower -d
+	 * @return		the timeline
+	 */
+	public static Timeline recorded(final long step, final String... dumps) {
+		final List<Frame> frames = new ArrayList<>(dumps.length);
+		for (int i = 0; i < dumps.length; ++i)
+			frames.add(new Frame(i * step, dumps[i]));
+		return new Timeline(frames);
+	}
+
+	/**
+	 * like recorded(long, String...), but the dumps are read from files
+	 * 
+	 * @param step	the simulated time between two dumps in milliseconds
+	 * @param files	the files with the outputs of upower -d
+	 * @return		the timeline
+	 * @throws IOException	if a file can not be read
+	 */
+	public static Timeline load(final long step, final Path... files) throws IOException {
+		final String[] dumps = new String[files.length];
+		for (int i = 0; i < files.length; ++i)
+			dumps[i] = new String(Files.readAllBytes(files[i]), StandardCharsets.UTF_8);
+		return recorded(step, dumps);
+	}
+
+	/**
+	 * creates a discharge of a full battery down to empty with line power
+	 * unplugged, the load drops by one percent per frame
+	 * 
+	 * @param duration	the simulated time of the discharge in milliseconds
+	 * @return			the timeline
+	 */
+	public static Timeline discharge(final long duration) {
+		final double rate = ENERGY_FULL / (duration / 3_600_000.0);
+		final List<Frame> frames = new ArrayList<>(101);
+		for (int percentage = 100; percentage >= 0; --percentage)
+			frames.add(new Frame(duration * (100 - percentage) / 100,
+					dump(percentage, false, rate)));
+		return new Timeline(frames);
+	}
+
+	/**
+	 * creates cycles of plugging in and unplugging line power with a
+	 * constant battery load. Each cycle has two frames, plugged in and
+	 * unplugged.
+	 * 
+	 * @param cycles	the number of cycles
+	 * @param period	the simulated time of one cycle in milliseconds
+	 * @return			the timeline
+	 */
+	public static Timeline plugCycles(final int cycles, final long period) {
+		final List<Frame> frames = new ArrayList<>(2 * cycles);
+		final String plugged = dump(80, true, CHARGE_RATE);
+		final String unplugged = dump(80, false, CHARGE_RATE / 2);
+		for (int i = 0; i < cycles; ++i) {
+			frames.add(new Frame(i * period, plugged));
+			frames.add(new Frame(i * period + period / 2, unplugged));
+		}
+		return new Timeline(frames);
+	}
+
+	/**
+	 * @return	the number of frames
+	 */
+	public int size() {
+		return frames.size();
+	}
+
+	/**
+	 * @param index	the index of the frame
+	 * @return		the frame
+	 */
+	public Frame get(final int index) {
+		return frames.get(index);
+	}
+
+	/**
+	 * @return	the simulated time of the last frame in milliseconds
+	 */
+	public long getDuration() {
+		return frames.get(frames.size() - 1).getTime();
+	}
+
+	/**
+	 * finds the frame valid at the given simulated time
+	 * 
+	 * @param time	the simulated time in milliseconds
+	 * @return		the index of the last frame, which starts at or before
+	 * the time, 0 if the time is before the first frame
+	 */
+	public int indexAt(final long time) {
+		int low = 0;
+		int high = frames.size() - 1;
+		while (low < high) {
+			final int mid = (low + high + 1) >>> 1;
+			if (frames.get(mid).getTime() <= time)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * helper method to create the dump of a battery and line power in the
+	 * format of upower 0.99.4
+	 * 
+	 * @param percentage	the battery load
+	 * @param online		true, if line power is plugged in, the battery is
+	 * charging then, unless it is full
+	 * @param rate			the charge or discharge rate in W
+	 * @return				the output of upower -d
+	 */
+	private static String dump(final int percentage, final boolean online,
+			final double rate) {
+		final double energy = ENERGY_FULL * percentage / 100;
+		final boolean charging = online && percentage < 100;
+		final String state = charging ? "charging"  //$NON-NLS-1$
+				: online ? "fully-charged" : "discharging"; //$NON-NLS-1$ //$NON-NLS-2$
+		final StringBuilder sb = new StringBuilder(1024);
+		sb.append("Device: ").append(LINE_POWER).append(NL) //$NON-NLS-1$
+			.append("  native-path:          AC").append(NL) //$NON-NLS-1$
+			.append("  power supply:         yes").append(NL) //$NON-NLS-1$
+			.append("  line-power").append(NL) //$NON-NLS-1$
+			.append("    online:              ").append(online ? "yes" : "no").append(NL) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			.append(NL)
+			.append("Device: ").append(BATTERY).append(NL) //$NON-NLS-1$
+			.append("  native-path:          BAT0").append(NL) //$NON-NLS-1$
+			.append("  power supply:         yes").append(NL) //$NON-NLS-1$
+			.append("  battery").append(NL) //$NON-NLS-1$
+			.append("    present:             yes").append(NL) //$NON-NLS-1$
+			.append("    state:               ").append(state).append(NL) //$NON-NLS-1$
+			.append("    energy:              ").append(decimal(energy)).append(" Wh").append(NL) //$NON-NLS-1$ //$NON-NLS-2$
+			.append("    energy-full:         ").append(decimal(ENERGY_FULL)).append(" Wh").append(NL) //$NON-NLS-1$ //$NON-NLS-2$
+			.append("    energy-rate:         ").append(decimal(rate)).append(" W").append(NL) //$NON-NLS-1$ //$NON-NLS-2$
+			.append("    voltage:             12.3 V").append(NL); //$NON-NLS-1$
+		if (charging)
+			sb.append("    time to full:        ") //$NON-NLS-1$
+				.append(decimal((ENERGY_FULL - energy) / rate)).append(" hours").append(NL); //$NON-NLS-1$
+		else if (!online && percentage > 0)
+			sb.append("    time to empty:       ") //$NON-NLS-1$
+				.append(decimal(energy / rate)).append(" hours").append(NL); //$NON-NLS-1$
+		sb.append("    percentage:          ").append(percentage).append('%').append(NL) //$NON-NLS-1$
+			.append("    capacity:            100%").append(NL) //$NON-NLS-1$
+			.append("    technology:          lithium-ion").append(NL) //$NON-NLS-1$
+			.append(NL)
+			.append("Daemon:").append(NL) //$NON-NLS-1$
+			.append("  daemon-version:  0.99.4").append(NL) //$NON-NLS-1$
+			.append("  on-battery:      ").append(online ? "no" : "yes").append(NL); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		return sb.toString();
+	}
+
+	/**
+	 * @param value	the value
+	 * @return		the value with one decimal, as upower prints it
+	 */
+	private static String decimal(final double value) {
+		return String.format(Locale.ROOT, "%.1f", Double.valueOf(value)); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+/**
+ * BatteryAggregate is the immutable combined state of all batteries of the
+ * system. The load is weighted by the energy of the batteries, if known,
+ * thus a small and a large battery at 50% and 100% are not shown as 75%.
+ * 
+ * @author jochen
+ *
+ */
+public final class BatteryAggregate {
+
+	// the loads in percent, the user is warned at
+	public static final int EARLY_WARNING = 20;
+	public static final int URGENT_WARNING = 7;
+
+	private final int batteries;
+	private final double level;
+	private final double energy;
+	private final double energyFull;
+	private final double energyRate;
+	private final boolean charging;
+
+	/**
+	 * @param batteries		the number of batteries
+	 * @param level			the combined load in percent
+	 * @param energy		the combined energy in Wh, 0 if unknown
+	 * @param energyFull	the combined energy of the full batteries in Wh,
+	 * 0 if unknown
+	 * @param energyRate	the combined rate in W, positive while charging,
+	 * negative while discharging
+	 * @param charging		true, if any battery is charging
+	 */
+	public BatteryAggregate(final int batteries, final double level, 
+			final double energy, final double energyFull, 
+			final double energyRate, final boolean charging) {
+		this.batteries = batteries;
+		this.level = level;
+		this.energy = energy;
+		this.energyFull = energyFull;
+		this.energyRate = energyRate;
+		this.charging = charging;
+	}
+
+	/**
+	 * @return	the number of batteries
+	 */
+	public int getBatteries() {
+		return batteries;
+	}
+
+	/**
+	 * @return	the combined load in percent
+	 */
+	public double getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return	the combined load in percent, rounded
+	 */
+	public int getPercentage() {
+		return (int) Math.round(level);
+	}
+
+	/**
+	 * @return	the combined energy in Wh, 0 if unknown
+	 */
+	public double getEnergy() {
+		return energy;
+	}
+
+	/**
+	 * @return	the combined energy of the full batteries in Wh, 0 if unknown
+	 */
+	public double getEnergyFull() {
+		return energyFull;
+	}
+
+	/**
+	 * @return	the combined rate in W, positive while charging, negative
+	 * while discharging
+	 */
+	public double getEnergyRate() {
+		return energyRate;
+	}
+
+	/**
+	 * @return	true, if any battery is charging
+	 */
+	public boolean isCharging() {
+		return charging;
+	}
+
+	/**
+	 * @return	the time until all batteries are empty at the combined rate
+	 * in seconds, -1 if the batteries are not discharging or the energy is
+	 * unknown
+	 */
+	public long getTimeToEmpty() {
+		if (energyRate >= 0 || energyFull <= 0)
+			return -1;
+		return (long) (energy / -energyRate * 3600);
+	}
+
+	/**
+	 * @return	the time until all batteries are full at the combined rate
+	 * in seconds, -1 if the batteries are not charging or the energy is
+	 * unknown
+	 */
+	public long getTimeToFull() {
+		if (energyRate <= 0 || energyFull <= 0)
+			return -1;
+		return (long) ((energyFull - energy) / energyRate * 3600);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return batteries + " batteries: " + getPercentage() + "%, " //$NON-NLS-1$ //$NON-NLS-2$
+				+ energy + " / " + energyFull + " Wh, rate: " + energyRate + " W"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+import com.github.koshamo.fiddler.DataEvent;
+import com.github.koshamo.fiddler.EventHandler;
+
+/**
+ * This class provides a concrete DataEvent with the key AGGREGATE and the
+ * combined state of all batteries as value.
+ * 
+ * @author jochen
+ *
+ */
+public class BatteryAggregateEvent extends DataEvent<String, BatteryAggregate> {
+
+	/**
+	 * constructor inherited from super class to construct a data event
+	 * 
+	 * @param source	the sender of this event
+	 * @param target	the target of this event, may be null
+	 * @param meta		the key AGGREGATE
+	 * @param data		the combined state of all batteries
+	 */
+	public BatteryAggregateEvent(EventHandler source, EventHandler target, String meta, BatteryAggregate data) {
+		super(source, target, meta, data);
+	}
+
+}
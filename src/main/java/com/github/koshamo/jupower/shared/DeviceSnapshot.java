@@ -0,0 +1,218 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+import java.util.Objects;
+
+/**
+ * DeviceSnapshot is the immutable state of one power device at the time
+ * the snapshot has been taken. All values of a device are parsed at once,
+ * thus consumers do not need to query the device for every single value.
+ * 
+ * Energies are given in Wh, the energy rate in W, the voltage in V and
+ * times in seconds. Values, which are not provided by a device, are 0.
+ * 
+ * @author jochen
+ *
+ */
+public final class DeviceSnapshot {
+
+	private final String device;
+	private final int percentage;
+	private final boolean charging;
+	private final boolean discharging;
+	private final boolean online;
+	private final double energy;
+	private final double energyFull;
+	private final double energyRate;
+	private final double voltage;
+	private final long timeToEmpty;
+	private final long timeToFull;
+	private final Technology technology;
+	private final double capacity;
+	private final boolean powerSupply;
+	private final DeviceType type;
+
+	/**
+	 * creates the snapshot of a device from the given values, which are
+	 * copied
+	 * 
+	 * @param device	the device name
+	 * @param values	the current values of the device
+	 */
+	public DeviceSnapshot(final String device, final DeviceValues values) {
+		this.device = Objects.requireNonNull(device);
+		this.percentage = values.percentage;
+		this.charging = values.charging;
+		this.discharging = values.discharging;
+		this.online = values.online;
+		this.energy = values.energy;
+		this.energyFull = values.energyFull;
+		this.energyRate = values.energyRate;
+		this.voltage = values.voltage;
+		this.timeToEmpty = values.timeToEmpty;
+		this.timeToFull = values.timeToFull;
+		this.technology = values.technology;
+		this.capacity = values.capacity;
+		this.powerSupply = values.powerSupply;
+		this.type = DeviceType.classify(device, values.type, values.powerSupply);
+	}
+
+	/**
+	 * @return	the device name
+	 */
+	public String getDevice() {
+		return device;
+	}
+
+	/**
+	 * @return	the battery load in percent
+	 */
+	public int getPercentage() {
+		return percentage;
+	}
+
+	/**
+	 * @return	true, if the battery is charging
+	 */
+	public boolean isCharging() {
+		return charging;
+	}
+
+	/**
+	 * @return	true, if the battery is discharging
+	 */
+	public boolean isDischarging() {
+		return discharging;
+	}
+
+	/**
+	 * @return	true, if the line power is supplying
+	 */
+	public boolean isOnline() {
+		return online;
+	}
+
+	/**
+	 * @return	the energy currently stored in Wh
+	 */
+	public double getEnergy() {
+		return energy;
+	}
+
+	/**
+	 * @return	the energy stored, if fully charged, in Wh
+	 */
+	public double getEnergyFull() {
+		return energyFull;
+	}
+
+	/**
+	 * @return	the charge or discharge rate in W
+	 */
+	public double getEnergyRate() {
+		return energyRate;
+	}
+
+	/**
+	 * @return	the current voltage in V
+	 */
+	public double getVoltage() {
+		return voltage;
+	}
+
+	/**
+	 * @return	the estimated time to empty in seconds, 0 if not discharging
+	 */
+	public long getTimeToEmpty() {
+		return timeToEmpty;
+	}
+
+	/**
+	 * @return	the estimated time to full in seconds, 0 if not charging
+	 */
+	public long getTimeToFull() {
+		return timeToFull;
+	}
+
+	/**
+	 * @return	the battery technology
+	 */
+	public Technology getTechnology() {
+		return technology;
+	}
+
+	/**
+	 * @return	the full energy compared to the design energy in percent
+	 */
+	public double getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return	true, if the device supplies the computer, false for the
+	 * battery of a peripheral
+	 */
+	public boolean isPowerSupply() {
+		return powerSupply;
+	}
+
+	/**
+	 * @return	the type of the device, classified by its name and the
+	 * reported values
+	 */
+	public DeviceType getType() {
+		return type;
+	}
+
+	/**
+	 * checks, if this snapshot holds the given values, which can be used
+	 * to reuse an unchanged snapshot
+	 * 
+	 * @param values	the current values of the device
+	 * @return			true, if all values are equal
+	 */
+	public boolean hasValues(final DeviceValues values) {
+		return percentage == values.percentage
+				&& charging == values.charging
+				&& discharging == values.discharging
+				&& online == values.online
+				&& energy == values.energy
+				&& energyFull == values.energyFull
+				&& energyRate == values.energyRate
+				&& voltage == values.voltage
+				&& timeToEmpty == values.timeToEmpty
+				&& timeToFull == values.timeToFull
+				&& technology == values.technology
+				&& capacity == values.capacity
+				&& powerSupply == values.powerSupply
+				&& type == DeviceType.classify(device, values.type, values.powerSupply);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return device + " (" + type.getKey() + "): " + percentage  //$NON-NLS-1$ //$NON-NLS-2$
+				+ "%, charging: " + charging  //$NON-NLS-1$
+				+ ", online: " + online + ", energy: " + energy + " Wh / "  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ energyFull + " Wh, rate: " + energyRate + " W, voltage: "  //$NON-NLS-1$ //$NON-NLS-2$
+				+ voltage + " V, time to empty: " + timeToEmpty  //$NON-NLS-1$
+				+ " s, time to full: " + timeToFull + " s, " + technology  //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", capacity: " + capacity + "%"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+/**
+ * This enum describes the types of the devices upower reports. The key is
+ * the type, as upower prints it in the device block, e.g. line-power, the
+ * device names start with the key, with underscores instead of dashes,
+ * e.g. line_power_AC.
+ * 
+ * The types are grouped into classes, which are monitored differently:
+ * <ul>
+ * <li>system: the batteries and line power supplies of the computer</li>
+ * <li>UPS: uninterruptible power supplies</li>
+ * <li>peripherals: wireless devices with their own battery, such as mice
+ * or headsets</li>
+ * </ul>
+ * 
+ * @author jochen
+ *
+ */
+public enum DeviceType {
+	BATTERY ("battery"), //$NON-NLS-1$
+	LINE_POWER ("line-power"), //$NON-NLS-1$
+	UPS ("ups"), //$NON-NLS-1$
+	MOUSE ("mouse"), //$NON-NLS-1$
+	KEYBOARD ("keyboard"), //$NON-NLS-1$
+	TOUCHPAD ("touchpad"), //$NON-NLS-1$
+	PEN ("pen"), //$NON-NLS-1$
+	GAMING_INPUT ("gaming-input"), //$NON-NLS-1$
+	HEADSET ("headset"), //$NON-NLS-1$
+	HEADPHONES ("headphones"), //$NON-NLS-1$
+	SPEAKERS ("speakers"), //$NON-NLS-1$
+	PHONE ("phone"), //$NON-NLS-1$
+	TABLET ("tablet"), //$NON-NLS-1$
+	MEDIA_PLAYER ("media-player"), //$NON-NLS-1$
+	// a battery, which does not supply the computer
+	PERIPHERAL ("peripheral"), //$NON-NLS-1$
+	// the composite device of upower, which combines all batteries
+	DISPLAY ("DisplayDevice"), //$NON-NLS-1$
+	UNKNOWN ("unknown"); //$NON-NLS-1$
+
+	private static final DeviceType[] TYPES = values();
+
+	private final String key;
+	private final String prefix;
+
+	DeviceType(String key) {
+		this.key = key;
+		this.prefix = key.replace('-', '_') + "_"; //$NON-NLS-1$
+	}
+
+	/**
+	 * access to the key
+	 * @return	the key as String
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return	true for the batteries and line power supplies of the
+	 * computer
+	 */
+	public boolean isSystem() {
+		return this == BATTERY || this == LINE_POWER;
+	}
+
+	/**
+	 * @return	true for devices with their own battery, which do not supply
+	 * the computer
+	 */
+	public boolean isPeripheral() {
+		return this != UPS && this != DISPLAY && this != UNKNOWN && !isSystem();
+	}
+
+	/**
+	 * classifies a device by its name, e.g. 
+	 * /org/freedesktop/UPower/devices/mouse_hidpp_battery_0 is a MOUSE
+	 * 
+	 * @param device	the device name
+	 * @return			the type, UNKNOWN if the name does not tell
+	 */
+	public static DeviceType fromName(final String device) {
+		final int name = device.lastIndexOf('/') + 1;
+		if (device.startsWith(DISPLAY.key, name))
+			return DISPLAY;
+		for (DeviceType type : TYPES)
+			if (type != DISPLAY && device.startsWith(type.prefix, name))
+				return type;
+		return UNKNOWN;
+	}
+
+	/**
+	 * classifies a device by its name and the values reported for it. The
+	 * reported type wins, thus a peripheral named like a battery, e.g.
+	 * battery_hidpp_battery_0, is still recognized. A battery, which does
+	 * not supply the computer, is a PERIPHERAL.
+	 * 
+	 * @param device		the device name
+	 * @param reported		the type reported by the power source, UNKNOWN
+	 * if not reported
+	 * @param powerSupply	true, if the device supplies the computer
+	 * @return				the type of the device
+	 */
+	public static DeviceType classify(final String device, 
+			final DeviceType reported, final boolean powerSupply) {
+		final DeviceType named = fromName(device);
+		if (named == DISPLAY)
+			return DISPLAY;
+		final DeviceType type = reported != UNKNOWN ? reported : named;
+		if (type == BATTERY && !powerSupply)
+			return PERIPHERAL;
+		return type;
+	}
+}
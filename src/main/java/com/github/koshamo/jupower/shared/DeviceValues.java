@@ -0,0 +1,187 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+/**
+ * DeviceValues is the mutable counterpart of DeviceSnapshot. Parsers fill
+ * one reused instance while reading a device, thus it can be checked 
+ * without allocation, if the device has changed since its last snapshot.
+ * Values, which are not provided by a device, stay 0.
+ * 
+ * Energies are given in Wh, the energy rate in W, the voltage in V and
+ * times in seconds.
+ * 
+ * @author jochen
+ *
+ */
+public final class DeviceValues {
+
+	int percentage;
+	boolean charging;
+	boolean discharging;
+	boolean online;
+	double energy;
+	double energyFull;
+	double energyRate;
+	double voltage;
+	long timeToEmpty;
+	long timeToFull;
+	Technology technology = Technology.UNKNOWN;
+	double capacity;
+	DeviceType type = DeviceType.UNKNOWN;
+	boolean powerSupply = true;
+	
+	/**
+	 * resets all values to their defaults
+	 */
+	public void clear() {
+		percentage = 0;
+		charging = false;
+		discharging = false;
+		online = false;
+		energy = 0;
+		energyFull = 0;
+		energyRate = 0;
+		voltage = 0;
+		timeToEmpty = 0;
+		timeToFull = 0;
+		technology = Technology.UNKNOWN;
+		capacity = 0;
+		type = DeviceType.UNKNOWN;
+		powerSupply = true;
+	}
+	
+	/**
+	 * @param percentage	the battery load in percent
+	 */
+	public void setPercentage(final int percentage) {
+		this.percentage = percentage;
+	}
+	
+	/**
+	 * @param charging	true, if the battery is charging
+	 */
+	public void setCharging(final boolean charging) {
+		this.charging = charging;
+	}
+	
+	/**
+	 * @param online	true, if the line power is supplying
+	 */
+	public void setOnline(final boolean online) {
+		this.online = online;
+	}
+	
+	/**
+	 * @param energy	the energy currently stored in Wh
+	 */
+	public void setEnergy(final double energy) {
+		this.energy = energy;
+	}
+	
+	/**
+	 * @param energyFull	the energy stored, if fully charged, in Wh
+	 */
+	public void setEnergyFull(final double energyFull) {
+		this.energyFull = energyFull;
+	}
+	
+	/**
+	 * @param energyRate	the charge or discharge rate in W
+	 */
+	public void setEnergyRate(final double energyRate) {
+		this.energyRate = energyRate;
+	}
+	
+	/**
+	 * @param voltage	the current voltage in V
+	 */
+	public void setVoltage(final double voltage) {
+		this.voltage = voltage;
+	}
+	
+	/**
+	 * @param timeToEmpty	the estimated time to empty in seconds
+	 */
+	public void setTimeToEmpty(final long timeToEmpty) {
+		this.timeToEmpty = timeToEmpty;
+	}
+	
+	/**
+	 * @param timeToFull	the estimated time to full in seconds
+	 */
+	public void setTimeToFull(final long timeToFull) {
+		this.timeToFull = timeToFull;
+	}
+	
+	/**
+	 * @param technology	the battery technology, must not be null
+	 */
+	public void setTechnology(final Technology technology) {
+		this.technology = technology;
+	}
+	
+	/**
+	 * @param capacity	the full energy compared to the design in percent
+	 */
+	public void setCapacity(final double capacity) {
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * @param discharging	true, if the battery is discharging
+	 */
+	public void setDischarging(final boolean discharging) {
+		this.discharging = discharging;
+	}
+	
+	/**
+	 * @param type	the device type reported by the power source, must not
+	 * be null
+	 */
+	public void setType(final DeviceType type) {
+		this.type = type;
+	}
+	
+	/**
+	 * @param powerSupply	true, if the device supplies the computer, which
+	 * is the default
+	 */
+	public void setPowerSupply(final boolean powerSupply) {
+		this.powerSupply = powerSupply;
+	}
+	
+	/**
+	 * @return	the battery load in percent
+	 */
+	public int getPercentage() {
+		return percentage;
+	}
+	
+	/**
+	 * @return	true, if the battery is charging
+	 */
+	public boolean isCharging() {
+		return charging;
+	}
+	
+	/**
+	 * @return	true, if the line power is supplying
+	 */
+	public boolean isOnline() {
+		return online;
+	}
+}
@@ -16,7 +16,9 @@
 package com.github.koshamo.jupower.shared;
 
 /**
- * This enum describes the keys for Events sent by the Upower connector
+ * This enum describes the keys of the PowerStateEvents, which are posted
+ * by the UpowerModule and the GUI, and of the data events of the 
+ * UpowerModule, such as the aggregate and the time estimates
  * 
  * @author jochen
  *
@@ -24,7 +26,21 @@ package com.github.koshamo.jupower.shared;
 public enum EventKeys {
 	BATTERY ("Battery"), //$NON-NLS-1$
 	CHARGING ("Charging"), //$NON-NLS-1$
-	SUPPLYING ("Supplying"); //$NON-NLS-1$
+	SUPPLYING ("Supplying"), //$NON-NLS-1$
+	GUI_VISIBLE ("GuiVisible"), //$NON-NLS-1$
+	BATTERY_POLL ("BatteryPoll"), //$NON-NLS-1$
+	CHARGE_POLL ("ChargePoll"), //$NON-NLS-1$
+	TIME_TO_EMPTY ("TimeToEmpty"), //$NON-NLS-1$
+	TIME_TO_FULL ("TimeToFull"), //$NON-NLS-1$
+	AGGREGATE ("Aggregate"), //$NON-NLS-1$
+	AGGREGATE_BATTERY ("AggregateBattery"), //$NON-NLS-1$
+	AGGREGATE_CHARGING ("AggregateCharging"), //$NON-NLS-1$
+	AGGREGATE_SUPPLYING ("AggregateSupplying"), //$NON-NLS-1$
+	UPS_BATTERY ("UpsBattery"), //$NON-NLS-1$
+	UPS_ON_BATTERY ("UpsOnBattery"), //$NON-NLS-1$
+	PERIPHERAL_BATTERY ("PeripheralBattery"), //$NON-NLS-1$
+	DEVICE_REMOVED ("DeviceRemoved"), //$NON-NLS-1$
+	STATE_REQUEST ("StateRequest"); //$NON-NLS-1$
 	
 	private final String key;
 	
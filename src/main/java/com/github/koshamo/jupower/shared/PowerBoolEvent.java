@@ -0,0 +1,58 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+import com.github.koshamo.fiddler.EventHandler;
+
+/**
+ * This class provides a PowerStateEvent with a boolean value, such as the
+ * charging or supplying state.
+ * 
+ * @author jochen
+ *
+ */
+public final class PowerBoolEvent extends PowerStateEvent {
+
+	private final boolean value;
+
+	/**
+	 * @param source	the sender of this event
+	 * @param target	the target of this event, may be null
+	 * @param key		the key describing the value
+	 * @param device	the device the value belongs to, may be null
+	 * @param value		the actual value
+	 */
+	public PowerBoolEvent(final EventHandler source, final EventHandler target, 
+			final EventKeys key, final String device, final boolean value) {
+		super(source, target, key, device);
+		this.value = value;
+	}
+
+	/**
+	 * @return	the actual value
+	 */
+	public boolean getValue() {
+		return value;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.shared.PowerStateEvent#dispatch(com.github.koshamo.jupower.shared.PowerStateDispatcher)
+	 */
+	@Override
+	boolean dispatch(final PowerStateDispatcher dispatcher) {
+		return dispatcher.dispatchBool(getKey(), getDevice(), value);
+	}
+}
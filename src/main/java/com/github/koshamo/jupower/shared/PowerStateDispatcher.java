@@ -0,0 +1,131 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+import com.github.koshamo.fiddler.Event;
+
+/**
+ * PowerStateDispatcher routes PowerStateEvents to handlers registered per
+ * EventKeys constant. The handlers are kept in arrays indexed by the
+ * ordinal of the key, thus dispatching needs one instanceof check, one
+ * virtual call and one array access, no String comparison and no boxing.
+ * 
+ * The handlers must be registered, before the dispatcher receives events,
+ * usually in the constructor of the module, which registers at the
+ * message bus afterwards.
+ * 
+ * @author jochen
+ *
+ */
+public final class PowerStateDispatcher {
+
+	private final IntHandler[] intHandlers = new IntHandler[EventKeys.values().length];
+	private final BoolHandler[] boolHandlers = new BoolHandler[EventKeys.values().length];
+
+	/**
+	 * The IntHandler receives the values of PowerIntEvents
+	 * 
+	 * @author jochen
+	 *
+	 */
+	@FunctionalInterface
+	public interface IntHandler {
+		/**
+		 * @param device	the device the value belongs to, may be null
+		 * @param value		the value
+		 */
+		void handle(String device, int value);
+	}
+
+	/**
+	 * The BoolHandler receives the values of PowerBoolEvents
+	 * 
+	 * @author jochen
+	 *
+	 */
+	@FunctionalInterface
+	public interface BoolHandler {
+		/**
+		 * @param device	the device the value belongs to, may be null
+		 * @param value		the value
+		 */
+		void handle(String device, boolean value);
+	}
+
+	/**
+	 * registers the handler of the int values of the key, replacing a
+	 * previously registered one
+	 * 
+	 * @param key		the key
+	 * @param handler	the handler, null to remove the handler
+	 */
+	public void onInt(final EventKeys key, final IntHandler handler) {
+		intHandlers[key.ordinal()] = handler;
+	}
+
+	/**
+	 * registers the handler of the boolean values of the key, replacing a
+	 * previously registered one
+	 * 
+	 * @param key		the key
+	 * @param handler	the handler, null to remove the handler
+	 */
+	public void onBool(final EventKeys key, final BoolHandler handler) {
+		boolHandlers[key.ordinal()] = handler;
+	}
+
+	/**
+	 * passes the value of a PowerStateEvent to the handler registered for
+	 * its key and type
+	 * 
+	 * @param event	any event of the message bus
+	 * @return		true, if the event is a PowerStateEvent and a handler
+	 * has been called
+	 */
+	public boolean dispatch(final Event event) {
+		if (event instanceof PowerStateEvent)
+			return ((PowerStateEvent) event).dispatch(this);
+		return false;
+	}
+
+	/**
+	 * @param key		the key of the event
+	 * @param device	the device of the event
+	 * @param value		the value of the event
+	 * @return			true, if a handler has been called
+	 */
+	boolean dispatchInt(final EventKeys key, final String device, final int value) {
+		final IntHandler handler = intHandlers[key.ordinal()];
+		if (handler == null)
+			return false;
+		handler.handle(device, value);
+		return true;
+	}
+
+	/**
+	 * @param key		the key of the event
+	 * @param device	the device of the event
+	 * @param value		the value of the event
+	 * @return			true, if a handler has been called
+	 */
+	boolean dispatchBool(final EventKeys key, final String device, final boolean value) {
+		final BoolHandler handler = boolHandlers[key.ordinal()];
+		if (handler == null)
+			return false;
+		handler.handle(device, value);
+		return true;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+import java.util.Objects;
+
+import com.github.koshamo.fiddler.DataEvent;
+import com.github.koshamo.fiddler.EventHandler;
+
+/**
+ * PowerStateEvent is the base of the events carrying a single power state
+ * value. The meta information is the EventKeys constant, the data is the
+ * device, the value is kept as primitive by the subclasses. Thus a
+ * receiver neither compares Strings nor unboxes the value, the
+ * PowerStateDispatcher routes the event by the ordinal of its key.
+ * 
+ * @author jochen
+ *
+ */
+public abstract class PowerStateEvent extends DataEvent<EventKeys, String> {
+
+	/**
+	 * @param source	the sender of this event
+	 * @param target	the target of this event, may be null
+	 * @param key		the key describing the value
+	 * @param device	the device the value belongs to, null, if the value
+	 * does not belong to a device
+	 */
+	protected PowerStateEvent(final EventHandler source, final EventHandler target, 
+			final EventKeys key, final String device) {
+		super(source, target, Objects.requireNonNull(key), device);
+	}
+
+	/**
+	 * @return	the key describing the value
+	 */
+	public EventKeys getKey() {
+		return getMetaInformation();
+	}
+
+	/**
+	 * @return	the device the value belongs to, may be null
+	 */
+	public String getDevice() {
+		return getData();
+	}
+
+	/**
+	 * passes the value to the handler of the dispatcher registered for the
+	 * key and type of this event
+	 * 
+	 * @param dispatcher	the dispatcher
+	 * @return				true, if a handler has been called
+	 */
+	abstract boolean dispatch(PowerStateDispatcher dispatcher);
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * StartupMetrics records, when the steps of the startup have completed,
+ * in milliseconds since the start of the JVM. Only the first completion 
+ * of a step is recorded, thus a step, which is repeated later, like an 
+ * icon update, does not change its metric.
+ * 
+ * @author jochen
+ *
+ */
+public final class StartupMetrics {
+
+	/**
+	 * the steps of the startup
+	 * 
+	 * @author jochen
+	 *
+	 */
+	public enum Step {
+		UPOWER_READY ("UpowerReady"), //$NON-NLS-1$
+		TOOLKIT_READY ("ToolkitReady"), //$NON-NLS-1$
+		TRAY_READY ("TrayReady"), //$NON-NLS-1$
+		FIRST_ICON ("FirstIcon"); //$NON-NLS-1$
+
+		private final String key;
+
+		Step (String key) {
+			this.key = key;
+		}
+
+		public String getKey() {
+			return key;
+		}
+	}
+
+	private static final AtomicLongArray TIMES = new AtomicLongArray(Step.values().length);
+
+	/**
+	 * private constructor, to prevent users to instantiate this class
+	 */
+	private StartupMetrics() {
+		// prevent instantiation
+	}
+
+	/**
+	 * records the completion of a step, if it has not been recorded yet
+	 * 
+	 * @param step	the completed step
+	 * @return		the time since the start of the JVM in milliseconds, 
+	 * which has been recorded for the step
+	 */
+	public static long record(final Step step) {
+		final long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+		// the JVM needs a millisecond at least, thus 0 is never recorded
+		if (TIMES.compareAndSet(step.ordinal(), 0, Math.max(1, uptime)))
+			return uptime;
+		return TIMES.get(step.ordinal());
+	}
+
+	/**
+	 * @param step	the step
+	 * @return		the time of the completion of the step since the start
+	 * of the JVM in milliseconds, -1 if the step has not completed yet
+	 */
+	public static long get(final Step step) {
+		final long time = TIMES.get(step.ordinal());
+		return time == 0 ? -1 : time;
+	}
+
+	/**
+	 * @return	the recorded steps, like "UpowerReady 120 ms, FirstIcon 
+	 * 480 ms"
+	 */
+	public static String format() {
+		final StringBuilder sb = new StringBuilder();
+		for (Step step : Step.values()) {
+			final long time = get(step);
+			if (time < 0)
+				continue;
+			if (sb.length() > 0)
+				sb.append(", "); //$NON-NLS-1$
+			sb.append(step.getKey()).append(' ').append(time).append(" ms"); //$NON-NLS-1$
+		}
+		return sb.toString();
+	}
+}
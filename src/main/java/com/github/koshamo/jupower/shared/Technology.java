@@ -0,0 +1,57 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+/**
+ * This enum describes the battery technology. Each technology knows its
+ * name as printed by upower and as provided by the kernel in sysfs.
+ * 
+ * @author jochen
+ *
+ */
+public enum Technology {
+	UNKNOWN ("unknown", "Unknown"), //$NON-NLS-1$ //$NON-NLS-2$
+	LITHIUM_ION ("lithium-ion", "Li-ion"), //$NON-NLS-1$ //$NON-NLS-2$
+	LITHIUM_POLYMER ("lithium-polymer", "Li-poly"), //$NON-NLS-1$ //$NON-NLS-2$
+	LITHIUM_IRON_PHOSPHATE ("lithium-iron-phosphate", "LiFe"), //$NON-NLS-1$ //$NON-NLS-2$
+	LEAD_ACID ("lead-acid", "Lead-acid"), //$NON-NLS-1$ //$NON-NLS-2$
+	NICKEL_CADMIUM ("nickel-cadmium", "NiCd"), //$NON-NLS-1$ //$NON-NLS-2$
+	NICKEL_METAL_HYDRIDE ("nickel-metal-hydride", "NiMH"); //$NON-NLS-1$ //$NON-NLS-2$
+	
+	private final String upowerKey;
+	private final String sysfsKey;
+	
+	Technology(String upowerKey, String sysfsKey) {
+		this.upowerKey = upowerKey;
+		this.sysfsKey = sysfsKey;
+	}
+	
+	/**
+	 * access to the name used by upower
+	 * @return	the upower name as String
+	 */
+	public String getUpowerKey() {
+		return upowerKey;
+	}
+	
+	/**
+	 * access to the name used by the kernel's power_supply class
+	 * @return	the sysfs name as String
+	 */
+	public String getSysfsKey() {
+		return sysfsKey;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.shared;
+
+/**
+ * TimeEstimate is the immutable estimate of the time until the batteries
+ * are empty or full.
+ * 
+ * @author jochen
+ *
+ */
+public final class TimeEstimate {
+
+	private final boolean charging;
+	private final long seconds;
+	private final double confidence;
+	private final double rate;
+
+	/**
+	 * @param charging		true for the time to full, false for the time to
+	 * empty
+	 * @param seconds		the estimated time in seconds
+	 * @param confidence	the confidence of the estimate from 0 to 1
+	 * @param rate			the rate of the battery level in percent per hour
+	 */
+	public TimeEstimate(final boolean charging, final long seconds, 
+			final double confidence, final double rate) {
+		this.charging = charging;
+		this.seconds = seconds;
+		this.confidence = confidence;
+		this.rate = rate;
+	}
+
+	/**
+	 * @return	true for the time to full, false for the time to empty
+	 */
+	public boolean isCharging() {
+		return charging;
+	}
+
+	/**
+	 * @return	the estimated time in seconds
+	 */
+	public long getSeconds() {
+		return seconds;
+	}
+
+	/**
+	 * @return	the confidence of the estimate from 0 to 1
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * @return	the rate of the battery level in percent per hour, negative 
+	 * while discharging
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return (charging ? "full in " : "empty in ") + seconds / 60  //$NON-NLS-1$ //$NON-NLS-2$
+				+ " min, confidence: " + Math.round(confidence * 100) + "%"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
@@ -33,11 +33,33 @@ public enum Upower {
 	VERSION_KEY ("client"), //$NON-NLS-1$
 	DEVICES_CMD ("-e"), //$NON-NLS-1$
 	DETAILS_CMD ("-i"), //$NON-NLS-1$
+	DUMP_CMD ("-d"), //$NON-NLS-1$
+	DUMP_DEVICE_KEY ("Device"), //$NON-NLS-1$
+	DUMP_DAEMON_KEY ("Daemon"), //$NON-NLS-1$
+	MONITOR_CMD ("--monitor-detail"), //$NON-NLS-1$
+	MONITOR_DEVICE_KEY ("device"), //$NON-NLS-1$
+	LINE_BUFFER_CMD ("stdbuf"), //$NON-NLS-1$
+	LINE_BUFFER_ARG ("-oL"), //$NON-NLS-1$
+	LOCALE_ENV ("LC_ALL"), //$NON-NLS-1$
+	LOCALE_VALUE ("C"), //$NON-NLS-1$
 	BATTERY_LOAD_KEY ("percentage"), //$NON-NLS-1$
 	CHARGING_KEY ("state"), //$NON-NLS-1$
 	CHARGING_VALUE ("charging"), //$NON-NLS-1$
+	DISCHARGING_VALUE ("discharging"), //$NON-NLS-1$
 	SUPPLYING_KEY ("online"), //$NON-NLS-1$
 	SUPPLYING_VALUE ("yes"), //$NON-NLS-1$
+	POWER_SUPPLY_KEY ("power supply"), //$NON-NLS-1$
+	ENERGY_KEY ("energy"), //$NON-NLS-1$
+	ENERGY_FULL_KEY ("energy-full"), //$NON-NLS-1$
+	ENERGY_RATE_KEY ("energy-rate"), //$NON-NLS-1$
+	VOLTAGE_KEY ("voltage"), //$NON-NLS-1$
+	TIME_TO_EMPTY_KEY ("time to empty"), //$NON-NLS-1$
+	TIME_TO_FULL_KEY ("time to full"), //$NON-NLS-1$
+	TECHNOLOGY_KEY ("technology"), //$NON-NLS-1$
+	CAPACITY_KEY ("capacity"), //$NON-NLS-1$
+	MINUTES ("minutes"), //$NON-NLS-1$
+	HOURS ("hours"), //$NON-NLS-1$
+	DAYS ("days"), //$NON-NLS-1$
 	SPLITTER (":"), //$NON-NLS-1$
 	BATTERY ("battery"), //$NON-NLS-1$
 	LINE_POWER ("line_power"); //$NON-NLS-1$
@@ -0,0 +1,121 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import com.github.koshamo.jupower.shared.BatteryAggregate;
+
+/**
+ * AdaptivePollingPolicy is the default PollingPolicy of UpowerModule. It
+ * polls rarely, when nothing interesting can happen, and often, when the
+ * user needs exact values:
+ * <ul>
+ * <li>on line power with a battery, which is not charging (full), the
+ * load hardly changes, only unplugging needs to be noticed</li>
+ * <li>while charging, the load rises slowly</li>
+ * <li>while discharging, the battery is polled about twice per percent,
+ * calculated from the observed discharge rate</li>
+ * <li>beneath the urgent warning level and with the GUI window visible
+ * all values are polled with the shortest interval</li>
+ * <li>without system batteries, e.g. on a desktop, the battery and
+ * charging checks are disabled</li>
+ * <li>a UPS is polled often, as it protects the computer, and with the
+ * shortest interval, while it runs on battery</li>
+ * <li>peripherals, such as mice or headsets, discharge over days, thus
+ * they are polled every few minutes</li>
+ * </ul>
+ * 
+ * @author jochen
+ *
+ */
+public class AdaptivePollingPolicy implements PollingPolicy {
+
+	private static final long SHORTEST = 5 * 1000;
+	private static final long DEVICE_CHECK = 60 * 1000;
+	private static final long BATTERY_CHECK = 10 * 1000;
+	private static final long BATTERY_CHARGING = 30 * 1000;
+	private static final long BATTERY_FULL = 60 * 1000;
+	private static final long BATTERY_LONGEST = 30 * 1000;
+	private static final long CHARGE_CHECK = 10 * 1000;
+	private static final long CHARGE_FULL = 15 * 1000;
+	private static final long UPS_CHECK = 10 * 1000;
+	private static final long PERIPHERAL_CHECK = 5 * 60 * 1000;
+	private static final long PERIPHERAL_VISIBLE = 60 * 1000;
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PollingPolicy#getInterval(com.github.koshamo.jupower.upower.PollingPolicy.Check, com.github.koshamo.jupower.upower.PollingState)
+	 */
+	@Override
+	public long getInterval(final Check check, final PollingState state) {
+		if (check == Check.DEVICES)
+			return DEVICE_CHECK;
+		if (check == Check.UPS)
+			return upsInterval(state);
+		if (check == Check.PERIPHERALS)
+			return peripheralInterval(state);
+		if (state.isKnown() && state.getBatteries() == 0)
+			return 0;
+		if (!state.isKnown() || state.isGuiVisible())
+			return SHORTEST;
+		if (!state.isSupplying() && state.getPercentage() <= BatteryAggregate.URGENT_WARNING)
+			return SHORTEST;
+		if (check == Check.CHARGING)
+			return state.isSupplying() && !state.isCharging() ? CHARGE_FULL : CHARGE_CHECK;
+		if (state.isCharging())
+			return BATTERY_CHARGING;
+		if (state.isSupplying())
+			return BATTERY_FULL;
+		return dischargeInterval(state);
+	}
+
+	/**
+	 * @param state	the current power state
+	 * @return		the UPS interval in milliseconds, 0 without UPS
+	 */
+	private static long upsInterval(final PollingState state) {
+		if (state.getUpsDevices() == 0)
+			return 0;
+		if (state.isUpsOnBattery() || state.isGuiVisible())
+			return SHORTEST;
+		return UPS_CHECK;
+	}
+
+	/**
+	 * @param state	the current power state
+	 * @return		the peripheral interval in milliseconds, 0 without
+	 * peripherals
+	 */
+	private static long peripheralInterval(final PollingState state) {
+		if (state.getPeripherals() == 0)
+			return 0;
+		return state.isGuiVisible() ? PERIPHERAL_VISIBLE : PERIPHERAL_CHECK;
+	}
+
+	/**
+	 * calculates the battery interval while discharging: the time one
+	 * percent of the full energy lasts with the observed rate, halved to
+	 * notice every percent.
+	 * 
+	 * @param state	the current power state
+	 * @return		the battery interval in milliseconds
+	 */
+	private static long dischargeInterval(final PollingState state) {
+		if (state.getEnergyFull() <= 0 || state.getEnergyRate() <= 0)
+			return BATTERY_CHECK;
+		final double percentHours = state.getEnergyFull() / 100 / state.getEnergyRate();
+		final long interval = (long) (percentHours * 3600 * 1000 / 2);
+		return Math.max(SHORTEST, Math.min(BATTERY_LONGEST, interval));
+	}
+}
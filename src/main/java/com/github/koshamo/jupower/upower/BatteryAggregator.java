@@ -0,0 +1,123 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.koshamo.jupower.shared.BatteryAggregate;
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+
+/**
+ * BatteryAggregator combines the snapshots of all batteries into one
+ * BatteryAggregate. The sums of the batteries are updated incrementally:
+ * a changed battery replaces its own share only, thus an update takes
+ * constant time regardless of the number of batteries.
+ * 
+ * The load is the combined energy against the combined energy of the full
+ * batteries, if the energy of all batteries is known, the mean load
+ * otherwise.
+ * 
+ * @author jochen
+ *
+ */
+public final class BatteryAggregator {
+
+	private final Map<String, DeviceSnapshot> batteries = new HashMap<>();
+	private double energy;
+	private double energyFull;
+	private double energyRate;
+	private long percentageSum;
+	private int charging;
+	// batteries without a known energy of the full battery
+	private int unknown;
+	private BatteryAggregate aggregate;
+
+	/**
+	 * replaces the share of the battery by the given snapshot
+	 * 
+	 * @param snap	the snapshot of a battery
+	 * @return		true, if the snapshot differs from the last one of the
+	 * battery
+	 */
+	public synchronized boolean update(final DeviceSnapshot snap) {
+		final DeviceSnapshot last = batteries.put(snap.getDevice(), snap);
+		if (last == snap)
+			return false;
+		if (last != null)
+			add(last, -1);
+		add(snap, 1);
+		aggregate = null;
+		return true;
+	}
+
+	/**
+	 * removes the share of the battery, e.g. if it has been detached
+	 * 
+	 * @param device	the battery
+	 * @return			true, if the battery has been known
+	 */
+	public synchronized boolean remove(final String device) {
+		final DeviceSnapshot last = batteries.remove(device);
+		if (last == null)
+			return false;
+		if (batteries.isEmpty()) {
+			// no rounding errors remain
+			energy = energyFull = energyRate = 0;
+			percentageSum = charging = unknown = 0;
+		}
+		else
+			add(last, -1);
+		aggregate = null;
+		return true;
+	}
+
+	/**
+	 * @return	the combined state of all batteries, null if no battery is
+	 * known
+	 */
+	public synchronized BatteryAggregate get() {
+		if (batteries.isEmpty())
+			return null;
+		if (aggregate == null) {
+			final boolean known = unknown == 0 && energyFull > 0;
+			final double level = known 
+					? energy / energyFull * 100 : (double) percentageSum / batteries.size();
+			aggregate = new BatteryAggregate(batteries.size(), level, 
+					known ? energy : 0, known ? energyFull : 0, energyRate, charging > 0);
+		}
+		return aggregate;
+	}
+
+	/**
+	 * helper method to add or subtract the share of a battery
+	 * 
+	 * @param snap	the snapshot of the battery
+	 * @param sign	1 to add, -1 to subtract
+	 */
+	private void add(final DeviceSnapshot snap, final int sign) {
+		energy += sign * snap.getEnergy();
+		energyFull += sign * snap.getEnergyFull();
+		// upower reports the rate without sign
+		final double rate = Math.abs(snap.getEnergyRate());
+		energyRate += sign * (snap.isCharging() ? rate : -rate);
+		percentageSum += sign * snap.getPercentage();
+		if (snap.isCharging())
+			charging += sign;
+		if (snap.getEnergyFull() <= 0)
+			unknown += sign;
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.koshamo.jupower.shared.EventKeys;
+
+/**
+ * ChangeFilter remembers the last published value per device and event key
+ * and decides, if a new value is a real transition, which needs to be
+ * published.
+ * 
+ * Integer values use a hysteresis: a change in the same direction as the
+ * last published change is a transition, a change in the opposite
+ * direction only, if it reaches the hysteresis. Thus a discharging battery
+ * is still published percent by percent, but a value flapping between 49
+ * and 50 is published once only.
+ * 
+ * @author jochen
+ *
+ */
+public class ChangeFilter {
+
+	public static final int DEFAULT_HYSTERESIS = 2;
+	private static final int KEYS = EventKeys.values().length;
+
+	private final int hysteresis;
+	private final Map<String, DeviceState> states = new HashMap<>();
+
+	/**
+	 * creates a change filter with the default hysteresis
+	 */
+	public ChangeFilter() {
+		this(DEFAULT_HYSTERESIS);
+	}
+
+	/**
+	 * creates a change filter with the given hysteresis. A hysteresis of 1
+	 * publishes every change.
+	 * 
+	 * @param hysteresis	the minimal change against the last direction
+	 */
+	public ChangeFilter(final int hysteresis) {
+		if (hysteresis < 1)
+			throw new IllegalArgumentException("hysteresis must be at least 1"); //$NON-NLS-1$
+		this.hysteresis = hysteresis;
+	}
+
+	/**
+	 * checks, if the integer value is a transition to be published. If so,
+	 * it is remembered as the last published value.
+	 * 
+	 * @param device	the device the value belongs to
+	 * @param key		the event key of the value
+	 * @param value		the current value
+	 * @return			true, if the value needs to be published
+	 */
+	public synchronized boolean accept(final String device, final EventKeys key,
+			final int value) {
+		final DeviceState state = state(device);
+		final int k = key.ordinal();
+		if (state.known[k]) {
+			final int delta = value - state.values[k];
+			if (delta == 0)
+				return false;
+			final int direction = Integer.signum(delta);
+			// the first change has no direction to compare with
+			if (state.directions[k] != 0 && direction != state.directions[k] 
+					&& Math.abs(delta) < hysteresis)
+				return false;
+			state.directions[k] = direction;
+		}
+		state.known[k] = true;
+		state.values[k] = value;
+		return true;
+	}
+
+	/**
+	 * checks, if the boolean value has changed since it has been published
+	 * last. If so, it is remembered as the last published value.
+	 * 
+	 * @param device	the device the value belongs to
+	 * @param key		the event key of the value
+	 * @param value		the current value
+	 * @return			true, if the value needs to be published
+	 */
+	public synchronized boolean accept(final String device, final EventKeys key,
+			final boolean value) {
+		final DeviceState state = state(device);
+		final int k = key.ordinal();
+		final int v = value ? 1 : 0;
+		if (state.known[k] && state.values[k] == v)
+			return false;
+		state.known[k] = true;
+		state.values[k] = v;
+		return true;
+	}
+
+	/**
+	 * forgets all values of the given device, e.g. if it has been detached
+	 * 
+	 * @param device	the device to forget
+	 */
+	public synchronized void forget(final String device) {
+		states.remove(device);
+	}
+
+	/**
+	 * forgets all values of all devices, thus the next values of all
+	 * devices are published
+	 */
+	public synchronized void reset() {
+		states.clear();
+	}
+
+	/**
+	 * helper method to get the state of the given device
+	 * 
+	 * @param device	the device
+	 * @return			the state of the device, created if unknown
+	 */
+	private DeviceState state(final String device) {
+		DeviceState state = states.get(device);
+		if (state == null) {
+			state = new DeviceState();
+			states.put(device, state);
+		}
+		return state;
+	}
+
+	/**
+	 * the last published values of one device, indexed by the ordinal of
+	 * the event key
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static class DeviceState {
+		final boolean[] known = new boolean[KEYS];
+		final int[] values = new int[KEYS];
+		final int[] directions = new int[KEYS];
+	}
+}
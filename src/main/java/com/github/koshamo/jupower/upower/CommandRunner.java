@@ -0,0 +1,90 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A CommandRunner runs the upower console tool for UpowerConnector and
+ * hands its output to a reader. By default, upower is run as process,
+ * but a replay of recorded outputs can be set with
+ * UpowerConnector.setCommandRunner, thus the module can be load tested
+ * without batteries.
+ * 
+ * @author jochen
+ *
+ */
+public interface CommandRunner {
+
+	/**
+	 * The reader of the command output
+	 * 
+	 * @author jochen
+	 * 
+	 * @param <T>	the type of the result
+	 */
+	@FunctionalInterface
+	interface OutputReader<T> {
+		/**
+		 * reads the command output until the end of the stream
+		 * 
+		 * @param in	the standard output of the command
+		 * @return		the result of reading
+		 * @throws IOException	if reading fails
+		 */
+		T read(InputStream in) throws IOException;
+	}
+
+	/**
+	 * runs the command and reads its output in the calling thread
+	 * 
+	 * @param reader	the reader of the standard output
+	 * @param cmdarray	command and all arguments
+	 * @return			the result of the reader
+	 * @throws IOException	if the command can not be run or read
+	 * @throws TimeoutException	if the command does not finish in time
+	 * @throws InterruptedException	if the calling thread is interrupted
+	 */
+	<T> T run(OutputReader<T> reader, String... cmdarray)
+			throws IOException, TimeoutException, InterruptedException;
+
+	/**
+	 * runs the command asynchronously. The default implementation runs it
+	 * in the common pool.
+	 * 
+	 * @param reader	the reader of the standard output
+	 * @param cmdarray	command and all arguments
+	 * @return			the future result of the reader, which completes
+	 * exceptionally, like run would throw
+	 */
+	default <T> CompletableFuture<T> submit(final OutputReader<T> reader,
+			final String... cmdarray) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return run(reader, cmdarray);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(e);
+			} catch (IOException | TimeoutException e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+}
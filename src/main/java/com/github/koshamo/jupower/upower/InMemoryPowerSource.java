@@ -0,0 +1,222 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+import com.github.koshamo.jupower.shared.DeviceValues;
+import com.github.koshamo.jupower.shared.Technology;
+
+/**
+ * InMemoryPowerSource simulates a battery and a line power device without
+ * any hardware, thus the module and the GUI can be run and load tested on
+ * every system. The simulation is deterministic: every snapshot advances
+ * the simulated time by STEP seconds, the battery discharges down to LOW
+ * percent, then line power is plugged in and the battery charges up to
+ * full, then line power is unplugged again.
+ * 
+ * Devices can be set explicitly with put, which stops the simulation, thus
+ * the values stay as they have been set.
+ * 
+ * @author jochen
+ *
+ */
+public class InMemoryPowerSource implements PowerSource {
+
+	public static final String NAME = "memory"; //$NON-NLS-1$
+	public static final String BATTERY_ID = "battery_SIM0"; //$NON-NLS-1$
+	public static final String LINE_POWER_ID = "line_power_SIM"; //$NON-NLS-1$
+
+	public static final long STEP = 10;
+	public static final int LOW = 5;
+	private static final double ENERGY_FULL = 50;
+	private static final double DISCHARGE_RATE = 10;
+	private static final double CHARGE_RATE = 25;
+	private static final double VOLTAGE = 12;
+
+	private final DeviceValues values = new DeviceValues();
+	private final Map<String, DeviceSnapshot> devices = new LinkedHashMap<>();
+	private Map<String, DeviceSnapshot> snapshot = Collections.emptyMap();
+	private boolean simulating = true;
+	private double energy = ENERGY_FULL;
+	private boolean charging;
+
+	/**
+	 * creates the simulation with a full battery and line power unplugged
+	 */
+	public InMemoryPowerSource() {
+		simulate();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isAvailable()
+	 */
+	@Override
+	public boolean isAvailable() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isSimulation()
+	 */
+	@Override
+	public boolean isSimulation() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getDevices()
+	 */
+	@Override
+	public synchronized List<String> getDevices() {
+		return new ArrayList<>(devices.keySet());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getBatteryLoad(java.lang.String)
+	 */
+	@Override
+	public synchronized int getBatteryLoad(final String battery) {
+		final DeviceSnapshot snap = devices.get(battery);
+		return snap == null ? 0 : snap.getPercentage();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isCharging(java.lang.String)
+	 */
+	@Override
+	public synchronized boolean isCharging(final String battery) {
+		final DeviceSnapshot snap = devices.get(battery);
+		return snap != null && snap.isCharging();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isSupplying(java.lang.String)
+	 */
+	@Override
+	public synchronized boolean isSupplying(final String linePower) {
+		final DeviceSnapshot snap = devices.get(linePower);
+		return snap != null && snap.isOnline();
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * advances the simulation by one step
+	 * 
+	 * @see com.github.koshamo.jupower.upower.PowerSource#snapshot()
+	 */
+	@Override
+	public synchronized Map<String, DeviceSnapshot> snapshot() {
+		if (simulating) {
+			step();
+			simulate();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * adds or replaces a device and stops the simulation
+	 * 
+	 * @param snap	the snapshot of the device
+	 */
+	public synchronized void put(final DeviceSnapshot snap) {
+		simulating = false;
+		devices.put(snap.getDevice(), snap);
+		snapshot = Collections.unmodifiableMap(new LinkedHashMap<>(devices));
+	}
+
+	/**
+	 * removes a device and stops the simulation
+	 * 
+	 * @param device	the device to be removed
+	 */
+	public synchronized void remove(final String device) {
+		simulating = false;
+		devices.remove(device);
+		snapshot = Collections.unmodifiableMap(new LinkedHashMap<>(devices));
+	}
+
+	/**
+	 * advances the energy of the battery by one step and plugs or unplugs
+	 * line power at the turning points
+	 */
+	private void step() {
+		if (charging) {
+			energy = Math.min(ENERGY_FULL, energy + CHARGE_RATE * STEP / 3600);
+			if (energy >= ENERGY_FULL)
+				charging = false;
+		} else {
+			energy = Math.max(0, energy - DISCHARGE_RATE * STEP / 3600);
+			if (energy <= ENERGY_FULL * LOW / 100)
+				charging = true;
+		}
+	}
+
+	/**
+	 * creates the snapshots of the simulated devices, unchanged snapshots
+	 * are reused
+	 */
+	private void simulate() {
+		final double rate = charging ? CHARGE_RATE : DISCHARGE_RATE;
+		values.clear();
+		values.setPercentage((int) Math.round(energy / ENERGY_FULL * 100));
+		values.setCharging(charging);
+		values.setEnergy(energy);
+		values.setEnergyFull(ENERGY_FULL);
+		values.setEnergyRate(rate);
+		values.setVoltage(VOLTAGE);
+		if (charging)
+			values.setTimeToFull((long) ((ENERGY_FULL - energy) / rate * 3600));
+		else
+			values.setTimeToEmpty((long) (energy / rate * 3600));
+		values.setTechnology(Technology.LITHIUM_ION);
+		values.setCapacity(100);
+		boolean changed = update(BATTERY_ID);
+		values.clear();
+		values.setOnline(charging);
+		changed |= update(LINE_POWER_ID);
+		if (changed)
+			snapshot = Collections.unmodifiableMap(new LinkedHashMap<>(devices));
+	}
+
+	/**
+	 * helper method to replace the snapshot of a device, if the values
+	 * have changed
+	 * 
+	 * @param device	the device
+	 * @return			true, if the snapshot has been replaced
+	 */
+	private boolean update(final String device) {
+		final DeviceSnapshot last = devices.get(device);
+		if (last != null && last.hasValues(values))
+			return false;
+		devices.put(device, new DeviceSnapshot(device, values));
+		return true;
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PollScheduler runs all polls of a module on one thread. The due times of
+ * all polls are aligned to a common tick, thus polls with different
+ * intervals run together in one wakeup, and the thread sleeps until the
+ * earliest due time, instead of waking up on several unaligned timers.
+ * 
+ * Stopping the scheduler interrupts a running poll and cancels the next
+ * wakeup, thus it does not need to wait for a sleep to elapse.
+ * 
+ * @author jochen
+ *
+ */
+final class PollScheduler {
+
+	private final long tick;
+	private final long start;
+	private final ScheduledExecutorService executor;
+	private final List<Poll> polls = new ArrayList<>();
+	private final List<Poll> due = new ArrayList<>();
+
+	private ScheduledFuture<?> wakeup;
+	private boolean ticking;
+	private volatile boolean running;
+
+	/**
+	 * creates a scheduler aligning all due times to multiples of tick
+	 * 
+	 * @param name	the name of the scheduler thread
+	 * @param tick	the common tick in milliseconds
+	 */
+	PollScheduler(final String name, final long tick) {
+		if (tick <= 0)
+			throw new IllegalArgumentException("tick must be positive"); //$NON-NLS-1$
+		this.tick = tick;
+		this.start = System.nanoTime();
+		executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, name));
+	}
+
+	/**
+	 * adds a poll, which is disabled, until an interval is set
+	 * 
+	 * @param task	the task to run on every poll
+	 * @return		the poll to set its interval
+	 */
+	synchronized Poll add(final Runnable task) {
+		final Poll poll = new Poll(Objects.requireNonNull(task));
+		polls.add(poll);
+		return poll;
+	}
+
+	/**
+	 * starts the scheduler, polls with an interval run on the first tick
+	 */
+	synchronized void start() {
+		running = true;
+		schedule();
+	}
+
+	/**
+	 * runs a task once on the thread of the scheduler, before or between
+	 * the polls, like a startup step, which the polls depend on
+	 * 
+	 * @param task	the task
+	 */
+	void execute(final Runnable task) {
+		executor.execute(task);
+	}
+
+	/**
+	 * stops the scheduler, a running poll is interrupted
+	 */
+	void stop() {
+		running = false;
+		executor.shutdownNow();
+	}
+
+	/**
+	 * runs all polls, which are due, and schedules the next wakeup
+	 */
+	private void tick() {
+		synchronized (this) {
+			ticking = true;
+			final long now = now();
+			due.clear();
+			for (Poll poll : polls)
+				if (poll.interval > 0 && poll.due <= now) {
+					due.add(poll);
+					poll.due = align(poll.due + poll.interval);
+					// skip missed ticks, if a poll took longer than its interval
+					while (poll.due <= now)
+						poll.due += poll.interval;
+				}
+		}
+		for (Poll poll : due) {
+			if (!running)
+				break;
+			try {
+				poll.task.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+		synchronized (this) {
+			ticking = false;
+			schedule();
+		}
+	}
+
+	/**
+	 * schedules the next wakeup at the earliest due time of all polls,
+	 * replacing a scheduled wakeup
+	 */
+	private void schedule() {
+		if (!running || ticking)
+			return;
+		if (wakeup != null)
+			wakeup.cancel(false);
+		wakeup = null;
+		long next = Long.MAX_VALUE;
+		for (Poll poll : polls)
+			if (poll.interval > 0)
+				next = Math.min(next, poll.due);
+		if (next == Long.MAX_VALUE)
+			return;
+		wakeup = executor.schedule(this::tick, Math.max(0, next - now()),
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return	the milliseconds since the scheduler has been created
+	 */
+	private long now() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * helper method to round up to the next multiple of the tick
+	 * 
+	 * @param time	the time in milliseconds
+	 * @return		the time aligned to the tick
+	 */
+	private long align(final long time) {
+		return (time + tick - 1) / tick * tick;
+	}
+
+	/**
+	 * One poll of the scheduler with its own interval
+	 * 
+	 * @author jochen
+	 *
+	 */
+	final class Poll {
+		final Runnable task;
+		long interval;
+		long due;
+
+		/**
+		 * @param task	the task to run on every poll
+		 */
+		Poll(final Runnable task) {
+			this.task = task;
+		}
+
+		/**
+		 * sets the interval of this poll, which is rounded up to a multiple
+		 * of the tick. A poll, which has been disabled, is due at once and 
+		 * aligned to the tick afterwards, otherwise the next due time is 
+		 * moved to the new interval.
+		 * 
+		 * @param millis	the interval in milliseconds, 0 disables the poll
+		 */
+		void setInterval(final long millis) {
+			synchronized (PollScheduler.this) {
+				final long aligned = align(Math.max(0, millis));
+				if (aligned == interval)
+					return;
+				final long now = now();
+				if (interval == 0)
+					due = now;
+				else
+					due = Math.max(align(now), due - interval + aligned);
+				interval = aligned;
+				schedule();
+			}
+		}
+
+		/**
+		 * @return	the interval of this poll in milliseconds, 0 if disabled
+		 */
+		long getInterval() {
+			synchronized (PollScheduler.this) {
+				return interval;
+			}
+		}
+	}
+}
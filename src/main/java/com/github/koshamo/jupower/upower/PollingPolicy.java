@@ -0,0 +1,68 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+/**
+ * A PollingPolicy decides, how often UpowerModule polls the power source
+ * for each of its checks, depending on the current power state. The
+ * policy is asked again, whenever the state has changed.
+ * 
+ * @author jochen
+ *
+ */
+public interface PollingPolicy {
+
+	/**
+	 * the default tick of the module's scheduler in milliseconds
+	 */
+	long DEFAULT_TICK = 5 * 1000;
+
+	/**
+	 * The checks UpowerModule polls for
+	 * 
+	 * @author jochen
+	 *
+	 */
+	enum Check {
+		DEVICES,
+		BATTERY,
+		CHARGING,
+		UPS,
+		PERIPHERALS
+	}
+
+	/**
+	 * returns the interval of the given check for the given state. The
+	 * interval is rounded up to the tick of the module's scheduler.
+	 * 
+	 * @param check	the check to be polled
+	 * @param state	the current power state
+	 * @return		the interval in milliseconds, 0 to disable the check,
+	 * e.g. if no device of its class is attached
+	 */
+	long getInterval(Check check, PollingState state);
+
+	/**
+	 * returns the tick of the module's scheduler, all intervals are 
+	 * multiples of it. Load tests may use a shorter tick to replay 
+	 * changes faster than the default.
+	 * 
+	 * @return	the tick in milliseconds, at least 1
+	 */
+	default long getTick() {
+		return DEFAULT_TICK;
+	}
+}
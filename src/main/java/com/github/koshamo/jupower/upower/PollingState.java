@@ -0,0 +1,197 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+/**
+ * PollingState is the immutable power state a PollingPolicy bases its
+ * intervals on. With several batteries, the load is the lowest load, the
+ * energies and the rate are summed up. The number of devices per class
+ * tells the policy, which checks are needed at all.
+ * 
+ * @author jochen
+ *
+ */
+public final class PollingState {
+
+	private final boolean known;
+	private final int percentage;
+	private final boolean charging;
+	private final boolean supplying;
+	private final double energyFull;
+	private final double energyRate;
+	private final boolean guiVisible;
+	private final int batteries;
+	private final int upsDevices;
+	private final boolean upsOnBattery;
+	private final int peripherals;
+
+	/**
+	 * the state before the first snapshot has been taken
+	 * 
+	 * @param guiVisible	true, if the GUI window is visible
+	 */
+	public PollingState(final boolean guiVisible) {
+		this.known = false;
+		this.percentage = 0;
+		this.charging = false;
+		this.supplying = false;
+		this.energyFull = 0;
+		this.energyRate = 0;
+		this.guiVisible = guiVisible;
+		this.batteries = 0;
+		this.upsDevices = 0;
+		this.upsOnBattery = false;
+		this.peripherals = 0;
+	}
+
+	/**
+	 * @param percentage	the battery load in percent
+	 * @param charging		true, if a battery is charging
+	 * @param supplying		true, if line power is supplying
+	 * @param energyFull	the energy of the full batteries in Wh, 0 if unknown
+	 * @param energyRate	the charge or discharge rate in W, 0 if unknown
+	 * @param guiVisible	true, if the GUI window is visible
+	 */
+	public PollingState(final int percentage, final boolean charging,
+			final boolean supplying, final double energyFull,
+			final double energyRate, final boolean guiVisible) {
+		this(percentage, charging, supplying, energyFull, energyRate, 
+				guiVisible, 1, 0, false, 0);
+	}
+
+	/**
+	 * @param percentage	the battery load in percent
+	 * @param charging		true, if a battery is charging
+	 * @param supplying		true, if line power is supplying
+	 * @param energyFull	the energy of the full batteries in Wh, 0 if unknown
+	 * @param energyRate	the charge or discharge rate in W, 0 if unknown
+	 * @param guiVisible	true, if the GUI window is visible
+	 * @param batteries		the number of system batteries
+	 * @param upsDevices	the number of UPS devices
+	 * @param upsOnBattery	true, if a UPS is discharging
+	 * @param peripherals	the number of peripherals with a battery
+	 */
+	public PollingState(final int percentage, final boolean charging,
+			final boolean supplying, final double energyFull,
+			final double energyRate, final boolean guiVisible,
+			final int batteries, final int upsDevices, 
+			final boolean upsOnBattery, final int peripherals) {
+		this.known = true;
+		this.percentage = percentage;
+		this.charging = charging;
+		this.supplying = supplying;
+		this.energyFull = energyFull;
+		this.energyRate = energyRate;
+		this.guiVisible = guiVisible;
+		this.batteries = batteries;
+		this.upsDevices = upsDevices;
+		this.upsOnBattery = upsOnBattery;
+		this.peripherals = peripherals;
+	}
+
+	/**
+	 * @return	true, if the power values are known, false before the first
+	 * snapshot
+	 */
+	public boolean isKnown() {
+		return known;
+	}
+
+	/**
+	 * @return	the battery load in percent
+	 */
+	public int getPercentage() {
+		return percentage;
+	}
+
+	/**
+	 * @return	true, if a battery is charging
+	 */
+	public boolean isCharging() {
+		return charging;
+	}
+
+	/**
+	 * @return	true, if line power is supplying
+	 */
+	public boolean isSupplying() {
+		return supplying;
+	}
+
+	/**
+	 * @return	the energy of the full batteries in Wh, 0 if unknown
+	 */
+	public double getEnergyFull() {
+		return energyFull;
+	}
+
+	/**
+	 * @return	the charge or discharge rate in W, 0 if unknown
+	 */
+	public double getEnergyRate() {
+		return energyRate;
+	}
+
+	/**
+	 * @return	true, if the GUI window is visible
+	 */
+	public boolean isGuiVisible() {
+		return guiVisible;
+	}
+
+	/**
+	 * @return	the number of system batteries
+	 */
+	public int getBatteries() {
+		return batteries;
+	}
+
+	/**
+	 * @return	the number of UPS devices
+	 */
+	public int getUpsDevices() {
+		return upsDevices;
+	}
+
+	/**
+	 * @return	true, if a UPS is discharging
+	 */
+	public boolean isUpsOnBattery() {
+		return upsOnBattery;
+	}
+
+	/**
+	 * @return	the number of peripherals with a battery
+	 */
+	public int getPeripherals() {
+		return peripherals;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (!known)
+			return "unknown, gui visible: " + guiVisible; //$NON-NLS-1$
+		return percentage + "%, charging: " + charging  //$NON-NLS-1$
+				+ ", supplying: " + supplying + ", energy full: " + energyFull  //$NON-NLS-1$ //$NON-NLS-2$
+				+ " Wh, rate: " + energyRate + " W, gui visible: " + guiVisible  //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", batteries: " + batteries + ", ups: " + upsDevices  //$NON-NLS-1$ //$NON-NLS-2$
+				+ (upsOnBattery ? " on battery" : "")  //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", peripherals: " + peripherals; //$NON-NLS-1$
+	}
+}
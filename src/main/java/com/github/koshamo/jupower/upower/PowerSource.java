@@ -0,0 +1,155 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+
+/**
+ * A PowerSource provides the system's power information, such as the
+ * battery load. The device names follow the upower naming scheme, thus
+ * battery devices contain Upower.BATTERY and line power devices contain
+ * Upower.LINE_POWER in their names. Other devices, such as UPS units or
+ * mice, start with the key of their DeviceType.
+ * 
+ * Power sources are services: implementations are listed in
+ * META-INF/services and PowerSources selects the cheapest available one
+ * at startup. Implementations need a public constructor without arguments.
+ * 
+ * @author jochen
+ *
+ */
+public interface PowerSource {
+
+	/**
+	 * the name of this power source, which can be used to select it
+	 * 
+	 * @return	the name of this power source
+	 */
+	String getName();
+
+	/**
+	 * checks, if this power source can be used on this system
+	 * 
+	 * @return	true, if this power source can be used
+	 */
+	boolean isAvailable();
+
+	/**
+	 * a simulated power source does not read the system's devices, thus it
+	 * is only used, if it is selected by its name
+	 * 
+	 * @return	true, if this power source is a simulation
+	 */
+	default boolean isSimulation() {
+		return false;
+	}
+
+	/**
+	 * returns the list of currently detected devices
+	 * 
+	 * @return	the list of available devices
+	 */
+	List<String> getDevices();
+
+	/**
+	 * like getDevices, but the devices are detected asynchronously. The
+	 * default implementation calls getDevices in the common pool.
+	 * 
+	 * @return	the future list of available devices
+	 */
+	default CompletableFuture<List<String>> getDevicesAsync() {
+		return CompletableFuture.supplyAsync(this::getDevices);
+	}
+
+	/**
+	 * returns the current battery load of the given battery device.
+	 * If the device is not found, this method returns 0!
+	 * 
+	 * @param battery	the battery device of interest
+	 * @return			the battery load in percent
+	 */
+	int getBatteryLoad(String battery);
+
+	/**
+	 * returns the charging state of the given battery device.
+	 * If the device is not found, this method returns false!
+	 * 
+	 * @param battery	the battery device of interest
+	 * @return			true, if the battery is charging
+	 */
+	boolean isCharging(String battery);
+
+	/**
+	 * returns the supplying state of the given line power device.
+	 * If the device is not found, this method returns false!
+	 * 
+	 * @param linePower	the line power device of interest
+	 * @return			true, if line power supply is available
+	 */
+	boolean isSupplying(String linePower);
+
+	/**
+	 * reads all values of all devices at once. The snapshot is immutable,
+	 * thus it can be shared by all consumers of one polling cycle.
+	 * 
+	 * @return	the snapshots of all devices with the device name as key
+	 */
+	Map<String, DeviceSnapshot> snapshot();
+
+	/**
+	 * subscribes to the changes of all devices, if this power source can
+	 * report changes on its own. The listener gets the current snapshot of
+	 * every device first, then the snapshot of a device, whenever a value 
+	 * of the device has changed, thus polling is not required while 
+	 * subscribed. A former subscription is replaced.
+	 * 
+	 * @param listener	the listener for the changed snapshots
+	 * @return			true, if the subscription is active, false, if the
+	 * power source needs to be polled
+	 */
+	default boolean subscribe(final Consumer<DeviceSnapshot> listener) {
+		return false;
+	}
+
+	/**
+	 * a subscription ends, if the underlying service terminates, thus
+	 * this method can be used to check, if a new subscription is required
+	 * 
+	 * @return	true, if a subscription is active
+	 */
+	default boolean isSubscribed() {
+		return false;
+	}
+
+	/**
+	 * ends the subscription, if any
+	 */
+	default void unsubscribe() {
+		// nothing to end by default
+	}
+
+	/**
+	 * releases all resources held by this power source
+	 */
+	default void close() {
+		// nothing to release by default
+	}
+}
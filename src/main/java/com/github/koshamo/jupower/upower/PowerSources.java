@@ -0,0 +1,142 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * This class is a pure utility class to select the PowerSource at startup.
+ * All power sources listed in META-INF/services are loaded, the cheapest
+ * available one is used, measured by the time of one snapshot. If no power
+ * source is available, none is selected and the UpowerModule shuts the 
+ * application down.
+ * 
+ * A power source can be forced by its name with the system property
+ * jupower.powersource, e.g. -Djupower.powersource=memory to use the
+ * simulation.
+ * 
+ * @author jochen
+ *
+ */
+public class PowerSources {
+
+	public static final String PROPERTY = "jupower.powersource"; //$NON-NLS-1$
+	private static final int COST_RUNS = 2;
+
+	/**
+	 * private constructor, to prevent users to instantiate this class
+	 */
+	private PowerSources() {
+		// prevent instantiation
+	}
+
+	/**
+	 * selects the power source named by the system property or, if not
+	 * set, the cheapest available one
+	 * 
+	 * @return	the selected power source, null if none is available
+	 */
+	public static PowerSource select() {
+		return select(System.getProperty(PROPERTY));
+	}
+
+	/**
+	 * selects the power source with the given name, if it is available.
+	 * Otherwise the cheapest available power source is selected,
+	 * simulations are not considered then. Every candidate is probed with
+	 * isAvailable, thus the selected power source needs no further probe.
+	 * 
+	 * @param name	the name of the requested power source, may be null
+	 * @return		the selected power source, null if none is available
+	 */
+	public static PowerSource select(final String name) {
+		final List<PowerSource> sources = load();
+		PowerSource selected = null;
+		if (name != null) {
+			for (PowerSource source : sources)
+				if (source.getName().equals(name) && source.isAvailable()) {
+					selected = source;
+					break;
+				}
+			if (selected == null)
+				System.out.println("Power source " + name + " not available"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (selected == null) {
+			long cost = Long.MAX_VALUE;
+			for (PowerSource source : sources) {
+				if (source.isSimulation() || !source.isAvailable())
+					continue;
+				final long sourceCost = measure(source, cost);
+				if (sourceCost < cost) {
+					cost = sourceCost;
+					selected = source;
+				}
+			}
+		}
+		for (PowerSource source : sources)
+			if (source != selected)
+				source.close();
+		return selected;
+	}
+
+	/**
+	 * loads all power sources listed as service
+	 * 
+	 * @return	the list of power sources
+	 */
+	private static List<PowerSource> load() {
+		final List<PowerSource> sources = new ArrayList<>();
+		final Iterator<PowerSource> it =
+				ServiceLoader.load(PowerSource.class).iterator();
+		while (true) {
+			try {
+				if (!it.hasNext())
+					break;
+				sources.add(it.next());
+			} catch (ServiceConfigurationError e) {
+				// a broken power source must not prevent the others
+				e.printStackTrace();
+			}
+		}
+		return sources;
+	}
+
+	/**
+	 * measures the cost of a power source as the shortest time of a few
+	 * snapshots. The first snapshot opens the devices, which is measured,
+	 * too, but a following one is usually cheaper.
+	 * 
+	 * @param source	the power source to measure
+	 * @param limit		the cost of the cheapest source so far, a source
+	 * exceeding it with the first snapshot is not measured any further
+	 * @return			the cost in nanoseconds
+	 */
+	private static long measure(final PowerSource source, final long limit) {
+		long cost = Long.MAX_VALUE;
+		for (int i = 0; i < COST_RUNS; ++i) {
+			final long start = System.nanoTime();
+			source.snapshot();
+			cost = Math.min(cost, System.nanoTime() - start);
+			if (cost > limit)
+				break;
+		}
+		return cost;
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+import com.github.koshamo.jupower.shared.Upower;
+
+/**
+ * ProcessExecutor runs short-lived console tools, such as upower, and
+ * guarantees, that a hanging tool can not block its caller forever:
+ * <ul>
+ * <li>the output is read while the process runs, thus a full pipe can
+ * not deadlock the process</li>
+ * <li>every call has a timeout, after which the process is killed</li>
+ * <li>the number of processes running at the same time is limited</li>
+ * <li>the process is always destroyed and its streams are closed, even
+ * if reading fails</li>
+ * </ul>
+ * Calls can be synchronous with run or asynchronous with submit.
+ * The processes, their execution times and timeouts are recorded in
+ * JuPowerMetrics.
+ * This is the default CommandRunner of UpowerConnector.
+ * 
+ * @author jochen
+ *
+ */
+final class ProcessExecutor implements CommandRunner {
+
+	private static final File NULL_FILE = new File("/dev/null"); //$NON-NLS-1$
+	private static final long DESTROY_GRACE = 500;
+
+	private final Semaphore permits;
+	private final long timeout;
+	private final ScheduledExecutorService watchdog;
+	private final ExecutorService async;
+
+	/**
+	 * @param maxProcesses	the number of processes running at the same time
+	 * @param timeout		the timeout of every call in milliseconds
+	 */
+	ProcessExecutor(final int maxProcesses, final long timeout) {
+		if (maxProcesses < 1 || timeout <= 0)
+			throw new IllegalArgumentException();
+		this.permits = new Semaphore(maxProcesses, true);
+		this.timeout = timeout;
+		this.watchdog = Executors.newSingleThreadScheduledExecutor(
+				r -> daemon(r, "process-watchdog")); //$NON-NLS-1$
+		this.async = Executors.newCachedThreadPool(
+				r -> daemon(r, "process-executor")); //$NON-NLS-1$
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the process is killed, if it does not finish in time, or if no 
+	 * process may be started in time, or if the calling thread is 
+	 * interrupted
+	 * 
+	 * @see com.github.koshamo.jupower.upower.CommandRunner#run(com.github.koshamo.jupower.upower.CommandRunner.OutputReader, java.lang.String[])
+	 */
+	@Override
+	public <T> T run(final OutputReader<T> reader, final String... cmdarray)
+			throws IOException, TimeoutException, InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+			throw new TimeoutException("too many processes running: " + cmdarray[0]); //$NON-NLS-1$
+		try {
+			return execute(reader, deadline, cmdarray);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the output is read in a thread of the executor
+	 * 
+	 * @see com.github.koshamo.jupower.upower.CommandRunner#submit(com.github.koshamo.jupower.upower.CommandRunner.OutputReader, java.lang.String[])
+	 */
+	@Override
+	public <T> CompletableFuture<T> submit(final OutputReader<T> reader, final String... cmdarray) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return run(reader, cmdarray);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(e);
+			} catch (IOException | TimeoutException e) {
+				throw new CompletionException(e);
+			}
+		}, async);
+	}
+
+	/**
+	 * helper method to run the process, with a permit acquired
+	 * 
+	 * @param reader	the reader of the standard output
+	 * @param deadline	the System.nanoTime, until the process has to finish
+	 * @param cmdarray	command and all arguments
+	 * @return			the result of the reader
+	 * @throws IOException	if the process can not be started or read
+	 * @throws TimeoutException	if the process does not finish in time
+	 * @throws InterruptedException	if the calling thread is interrupted
+	 */
+	private <T> T execute(final OutputReader<T> reader, final long deadline,
+			final String... cmdarray)
+			throws IOException, TimeoutException, InterruptedException {
+		final ProcessBuilder pb = new ProcessBuilder(cmdarray);
+		// numbers shall not be printed in the user's locale
+		pb.environment().put(Upower.LOCALE_ENV.getKey(), Upower.LOCALE_VALUE.getKey());
+		// an unread error stream could fill up and block the process
+		pb.redirectError(NULL_FILE);
+		final long started = System.nanoTime();
+		final Process process = pb.start();
+		JuPowerMetrics.PROCESS_SPAWNS.increment();
+		final AtomicBoolean killed = new AtomicBoolean();
+		// reading blocks, until the process closes its output, thus a
+		// hanging process is killed by the watchdog
+		final ScheduledFuture<?> kill = watchdog.schedule(() -> {
+				killed.set(true);
+				process.destroyForcibly();
+			}, remaining(deadline), TimeUnit.NANOSECONDS);
+		try (InputStream in = process.getInputStream()) {
+			process.getOutputStream().close();
+			final T result = reader.read(in);
+			if (!process.waitFor(remaining(deadline), TimeUnit.NANOSECONDS) || killed.get()) {
+				JuPowerMetrics.PROCESS_TIMEOUTS.increment();
+				throw new TimeoutException("process timed out: " + cmdarray[0]); //$NON-NLS-1$
+			}
+			JuPowerMetrics.PROCESS_EXEC.recordSince(started);
+			return result;
+		} catch (IOException e) {
+			if (killed.get()) {
+				JuPowerMetrics.PROCESS_TIMEOUTS.increment();
+				throw new TimeoutException("process timed out: " + cmdarray[0]); //$NON-NLS-1$
+			}
+			throw e;
+		} finally {
+			kill.cancel(false);
+			destroy(process);
+		}
+	}
+
+	/**
+	 * helper method to destroy the process, forcibly if it does not
+	 * terminate within a grace period
+	 * 
+	 * @param process	the process to destroy
+	 */
+	private static void destroy(final Process process) {
+		if (!process.isAlive())
+			return;
+		process.destroy();
+		try {
+			if (!process.waitFor(DESTROY_GRACE, TimeUnit.MILLISECONDS))
+				process.destroyForcibly();
+		} catch (InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @param deadline	the System.nanoTime of the deadline
+	 * @return			the nanoseconds left until the deadline, at least 0
+	 */
+	private static long remaining(final long deadline) {
+		return Math.max(0, deadline - System.nanoTime());
+	}
+
+	/**
+	 * helper method to create the daemon threads of the executor
+	 * 
+	 * @param r		the runnable of the thread
+	 * @param name	the thread name
+	 * @return		the daemon thread
+	 */
+	private static Thread daemon(final Runnable r, final String name) {
+		final Thread thread = new Thread(r, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+}
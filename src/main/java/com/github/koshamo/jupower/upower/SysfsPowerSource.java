@@ -0,0 +1,507 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+import com.github.koshamo.jupower.shared.DeviceType;
+import com.github.koshamo.jupower.shared.DeviceValues;
+import com.github.koshamo.jupower.shared.Technology;
+import com.github.koshamo.jupower.shared.Upower;
+
+/**
+ * SysfsPowerSource reads the power information directly from the kernel's
+ * power_supply class in sysfs, thus no upower process is needed.
+ * 
+ * The attribute files of each device are opened once and read with
+ * positional reads into one reused buffer, so polling a value does not
+ * allocate any objects. The device names are built like upower does,
+ * e.g. battery_BAT0 or line_power_AC. Snapshots of unchanged devices are
+ * reused, thus a snapshot of a steady system does not allocate either.
+ * 
+ * The sysfs root can be configured, e.g. to use a fake directory tree.
+ * 
+ * @author jochen
+ *
+ */
+public class SysfsPowerSource implements PowerSource {
+
+	public static final String NAME = "sysfs"; //$NON-NLS-1$
+	public static final String DEFAULT_ROOT = "/sys/class/power_supply"; //$NON-NLS-1$
+
+	private static final String TYPE = "type"; //$NON-NLS-1$
+	private static final String TYPE_BATTERY = "Battery"; //$NON-NLS-1$
+	private static final String TYPE_UPS = "UPS"; //$NON-NLS-1$
+	private static final byte[] SCOPE_DEVICE =
+			"Device".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+	private static final byte[] STATUS_CHARGING =
+			"Charging".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+	private static final byte[] STATUS_DISCHARGING =
+			"Discharging".getBytes(StandardCharsets.US_ASCII); //$NON-NLS-1$
+	private static final Technology[] TECHNOLOGIES = Technology.values();
+	private static final byte[][] TECHNOLOGY_KEYS = new byte[TECHNOLOGIES.length][];
+	static {
+		for (int i = 0; i < TECHNOLOGIES.length; ++i)
+			TECHNOLOGY_KEYS[i] = 
+					TECHNOLOGIES[i].getSysfsKey().getBytes(StandardCharsets.US_ASCII);
+	}
+	// sysfs provides micro units: µWh, µAh, µW, µA and µV
+	private static final double MICRO = 1_000_000d;
+	private static final int SECONDS_PER_HOUR = 60 * 60;
+	private static final int BUFFER_SIZE = 64;
+
+	/**
+	 * the attribute files of a power supply device read by this class
+	 */
+	private enum Attribute {
+		CAPACITY ("capacity"), //$NON-NLS-1$
+		STATUS ("status"), //$NON-NLS-1$
+		ONLINE ("online"), //$NON-NLS-1$
+		ENERGY_NOW ("energy_now"), //$NON-NLS-1$
+		ENERGY_FULL ("energy_full"), //$NON-NLS-1$
+		ENERGY_FULL_DESIGN ("energy_full_design"), //$NON-NLS-1$
+		CHARGE_NOW ("charge_now"), //$NON-NLS-1$
+		CHARGE_FULL ("charge_full"), //$NON-NLS-1$
+		CHARGE_FULL_DESIGN ("charge_full_design"), //$NON-NLS-1$
+		POWER_NOW ("power_now"), //$NON-NLS-1$
+		CURRENT_NOW ("current_now"), //$NON-NLS-1$
+		VOLTAGE_NOW ("voltage_now"), //$NON-NLS-1$
+		TECHNOLOGY ("technology"), //$NON-NLS-1$
+		SCOPE ("scope"); //$NON-NLS-1$
+
+		final String file;
+
+		Attribute(String file) {
+			this.file = file;
+		}
+	}
+
+	private final Path root;
+	private final Map<String, SysfsDevice> devices = new HashMap<>();
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final DeviceValues values = new DeviceValues();
+	private Map<String, DeviceSnapshot> snapshot = Collections.emptyMap();
+
+	/**
+	 * creates a power source reading from the default sysfs root
+	 */
+	public SysfsPowerSource() {
+		this(Paths.get(DEFAULT_ROOT));
+	}
+
+	/**
+	 * creates a power source reading from the given root directory, which
+	 * must be structured like /sys/class/power_supply
+	 * 
+	 * @param root	the power_supply root directory
+	 */
+	public SysfsPowerSource(final Path root) {
+		this.root = Objects.requireNonNull(root);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * checks, if the sysfs root provides at least one power supply device
+	 * 
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isAvailable()
+	 */
+	@Override
+	public boolean isAvailable() {
+		return !getDevices().isEmpty();
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * scans the sysfs root for devices, new devices are opened, detached
+	 * devices are closed
+	 * 
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getDevices()
+	 */
+	@Override
+	public synchronized List<String> getDevices() {
+		final Map<String, Path> found = new HashMap<>();
+		if (Files.isDirectory(root)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+				for (Path dir : stream) {
+					String id = deviceId(dir);
+					if (id != null)
+						found.put(id, dir);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		Iterator<Map.Entry<String, SysfsDevice>> it = devices.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, SysfsDevice> entry = it.next();
+			if (!found.containsKey(entry.getKey())) {
+				entry.getValue().close();
+				it.remove();
+			}
+		}
+		for (Map.Entry<String, Path> entry : found.entrySet())
+			if (!devices.containsKey(entry.getKey()))
+				devices.put(entry.getKey(), new SysfsDevice(entry.getValue()));
+		return new ArrayList<>(devices.keySet());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getBatteryLoad(java.lang.String)
+	 */
+	@Override
+	public synchronized int getBatteryLoad(final String battery) {
+		SysfsDevice device = devices.get(battery);
+		if (device == null)
+			return 0;
+		return (int) readLong(device, Attribute.CAPACITY);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isCharging(java.lang.String)
+	 */
+	@Override
+	public synchronized boolean isCharging(final String battery) {
+		SysfsDevice device = devices.get(battery);
+		if (device == null)
+			return false;
+		return readEquals(device, Attribute.STATUS, STATUS_CHARGING);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isSupplying(java.lang.String)
+	 */
+	@Override
+	public synchronized boolean isSupplying(final String linePower) {
+		SysfsDevice device = devices.get(linePower);
+		if (device == null)
+			return false;
+		return readLong(device, Attribute.ONLINE) == 1;
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * the snapshot covers the devices found by the last call of getDevices
+	 * 
+	 * @see com.github.koshamo.jupower.upower.PowerSource#snapshot()
+	 */
+	@Override
+	public synchronized Map<String, DeviceSnapshot> snapshot() {
+		boolean changed = snapshot.size() != devices.size();
+		for (Map.Entry<String, SysfsDevice> entry : devices.entrySet()) {
+			final SysfsDevice device = entry.getValue();
+			readValues(device);
+			if (device.snapshot == null || !device.snapshot.hasValues(values)) {
+				device.snapshot = new DeviceSnapshot(entry.getKey(), values);
+				changed = true;
+			}
+		}
+		if (changed) {
+			final Map<String, DeviceSnapshot> snap = new HashMap<>();
+			for (Map.Entry<String, SysfsDevice> entry : devices.entrySet())
+				snap.put(entry.getKey(), entry.getValue().snapshot);
+			snapshot = Collections.unmodifiableMap(snap);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * reads all attributes of the device into the reused values object.
+	 * Batteries reporting charge instead of energy are converted using the
+	 * current voltage, times are estimated from energy and rate like upower
+	 * does.
+	 * 
+	 * @param device	the device to be read
+	 */
+	private void readValues(final SysfsDevice device) {
+		values.clear();
+		values.setPercentage((int) readLong(device, Attribute.CAPACITY));
+		final int status = readLine(device, Attribute.STATUS);
+		final boolean charging = bufferEquals(status, STATUS_CHARGING);
+		final boolean discharging = bufferEquals(status, STATUS_DISCHARGING);
+		values.setCharging(charging);
+		values.setDischarging(discharging);
+		// the batteries of peripherals have the scope Device
+		values.setPowerSupply(!readEquals(device, Attribute.SCOPE, SCOPE_DEVICE));
+		values.setOnline(readLong(device, Attribute.ONLINE) == 1);
+		final double voltage = readLong(device, Attribute.VOLTAGE_NOW) / MICRO;
+		values.setVoltage(voltage);
+		final double energy = readEnergy(device, 
+				Attribute.ENERGY_NOW, Attribute.CHARGE_NOW, voltage);
+		final double energyFull = readEnergy(device, 
+				Attribute.ENERGY_FULL, Attribute.CHARGE_FULL, voltage);
+		final double energyDesign = readEnergy(device, 
+				Attribute.ENERGY_FULL_DESIGN, Attribute.CHARGE_FULL_DESIGN, voltage);
+		values.setEnergy(energy);
+		values.setEnergyFull(energyFull);
+		if (energyDesign > 0)
+			values.setCapacity(energyFull / energyDesign * 100);
+		double rate = device.has(Attribute.POWER_NOW)
+				? readLong(device, Attribute.POWER_NOW) / MICRO
+				: readLong(device, Attribute.CURRENT_NOW) / MICRO * voltage;
+		rate = Math.abs(rate);
+		values.setEnergyRate(rate);
+		if (rate > 0 && discharging)
+			values.setTimeToEmpty(Math.round(energy / rate * SECONDS_PER_HOUR));
+		if (rate > 0 && charging && energyFull > energy)
+			values.setTimeToFull(
+					Math.round((energyFull - energy) / rate * SECONDS_PER_HOUR));
+		values.setTechnology(readTechnology(device));
+	}
+
+	/**
+	 * reads an energy attribute in Wh, if the energy attribute is not 
+	 * available, the charge attribute is converted using the given voltage
+	 * 
+	 * @param device	the device to be read
+	 * @param energy	the energy attribute
+	 * @param charge	the corresponding charge attribute
+	 * @param voltage	the voltage in V
+	 * @return			the energy in Wh
+	 */
+	private double readEnergy(final SysfsDevice device, final Attribute energy,
+			final Attribute charge, final double voltage) {
+		if (device.has(energy))
+			return readLong(device, energy) / MICRO;
+		return readLong(device, charge) / MICRO * voltage;
+	}
+
+	/**
+	 * reads the battery technology
+	 * 
+	 * @param device	the device to be read
+	 * @return			the technology, UNKNOWN if not available
+	 */
+	private Technology readTechnology(final SysfsDevice device) {
+		final int length = readLine(device, Attribute.TECHNOLOGY);
+		for (int i = 0; i < TECHNOLOGY_KEYS.length; ++i)
+			if (bufferEquals(length, TECHNOLOGY_KEYS[i]))
+				return TECHNOLOGIES[i];
+		return Technology.UNKNOWN;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#close()
+	 */
+	@Override
+	public synchronized void close() {
+		devices.values().forEach(SysfsDevice::close);
+		devices.clear();
+	}
+
+	/**
+	 * builds the upower like device name from the device's type
+	 * 
+	 * @param dir	the device directory
+	 * @return		the device name, null, if the directory is no device
+	 */
+	private static String deviceId(final Path dir) {
+		final Path type = dir.resolve(TYPE);
+		if (!Files.isReadable(type))
+			return null;
+		try {
+			final String value = new String(
+					Files.readAllBytes(type), StandardCharsets.US_ASCII).trim();
+			final String name = dir.getFileName().toString();
+			if (value.equals(TYPE_BATTERY))
+				return Upower.BATTERY.getKey() + "_" + name; //$NON-NLS-1$
+			if (value.equals(TYPE_UPS))
+				return DeviceType.UPS.getKey() + "_" + name; //$NON-NLS-1$
+			return Upower.LINE_POWER.getKey() + "_" + name; //$NON-NLS-1$
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * reads the given attribute into the buffer
+	 * 
+	 * @param device	the device to be read
+	 * @param attribute	the attribute to be read
+	 * @return			the number of bytes read, -1 on errors
+	 */
+	private int read(final SysfsDevice device, final Attribute attribute) {
+		final FileChannel channel = device.channels[attribute.ordinal()];
+		if (channel == null)
+			return -1;
+		buffer.clear();
+		try {
+			return channel.read(buffer, 0);
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * reads the given attribute and compares it to the given value, a 
+	 * trailing line feed is ignored
+	 * 
+	 * @param device	the device to be read
+	 * @param attribute	the attribute to be read
+	 * @param value		the value to compare with
+	 * @return			true, if the attribute has the given value
+	 */
+	private boolean readEquals(final SysfsDevice device, final Attribute attribute,
+			final byte[] value) {
+		return bufferEquals(readLine(device, attribute), value);
+	}
+
+	/**
+	 * reads the given attribute into the buffer without the trailing line
+	 * feed
+	 * 
+	 * @param device	the device to be read
+	 * @param attribute	the attribute to be read
+	 * @return			the length of the value, -1 on errors
+	 */
+	private int readLine(final SysfsDevice device, final Attribute attribute) {
+		int length = read(device, attribute);
+		while (length > 0 && buffer.get(length - 1) == '\n')
+			--length;
+		return length;
+	}
+
+	/**
+	 * compares the buffer content to the given value
+	 * 
+	 * @param length	the length of the buffer content
+	 * @param value		the value to compare with
+	 * @return			true, if the buffer holds the given value
+	 */
+	private boolean bufferEquals(final int length, final byte[] value) {
+		if (length != value.length)
+			return false;
+		for (int i = 0; i < length; ++i)
+			if (buffer.get(i) != value[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * reads the given attribute and parses it as decimal number
+	 * 
+	 * @param device	the device to be read
+	 * @param attribute	the attribute to be read
+	 * @return			the value, 0 if it could not be read
+	 */
+	private long readLong(final SysfsDevice device, final Attribute attribute) {
+		final int length = read(device, attribute);
+		long value = 0;
+		boolean negative = false;
+		for (int i = 0; i < length; ++i) {
+			byte b = buffer.get(i);
+			if (b == '-' && i == 0)
+				negative = true;
+			else if (b >= '0' && b <= '9')
+				value = value * 10 + (b - '0');
+			else
+				break;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * holds the open attribute files of one power supply device
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private static class SysfsDevice {
+
+		final FileChannel[] channels = new FileChannel[Attribute.values().length];
+		DeviceSnapshot snapshot;
+
+		/**
+		 * opens all attribute files of the device, which are available
+		 * 
+		 * @param dir	the device directory
+		 */
+		SysfsDevice(final Path dir) {
+			for (Attribute attribute : Attribute.values())
+				channels[attribute.ordinal()] = open(dir.resolve(attribute.file));
+		}
+
+		/**
+		 * @param attribute	the attribute of interest
+		 * @return			true, if the device provides the attribute
+		 */
+		boolean has(final Attribute attribute) {
+			return channels[attribute.ordinal()] != null;
+		}
+
+		/**
+		 * closes all attribute files
+		 */
+		void close() {
+			for (FileChannel channel : channels)
+				close(channel);
+		}
+
+		/**
+		 * helper method to open an attribute file
+		 * 
+		 * @param file	the attribute file
+		 * @return		the opened channel, null if the file is not available
+		 */
+		private static FileChannel open(final Path file) {
+			if (!Files.isReadable(file))
+				return null;
+			try {
+				return FileChannel.open(file, StandardOpenOption.READ);
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * helper method to close an attribute file
+		 * 
+		 * @param channel	the channel to be closed, may be null
+		 */
+		private static void close(final FileChannel channel) {
+			if (channel == null)
+				return;
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// nothing left to do
+			}
+		}
+	}
+}
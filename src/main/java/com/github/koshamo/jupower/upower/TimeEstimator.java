@@ -0,0 +1,196 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+/**
+ * TimeEstimator estimates the time until the battery is empty or full 
+ * from a stream of battery levels. The level is fitted to a straight line 
+ * by least squares, weighted exponentially by the age of the samples, 
+ * thus older samples fade out within the time constant. The weighted sums
+ * of the fit are updated recursively, every sample takes constant time 
+ * and memory, the history is never fitted again.
+ * 
+ * The confidence is derived from the standard error of the fitted rate: 
+ * a rate, which is known to be exact, has a confidence of 1, a rate,
+ * whose error is as large as the rate itself, has a confidence of 0.
+ * 
+ * A change between charging and discharging starts a new fit.
+ * This class is not thread safe.
+ * 
+ * @author jochen
+ *
+ */
+public final class TimeEstimator {
+
+	public static final long DEFAULT_TIME_CONSTANT = 15 * 60 * 1000;
+	private static final double HOUR = 60 * 60 * 1000;
+	// the least weight of samples for a fit with an error
+	private static final double MIN_WEIGHT = 3;
+
+	private final double timeConstant;
+	private boolean charging;
+	private long lastTime = Long.MIN_VALUE;
+	private double lastLevel;
+	// weighted sums, the time in hours relative to the last sample
+	private double sumW;
+	private double sumT;
+	private double sumTT;
+	private double sumL;
+	private double sumTL;
+	private double sumLL;
+
+	/**
+	 * creates an estimator with the default time constant
+	 */
+	public TimeEstimator() {
+		this(DEFAULT_TIME_CONSTANT);
+	}
+
+	/**
+	 * @param timeConstant	the time in milliseconds, after which the 
+	 * weight of a sample has fallen to 1/e
+	 */
+	public TimeEstimator(final long timeConstant) {
+		if (timeConstant <= 0)
+			throw new IllegalArgumentException("time constant must be positive"); //$NON-NLS-1$
+		this.timeConstant = timeConstant / HOUR;
+	}
+
+	/**
+	 * adds a sample. A sample with the same time as the last one replaces 
+	 * it, a sample older than the last one starts a new fit.
+	 * 
+	 * @param time		the time of the sample in milliseconds
+	 * @param level		the battery level in percent
+	 * @param charging	true, if the battery is charging
+	 */
+	public void add(final long time, final double level, final boolean charging) {
+		if (lastTime == Long.MIN_VALUE || charging != this.charging || time < lastTime) {
+			reset();
+			this.charging = charging;
+		} else if (time == lastTime) {
+			// no decay since the last sample, thus its weight is 1
+			sumW -= 1;
+			sumL -= lastLevel;
+			sumLL -= lastLevel * lastLevel;
+		} else {
+			final double dt = (time - lastTime) / HOUR;
+			// move the origin to the new sample
+			sumTT += -2 * dt * sumT + dt * dt * sumW;
+			sumT -= dt * sumW;
+			sumTL -= dt * sumL;
+			final double decay = Math.exp(-dt / timeConstant);
+			sumW *= decay;
+			sumT *= decay;
+			sumTT *= decay;
+			sumL *= decay;
+			sumTL *= decay;
+			sumLL *= decay;
+		}
+		sumW += 1;
+		sumL += level;
+		sumLL += level * level;
+		lastTime = time;
+		lastLevel = level;
+	}
+
+	/**
+	 * forgets all samples
+	 */
+	public void reset() {
+		lastTime = Long.MIN_VALUE;
+		sumW = 0;
+		sumT = 0;
+		sumTT = 0;
+		sumL = 0;
+		sumTL = 0;
+		sumLL = 0;
+	}
+
+	/**
+	 * @return	true, if the samples are charging
+	 */
+	public boolean isCharging() {
+		return charging;
+	}
+
+	/**
+	 * @return	true, if the samples allow an estimate: there are enough 
+	 * samples, and the level falls while discharging or rises while 
+	 * charging
+	 */
+	public boolean isValid() {
+		final double denominator = denominator();
+		if (sumW < MIN_WEIGHT || denominator <= 0)
+			return false;
+		final double rate = getRate();
+		return charging ? rate > 0 : rate < 0;
+	}
+
+	/**
+	 * @return	the fitted rate in percent per hour, negative while 
+	 * discharging
+	 */
+	public double getRate() {
+		final double denominator = denominator();
+		return denominator <= 0 ? 0 : (sumW * sumTL - sumT * sumL) / denominator;
+	}
+
+	/**
+	 * @return	the fitted level at the time of the last sample in percent
+	 */
+	public double getLevel() {
+		return sumW <= 0 ? 0 : (sumL - getRate() * sumT) / sumW;
+	}
+
+	/**
+	 * @return	the estimated seconds until the battery is empty while 
+	 * discharging, or until it is full while charging, -1 if no estimate is
+	 * valid
+	 */
+	public long getSeconds() {
+		if (!isValid())
+			return -1;
+		final double level = Math.max(0, Math.min(100, getLevel()));
+		final double hours = charging ? (100 - level) / getRate() : level / -getRate();
+		return (long) (hours * 60 * 60);
+	}
+
+	/**
+	 * @return	the confidence of the estimate from 0 to 1, 0 if no estimate
+	 * is valid
+	 */
+	public double getConfidence() {
+		if (!isValid() || sumW <= 2)
+			return 0;
+		final double rate = getRate();
+		final double level = getLevel();
+		// the weighted sum of the squared residuals
+		final double residuals = sumLL - 2 * level * sumL - 2 * rate * sumTL 
+				+ level * level * sumW + 2 * level * rate * sumT + rate * rate * sumTT;
+		final double variance = Math.max(0, residuals) / (sumW - 2);
+		final double error = Math.sqrt(variance * sumW / denominator());
+		return Math.max(0, Math.min(1, 1 - error / Math.abs(rate)));
+	}
+
+	/**
+	 * @return	the denominator of the fit, 0 if all samples have the same
+	 * time
+	 */
+	private double denominator() {
+		return sumW * sumTT - sumT * sumT;
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+
+/**
+ * UpowerCliSource is the PowerSource using the upower console tool via
+ * UpowerConnector. Changes are reported by an UpowerMonitor, while 
+ * subscribed.
+ * 
+ * @author jochen
+ *
+ */
+public class UpowerCliSource implements PowerSource {
+
+	public static final String NAME = "upower"; //$NON-NLS-1$
+	
+	private UpowerMonitor monitor;
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * upower is available, if it reports its version
+	 * 
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isAvailable()
+	 */
+	@Override
+	public boolean isAvailable() {
+		return UpowerConnector.getVersion() != null;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getDevices()
+	 */
+	@Override
+	public List<String> getDevices() {
+		return UpowerConnector.getDevices();
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * upower is run by the executor of UpowerConnector, no device is 
+	 * detected, if it fails
+	 * 
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getDevicesAsync()
+	 */
+	@Override
+	public CompletableFuture<List<String>> getDevicesAsync() {
+		return UpowerConnector.getDevicesAsync().exceptionally(e -> {
+			e.printStackTrace();
+			return Collections.emptyList();
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#getBatteryLoad(java.lang.String)
+	 */
+	@Override
+	public int getBatteryLoad(final String battery) {
+		return UpowerConnector.getBatteryLoad(battery);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isCharging(java.lang.String)
+	 */
+	@Override
+	public boolean isCharging(final String battery) {
+		return UpowerConnector.isCharging(battery);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isSupplying(java.lang.String)
+	 */
+	@Override
+	public boolean isSupplying(final String linePower) {
+		return UpowerConnector.isSupplying(linePower);
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * one upower call for all devices
+	 * 
+	 * @see com.github.koshamo.jupower.upower.PowerSource#snapshot()
+	 */
+	@Override
+	public Map<String, DeviceSnapshot> snapshot() {
+		return UpowerConnector.getSnapshot();
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * starts upower in monitor mode, the current snapshot is the reference
+	 * for the reported changes and passed to the listener. It is read, 
+	 * while the monitor starts. A replay of upower outputs can not be 
+	 * monitored, thus it is polled.
+	 * 
+	 * @see com.github.koshamo.jupower.upower.PowerSource#subscribe(java.util.function.Consumer)
+	 */
+	@Override
+	public boolean subscribe(final Consumer<DeviceSnapshot> listener) {
+		final CompletableFuture<Map<String, DeviceSnapshot>> current;
+		final UpowerMonitor started;
+		synchronized (this) {
+			unsubscribe();
+			if (!UpowerConnector.runsProcesses())
+				return false;
+			current = UpowerConnector.getSnapshotAsync();
+			started = new UpowerMonitor(listener);
+			if (!started.start())
+				return false;
+			monitor = started;
+		}
+		// the listener may lock its module, which may unsubscribe meanwhile
+		started.seed(current.join());
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#isSubscribed()
+	 */
+	@Override
+	public synchronized boolean isSubscribed() {
+		return monitor != null && monitor.isRunning();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#unsubscribe()
+	 */
+	@Override
+	public synchronized void unsubscribe() {
+		if (monitor != null)
+			monitor.stop();
+		monitor = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.github.koshamo.jupower.upower.PowerSource#close()
+	 */
+	@Override
+	public void close() {
+		unsubscribe();
+	}
+
+}
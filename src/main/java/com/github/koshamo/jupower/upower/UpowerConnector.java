@@ -17,12 +17,18 @@ package com.github.koshamo.jupower.upower;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
 import com.github.koshamo.jupower.shared.Upower;
 
 /**
@@ -34,6 +40,15 @@ import com.github.koshamo.jupower.shared.Upower;
  */
 public class UpowerConnector {
 
+	private static final int MAX_PROCESSES = 2;
+	private static final long TIMEOUT = 5 * 1000;
+	private static final ProcessExecutor EXECUTOR = 
+			new ProcessExecutor(MAX_PROCESSES, TIMEOUT);
+	private static volatile CommandRunner runner = EXECUTOR;
+	private static final ThreadLocal<UpowerParser> PARSER = 
+			ThreadLocal.withInitial(UpowerParser::new);
+	private static Map<String, DeviceSnapshot> lastSnapshot = Collections.emptyMap();
+
 	/**
 	 * private constructor, to prevent users to instantiate this class
 	 */
@@ -42,6 +57,36 @@ public class UpowerConnector {
 	}
 	
 	
+	/**
+	 * sets the runner of all upower calls, e.g. a replay of recorded 
+	 * outputs for load tests. The snapshots of the previous runner are
+	 * discarded.
+	 * 
+	 * @param commandRunner	the runner of the upower calls, null to run 
+	 * upower as process again
+	 */
+	public static void setCommandRunner(final CommandRunner commandRunner) {
+		synchronized (UpowerConnector.class) {
+			runner = commandRunner != null ? commandRunner : EXECUTOR;
+			lastSnapshot = Collections.emptyMap();
+		}
+	}
+	
+	/**
+	 * @return	the runner of all upower calls
+	 */
+	public static CommandRunner getCommandRunner() {
+		return runner;
+	}
+	
+	/**
+	 * @return	true, if upower is run as process, false, if another 
+	 * runner has been set
+	 */
+	static boolean runsProcesses() {
+		return runner == EXECUTOR;
+	}
+	
 	/**
 	 * parses the current version of upower.
 	 * This method can be used to check whether upower is available
@@ -77,6 +122,17 @@ public class UpowerConnector {
 		return listInfos(Upower.UPOWER_CMD.getKey(), Upower.DEVICES_CMD.getKey());
 	}
 	
+	/**
+	 * like getDevices, but upower is called asynchronously
+	 * 
+	 * @return	the future list of available upower devices, which completes
+	 * exceptionally, if upower fails or times out
+	 */
+	public static CompletableFuture<List<String>> getDevicesAsync() {
+		return runner.submit(UpowerConnector::readLines, 
+				Upower.UPOWER_CMD.getKey(), Upower.DEVICES_CMD.getKey());
+	}
+	
 	/**
 	 * printInfo is a debugging method to print all available information
 	 * for a given device. Notice: this methods prints to standard output
@@ -97,12 +153,7 @@ public class UpowerConnector {
 	 * @return			the battery load as integer
 	 */
 	public static int getBatteryLoad(final String battery) {
-		final List<String> infos = 
-				listInfos(Upower.UPOWER_CMD.getKey(), Upower.DETAILS_CMD.getKey(), battery);
-		final Optional<String> opt = findValue(infos, Upower.BATTERY_LOAD_KEY.getKey());
-		if (opt.isPresent())
-			return Integer.valueOf(opt.get().substring(0, opt.get().length()-1)).intValue();
-		return 0;
+		return parseDevice(battery).values.getPercentage();
 	}
 	
 	/**
@@ -113,12 +164,7 @@ public class UpowerConnector {
 	 * @return			true, if the batters is Charging
 	 */
 	public static boolean isCharging(final String battery) {
-		final List<String> infos = 
-				listInfos(Upower.UPOWER_CMD.getKey(), Upower.DETAILS_CMD.getKey(), battery);
-		final Optional<String> opt = findValue(infos, Upower.CHARGING_KEY.getKey());
-		if (opt.isPresent() && opt.get().equals(Upower.CHARGING_VALUE.getKey()))
-			return true;
-		return false;
+		return parseDevice(battery).values.isCharging();
 	}
 
 	/**
@@ -129,38 +175,114 @@ public class UpowerConnector {
 	 * @return			true, if line power supply is available
 	 */
 	public static boolean isSupplying(final String linePower) {
-		final List<String> infos = 
-				listInfos(Upower.UPOWER_CMD.getKey(), Upower.DETAILS_CMD.getKey(), linePower);
-		final Optional<String> opt = findValue(infos, Upower.SUPPLYING_KEY.getKey()); 
-		if (opt.isPresent() && opt.get().equals(Upower.SUPPLYING_VALUE.getKey()))
-			return true;
-		else
-			return false;
+		return parseDevice(linePower).values.isOnline();
 	}
 	
 	/**
-	 * helper method for the parsing methods: 
-	 * the device information is a list in form of key: value
-	 * this method checks, if the given key is in the device information, 
-	 * which has to be provided as a list. If the key has been found, this
-	 * method returns the value.
-	 * This method uses Optional as return type to be null save 
+	 * helper method to call upower for the details of one device and to
+	 * parse them, the parse time is recorded
 	 * 
-	 * @param list	the device information string as list
-	 * @param key	the key of interest
-	 * @return		the value of the provided key, if found, otherwise 
-	 * Optional.empty
+	 * @param device	the device of interest
+	 * @return			the parser holding the values of the device
 	 */
-	private static Optional<String> findValue(
-			final List<String> list, final String key) {
-		if (list.isEmpty())
-			return Optional.empty();
-		return list.stream()
-				.filter(s -> s.contains(key))
-				.flatMap(s -> Stream.of(s.split(Upower.SPLITTER.getKey())))
-				.skip(1)
-				.map(s -> s.trim())
-				.findAny();
+	private static UpowerParser parseDevice(final String device) {
+		final UpowerParser parser = PARSER.get();
+		readInfos(parser, Upower.UPOWER_CMD.getKey(), Upower.DETAILS_CMD.getKey(), device);
+		final long start = System.nanoTime();
+		parser.parseDevice();
+		JuPowerMetrics.PARSE.recordSince(start);
+		return parser;
+	}
+	
+	/**
+	 * This method calls upower once to dump all devices and parses every
+	 * device block in a single pass. Thus all values of all devices are 
+	 * available with one upower call.
+	 * Snapshots of unchanged devices are reused, if nothing changed at all,
+	 * the previous map is returned. If upower fails or times out, the 
+	 * previous map is returned, too, thus no device vanishes for a cycle.
+	 * 
+	 * @return	the snapshots of all devices with the device name as key
+	 */
+	public static Map<String, DeviceSnapshot> getSnapshot() {
+		final UpowerParser parser = PARSER.get();
+		if (!readInfos(parser, Upower.UPOWER_CMD.getKey(), Upower.DUMP_CMD.getKey()))
+			return getLastSnapshot();
+		return createSnapshot(parser);
+	}
+	
+	/**
+	 * @return	the snapshots of the last successful upower call
+	 */
+	private static synchronized Map<String, DeviceSnapshot> getLastSnapshot() {
+		return lastSnapshot;
+	}
+	
+	/**
+	 * like getSnapshot, but upower is called and parsed asynchronously
+	 * 
+	 * @return	the future snapshots of all devices, the last snapshot, if 
+	 * upower fails or times out
+	 */
+	public static CompletableFuture<Map<String, DeviceSnapshot>> getSnapshotAsync() {
+		return runner.submit(in -> {
+					final UpowerParser parser = PARSER.get();
+					parser.read(in);
+					return createSnapshot(parser);
+				}, Upower.UPOWER_CMD.getKey(), Upower.DUMP_CMD.getKey())
+				.exceptionally(e -> {
+					e.printStackTrace();
+					return getLastSnapshot();
+				});
+	}
+	
+	/**
+	 * helper method to create the snapshots of all device blocks of the 
+	 * upower dump in the parser, the parse time is recorded
+	 * 
+	 * @param parser	the parser holding the output of upower -d
+	 * @return			the snapshots of all devices with the device name as key
+	 */
+	private static synchronized Map<String, DeviceSnapshot> createSnapshot(
+			final UpowerParser parser) {
+		final long start = System.nanoTime();
+		int count = 0;
+		boolean changed = false;
+		while (parser.nextDevice()) {
+			++count;
+			final DeviceSnapshot last = findSnapshot(parser);
+			if (last == null || !last.hasValues(parser.values))
+				changed = true;
+		}
+		if (!changed && count == lastSnapshot.size()) {
+			JuPowerMetrics.PARSE.recordSince(start);
+			return lastSnapshot;
+		}
+		final Map<String, DeviceSnapshot> snapshot = new LinkedHashMap<>();
+		parser.rewind();
+		while (parser.nextDevice()) {
+			DeviceSnapshot snap = findSnapshot(parser);
+			if (snap == null || !snap.hasValues(parser.values))
+				snap = new DeviceSnapshot(parser.path(), parser.values);
+			snapshot.put(snap.getDevice(), snap);
+		}
+		lastSnapshot = Collections.unmodifiableMap(snapshot);
+		JuPowerMetrics.PARSE.recordSince(start);
+		return lastSnapshot;
+	}
+	
+	/**
+	 * helper method to find the last snapshot of the device block, which 
+	 * has been parsed last
+	 * 
+	 * @param parser	the parser positioned on a device block
+	 * @return			the last snapshot of this device, null if unknown
+	 */
+	private static DeviceSnapshot findSnapshot(final UpowerParser parser) {
+		for (DeviceSnapshot snap : lastSnapshot.values())
+			if (parser.pathEquals(snap.getDevice()))
+				return snap;
+		return null;
 	}
 	
 	/**
@@ -173,25 +295,57 @@ public class UpowerConnector {
 	 * @return			the upower return values as list of string (all clines)
 	 */
 	private static List<String> listInfos(final String... cmdarray) {
-		ProcessBuilder pb = new ProcessBuilder(cmdarray);
-		final List<String> info = new ArrayList<>();
 		try {
-			final Process pro = pb.start();
-			pro.waitFor();
-			final BufferedReader bis = new BufferedReader(
-					new InputStreamReader(pro.getInputStream()));
-			String line;
-			while ((line = bis.readLine()) != null)
-				info.add(line);
-			pro.destroy();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
+			return runner.run(UpowerConnector::readLines, cmdarray);
+		} catch (IOException | TimeoutException e) {
 			e.printStackTrace();
 		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			Thread.currentThread().interrupt();
 		}
+		return new ArrayList<>();
+	}
+	
+	/**
+	 * helper method to read the process output line by line
+	 * 
+	 * @param in	the output of the process
+	 * @return		all lines of the output
+	 * @throws IOException	if the output can not be read
+	 */
+	private static List<String> readLines(final InputStream in) throws IOException {
+		final List<String> info = new ArrayList<>();
+		final BufferedReader bis = new BufferedReader(new InputStreamReader(in));
+		String line;
+		while ((line = bis.readLine()) != null)
+			info.add(line);
 		return info;
 	}
+	
+	/**
+	 * this method interacts with the upower console tool like listInfos,
+	 * but keeps the raw output in the given parser, thus the output can be
+	 * parsed without creating Strings.
+	 * 
+	 * @param parser	the parser of the calling thread to read into, it is
+	 * cleared, if upower fails
+	 * @param cmdarray	upower command and all arguments
+	 * @return			true, if the output has been read, false, if upower
+	 * failed or timed out
+	 */
+	private static boolean readInfos(final UpowerParser parser, final String... cmdarray) {
+		try {
+			runner.run(in -> {
+					parser.read(in);
+					return parser;
+				}, cmdarray);
+			return true;
+		} catch (IOException | TimeoutException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		parser.clear();
+		return false;
+	}
 
 }
@@ -15,38 +15,91 @@
  */
 package com.github.koshamo.jupower.upower;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import com.github.koshamo.fiddler.Event;
 import com.github.koshamo.fiddler.EventHandler;
 import com.github.koshamo.fiddler.ExitEvent;
 import com.github.koshamo.fiddler.MessageBus;
 import com.github.koshamo.fiddler.MessageBus.ListenerType;
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+import com.github.koshamo.jupower.shared.BatteryAggregate;
+import com.github.koshamo.jupower.shared.BatteryAggregateEvent;
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+import com.github.koshamo.jupower.shared.DeviceSnapshotEvent;
+import com.github.koshamo.jupower.shared.DeviceType;
 import com.github.koshamo.jupower.shared.EventKeys;
-import com.github.koshamo.jupower.shared.StrBoolDataEvent;
-import com.github.koshamo.jupower.shared.StrIntDataEvent;
-import com.github.koshamo.jupower.shared.Upower;
+import com.github.koshamo.jupower.shared.PowerBoolEvent;
+import com.github.koshamo.jupower.shared.PowerIntEvent;
+import com.github.koshamo.jupower.shared.PowerStateDispatcher;
+import com.github.koshamo.jupower.shared.PowerStateEvent;
+import com.github.koshamo.jupower.shared.StartupMetrics;
+import com.github.koshamo.jupower.shared.TimeEstimate;
+import com.github.koshamo.jupower.shared.TimeEstimateEvent;
+import com.github.koshamo.jupower.upower.PollingPolicy.Check;
 
 /**
  * The class is the actual Upower Module, conncted to the message bus.
  * This class comminicates to other system modules via the system bus and
  * uses the util classes as backend.
  * 
+ * The module starts without blocking its creator: the power source is 
+ * selected on the poll thread, which probes the availability of every 
+ * candidate. The devices of upower, the usual choice, are discovered in 
+ * parallel. The polls are started, when both are known, see getReady().
+ * 
+ * Values are posted on change only, thus a module registering late, like
+ * the GUI, posts a STATE_REQUEST. The last values are posted to it again,
+ * the change filter is bypassed.
+ * 
  * @author jochen
  *
  */
 public class UpowerModule implements EventHandler {
 
 	final MessageBus messageBus;
-	private final int DEVICE_CHECK = 60 * 1000;
-	private final int BATTERY_CHECK = 10 * 1000;
-	private final int CHARGE_CHECK = 5 * 1000;
+	private final long snapshotAge;
+	private final double CONFIDENCE_STEP = 0.05;
+	// the device of the aggregate in the change filter
+	private final String AGGREGATE = EventKeys.AGGREGATE.getKey();
+	// subscriptions ended before the next device check, until polling
+	private final int MAX_RESUBSCRIPTIONS = 3;
 	
-	private DeviceChecker deviceChecker;
-	private BatteryChecker batteryChecker;
-	private ChargingAndSupplyChecker chargingChecker;
-	List<String> devices;
+	private final PollScheduler scheduler;
+	private final PollScheduler.Poll devicePoll;
+	private final PollScheduler.Poll batteryPoll;
+	private final PollScheduler.Poll chargingPoll;
+	private final PollScheduler.Poll upsPoll;
+	private final PollScheduler.Poll peripheralPoll;
+	private volatile boolean polling;
+	private final PollingPolicy policy;
+	private volatile boolean guiVisible;
+	private Map<String, DeviceSnapshot> adaptedSnapshot;
+	private boolean adaptedGuiVisible;
+	private volatile PowerSource source;
+	private final CompletableFuture<Void> ready;
+	private boolean stopped;
+	private final ChangeFilter changes;
+	private volatile boolean subscribed;
+	private int resubscriptions;
+	volatile List<String> devices = Collections.emptyList();
+	private final Set<String> detached = new HashSet<>();
+	private Map<String, DeviceSnapshot> snapshot;
+	private long snapshotTime;
+	private final Map<String, DeviceSnapshot> reported = new ConcurrentHashMap<>();
+	private final TimeEstimator estimator = new TimeEstimator();
+	private TimeEstimate estimate;
+	private final BatteryAggregator aggregator = new BatteryAggregator();
+	private BatteryAggregate aggregate;
+	private final PowerStateDispatcher dispatcher = new PowerStateDispatcher();
 	
 	/**
 	 * To instantiate this class, a valid message bus object is required to
@@ -55,21 +108,491 @@ public class UpowerModule implements EventHandler {
 	 * @param messageBus	the message bus
 	 */
 	public UpowerModule(final MessageBus messageBus) {
+		this(messageBus, ChangeFilter.DEFAULT_HYSTERESIS);
+	}
+	
+	/**
+	 * Like UpowerModule(MessageBus), but with the given hysteresis of the 
+	 * battery load: a change of the load against the direction of the last 
+	 * published change is posted only, if it reaches the hysteresis. 
+	 * 
+	 * @param messageBus	the message bus
+	 * @param hysteresis	the battery load hysteresis in percent, at least 1
+	 */
+	public UpowerModule(final MessageBus messageBus, final int hysteresis) {
+		this(messageBus, hysteresis, new AdaptivePollingPolicy());
+	}
+	
+	/**
+	 * Like UpowerModule(MessageBus, int), but the polling intervals are 
+	 * decided by the given policy
+	 * 
+	 * @param messageBus	the message bus
+	 * @param hysteresis	the battery load hysteresis in percent, at least 1
+	 * @param policy		the policy deciding the polling intervals
+	 */
+	public UpowerModule(final MessageBus messageBus, final int hysteresis, 
+			final PollingPolicy policy) {
 		this.messageBus = Objects.requireNonNull(messageBus);
-		// check if Upower is available
-		if (UpowerConnector.getVersion() == null) {
+		this.policy = Objects.requireNonNull(policy);
+		changes = new ChangeFilter(hysteresis);
+		snapshotAge = policy.getTick() / 2;
+		dispatcher.onBool(EventKeys.GUI_VISIBLE, (device, visible) -> {
+			guiVisible = visible;
+			adapt(false);
+		});
+		// register to message bus
+		messageBus.registerAllEvents(this, ListenerType.TARGET);
+		// all checks share one thread, aligned to the shortest interval
+		scheduler = new PollScheduler("upower-poll", policy.getTick()); //$NON-NLS-1$
+		devicePoll = scheduler.add(new DeviceChecker());
+		batteryPoll = scheduler.add(new BatteryChecker());
+		chargingPoll = scheduler.add(new ChargingAndSupplyChecker());
+		upsPoll = scheduler.add(new UpsChecker());
+		peripheralPoll = scheduler.add(new PeripheralChecker());
+		// the cheapest available power source, the devices of upower are 
+		// discovered meanwhile, unless another power source is forced
+		final String name = System.getProperty(PowerSources.PROPERTY);
+		final CompletableFuture<List<String>> upowerDevices = 
+				name == null || UpowerCliSource.NAME.equals(name)
+				? UpowerConnector.getDevicesAsync().exceptionally(e -> null)
+				: CompletableFuture.completedFuture(null);
+		final CompletableFuture<PowerSource> selection = CompletableFuture.supplyAsync(
+				() -> PowerSources.select(name), scheduler::execute);
+		ready = selection.thenCombine(upowerDevices, UpowerModule::discover)
+				.thenCompose(Function.identity())
+				.thenAcceptBothAsync(selection, (found, selected) -> start(selected, found), 
+						scheduler::execute);
+		ready.exceptionally(e -> {
+			e.printStackTrace();
+			return null;
+		});
+	}
+	
+	/**
+	 * @return	a future, which completes, when the power source has been
+	 * probed, the devices have been discovered and their current state has
+	 * been published
+	 */
+	public CompletableFuture<Void> getReady() {
+		return ready;
+	}
+	
+	/**
+	 * helper method to discover the devices of the selected power source
+	 * 
+	 * @param selected		the selected power source, null if none is 
+	 * available
+	 * @param upowerDevices	the devices of upower discovered in parallel, 
+	 * null if not discovered
+	 * @return				the future devices of the power source
+	 */
+	private static CompletableFuture<List<String>> discover(final PowerSource selected, 
+			final List<String> upowerDevices) {
+		if (selected == null)
+			return CompletableFuture.completedFuture(Collections.<String>emptyList());
+		if (upowerDevices != null && selected instanceof UpowerCliSource)
+			return CompletableFuture.completedFuture(upowerDevices);
+		return selected.getDevicesAsync();
+	}
+
+	/**
+	 * starts the polls with the selected power source, or shuts the 
+	 * application down, if no power source is available
+	 * 
+	 * @param selected	the selected power source, null if none is available
+	 * @param found		the devices of the power source
+	 */
+	private synchronized void start(final PowerSource selected, 
+			final List<String> found) {
+		if (stopped) {
+			if (selected != null)
+				selected.close();
+			return;
+		}
+		source = selected;
+		if (selected == null) {
 			System.out.println("Upower not available. Shutting down");
 			messageBus.postEvent(new ExitEvent(this, null));
+			return;
 		}
-		// register to message bus
-		messageBus.registerRequestEvents(this, ListenerType.TARGET);
-		devices = UpowerConnector.getDevices();
-		deviceChecker = new DeviceChecker();
-		new Thread(deviceChecker).start();
-		batteryChecker = new BatteryChecker();
-		new Thread(batteryChecker).start();
-		chargingChecker = new ChargingAndSupplyChecker();
-		new Thread(chargingChecker).start();
+		devices = found;
+		StartupMetrics.record(StartupMetrics.Step.UPOWER_READY);
+		// prefer reported changes, polling is the fallback only
+		if (!subscribe())
+			startPolling();
+		devicePoll.setInterval(policy.getInterval(Check.DEVICES, new PollingState(guiVisible)));
+		scheduler.start();
+	}
+	
+	/**
+	 * subscribes to the changes of the power source, which passes the 
+	 * current state of all devices first, thus no snapshot is read here
+	 * 
+	 * @return	true, if the power source reports changes, false, if it 
+	 * needs to be polled
+	 */
+	private boolean subscribe() {
+		if (!source.subscribe(this::publish))
+			return false;
+		subscribed = true;
+		return true;
+	}
+	
+	/**
+	 * posts the snapshot of a device, reported by the power source, and 
+	 * the single values, which the change filter accepts as transitions.
+	 * The values posted depend on the type of the device. A snapshot of a
+	 * detached device, reported late, is ignored.
+	 * 
+	 * @param snap	the current snapshot of a device
+	 */
+	private synchronized void publish(final DeviceSnapshot snap) {
+		final String dev = snap.getDevice();
+		if (detached.contains(dev))
+			return;
+		postSnapshot(snap);
+		reported.put(dev, snap);
+		final DeviceType type = snap.getType();
+		if (type == DeviceType.BATTERY) {
+			aggregator.update(snap);
+			estimate(System.currentTimeMillis());
+			postBattery(snap);
+			postCharging(snap);
+			publishAggregate();
+		}
+		else if (type == DeviceType.LINE_POWER) {
+			postSupplying(snap);
+			publishSupplying();
+			estimate(System.currentTimeMillis());
+		}
+		else if (type == DeviceType.UPS)
+			postUps(snap);
+		else if (type.isPeripheral())
+			postPeripheral(snap);
+	}
+	
+	/**
+	 * helper method to post a power state event, which is counted per key
+	 * in JuPowerMetrics
+	 * 
+	 * @param event	the event
+	 */
+	private void post(final PowerStateEvent event) {
+		JuPowerMetrics.EVENTS.record(event.getKey());
+		messageBus.postEvent(event);
+	}
+	
+	/**
+	 * helper method to post the snapshot of a device, which is counted in
+	 * JuPowerMetrics
+	 * 
+	 * @param snap	the snapshot
+	 */
+	private void postSnapshot(final DeviceSnapshot snap) {
+		JuPowerMetrics.EVENTS.recordSnapshot();
+		messageBus.postEvent(new DeviceSnapshotEvent(this, null, snap.getDevice(), snap));
+	}
+	
+	/**
+	 * sets the attached devices. Detached devices start from scratch, if 
+	 * attached again, the modules drop their state of the device. Called
+	 * under the same lock as publish, thus a detached device is not 
+	 * published again.
+	 * 
+	 * @param found	the attached devices
+	 */
+	private synchronized void attach(final List<String> found) {
+		final List<String> last = devices;
+		devices = found;
+		detached.removeAll(found);
+		for (String d : last) {
+			if (found.contains(d))
+				continue;
+			detached.add(d);
+			changes.forget(d);
+			reported.remove(d);
+			aggregator.remove(d);
+			post(new PowerBoolEvent(this, null, EventKeys.DEVICE_REMOVED, d, true));
+		}
+		publishAggregate();
+		publishSupplying();
+	}
+	
+	/**
+	 * posts the load of a system battery, if it has changed
+	 * 
+	 * @param snap	the battery snapshot
+	 */
+	private void postBattery(final DeviceSnapshot snap) {
+		final String dev = snap.getDevice();
+		if (changes.accept(dev, EventKeys.BATTERY, snap.getPercentage()))
+			post(new PowerIntEvent(this, null, 
+					EventKeys.BATTERY, dev, snap.getPercentage()));
+	}
+	
+	/**
+	 * posts the charging state of a system battery, if it has changed
+	 * 
+	 * @param snap	the battery snapshot
+	 */
+	private void postCharging(final DeviceSnapshot snap) {
+		final String dev = snap.getDevice();
+		if (changes.accept(dev, EventKeys.CHARGING, snap.isCharging()))
+			post(new PowerBoolEvent(this, null, 
+					EventKeys.CHARGING, dev, snap.isCharging()));
+	}
+	
+	/**
+	 * posts the supplying state of a line power device, if it has changed
+	 * 
+	 * @param snap	the line power snapshot
+	 */
+	private void postSupplying(final DeviceSnapshot snap) {
+		final String dev = snap.getDevice();
+		if (changes.accept(dev, EventKeys.SUPPLYING, snap.isOnline()))
+			post(new PowerBoolEvent(this, null, 
+					EventKeys.SUPPLYING, dev, snap.isOnline()));
+	}
+	
+	/**
+	 * posts, if any line power device is supplying, if it has changed. 
+	 * Laptops often have several line power devices, e.g. USB-C sources 
+	 * besides the AC adapter, thus a single device does not tell.
+	 */
+	private synchronized void publishSupplying() {
+		final boolean supplying = isSupplying();
+		if (changes.accept(AGGREGATE, EventKeys.AGGREGATE_SUPPLYING, supplying))
+			post(new PowerBoolEvent(this, null, 
+					EventKeys.AGGREGATE_SUPPLYING, null, supplying));
+	}
+	
+	/**
+	 * @return	true, if any reported line power device is supplying
+	 */
+	private boolean isSupplying() {
+		for (DeviceSnapshot snap : reported.values())
+			if (snap.getType() == DeviceType.LINE_POWER && snap.isOnline())
+				return true;
+		return false;
+	}
+	
+	/**
+	 * posts the load and the battery state of a UPS, if they have changed
+	 * 
+	 * @param snap	the UPS snapshot
+	 */
+	private void postUps(final DeviceSnapshot snap) {
+		final String dev = snap.getDevice();
+		if (changes.accept(dev, EventKeys.UPS_BATTERY, snap.getPercentage()))
+			post(new PowerIntEvent(this, null, 
+					EventKeys.UPS_BATTERY, dev, snap.getPercentage()));
+		if (changes.accept(dev, EventKeys.UPS_ON_BATTERY, snap.isDischarging()))
+			post(new PowerBoolEvent(this, null, 
+					EventKeys.UPS_ON_BATTERY, dev, snap.isDischarging()));
+	}
+	
+	/**
+	 * posts the load of a peripheral, if it has changed. The type of the
+	 * peripheral is part of the DeviceSnapshotEvent.
+	 * 
+	 * @param snap	the peripheral snapshot
+	 */
+	private void postPeripheral(final DeviceSnapshot snap) {
+		final String dev = snap.getDevice();
+		if (changes.accept(dev, EventKeys.PERIPHERAL_BATTERY, snap.getPercentage()))
+			post(new PowerIntEvent(this, null, 
+					EventKeys.PERIPHERAL_BATTERY, dev, snap.getPercentage()));
+	}
+	
+	/**
+	 * posts the combined load and charging state of all batteries, if the 
+	 * change filter accepts them as transitions. The aggregate itself is 
+	 * posted with them, or if its time to empty or full has changed by a 
+	 * minute.
+	 */
+	private synchronized void publishAggregate() {
+		final BatteryAggregate current = aggregator.get();
+		if (current == null || current == aggregate)
+			return;
+		boolean post = aggregate == null 
+				|| Math.abs(current.getTimeToEmpty() - aggregate.getTimeToEmpty()) >= 60
+				|| Math.abs(current.getTimeToFull() - aggregate.getTimeToFull()) >= 60;
+		if (changes.accept(AGGREGATE, EventKeys.AGGREGATE_BATTERY, current.getPercentage())) {
+			post(new PowerIntEvent(this, null, 
+					EventKeys.AGGREGATE_BATTERY, null, current.getPercentage()));
+			post = true;
+		}
+		if (changes.accept(AGGREGATE, EventKeys.AGGREGATE_CHARGING, current.isCharging())) {
+			post(new PowerBoolEvent(this, null, 
+					EventKeys.AGGREGATE_CHARGING, null, current.isCharging()));
+			post = true;
+		}
+		if (!post)
+			return;
+		aggregate = current;
+		JuPowerMetrics.EVENTS.record(EventKeys.AGGREGATE);
+		messageBus.postEvent(new BatteryAggregateEvent(this, null, 
+				EventKeys.AGGREGATE.getKey(), current));
+	}
+	
+	/**
+	 * starts polling the battery, charging and supplying state, if the 
+	 * power source does not report changes
+	 */
+	private void startPolling() {
+		polling = true;
+		adapt(true);
+	}
+	
+	/**
+	 * asks the polling policy for the intervals, if the snapshot or the 
+	 * GUI visibility has changed since the last call. Changed intervals of 
+	 * the battery and charging polls are posted in seconds.
+	 * 
+	 * @param force	true, to ask the policy even if nothing has changed
+	 */
+	private synchronized void adapt(final boolean force) {
+		final boolean gui = guiVisible;
+		if (!force && snapshot == adaptedSnapshot && gui == adaptedGuiVisible)
+			return;
+		adaptedSnapshot = snapshot;
+		adaptedGuiVisible = gui;
+		final PollingState state = createState(snapshot, gui);
+		devicePoll.setInterval(policy.getInterval(Check.DEVICES, state));
+		if (!polling)
+			return;
+		setInterval(batteryPoll, Check.BATTERY, EventKeys.BATTERY_POLL, state);
+		setInterval(chargingPoll, Check.CHARGING, EventKeys.CHARGE_POLL, state);
+		upsPoll.setInterval(policy.getInterval(Check.UPS, state));
+		peripheralPoll.setInterval(policy.getInterval(Check.PERIPHERALS, state));
+	}
+	
+	/**
+	 * helper method to set the interval of a poll, which is posted, if it 
+	 * has changed
+	 * 
+	 * @param poll	the poll of the scheduler
+	 * @param check	the check of the poll
+	 * @param key	the event key to post the interval with
+	 * @param state	the current power state
+	 */
+	private void setInterval(final PollScheduler.Poll poll, final Check check, 
+			final EventKeys key, final PollingState state) {
+		final long last = poll.getInterval();
+		poll.setInterval(policy.getInterval(check, state));
+		final long interval = poll.getInterval();
+		if (interval != last)
+			post(new PowerIntEvent(this, null, key, null, 
+					(int) (interval / 1000)));
+	}
+	
+	/**
+	 * helper method to create the polling state of the devices in the 
+	 * snapshot
+	 * 
+	 * @param snap	the snapshot of all devices, may be null
+	 * @param gui	true, if the GUI window is visible
+	 * @return		the polling state
+	 */
+	private PollingState createState(final Map<String, DeviceSnapshot> snap, 
+			final boolean gui) {
+		if (snap == null)
+			return new PollingState(gui);
+		int percentage = Integer.MAX_VALUE;
+		boolean charging = false;
+		boolean supplying = false;
+		double energyFull = 0;
+		double energyRate = 0;
+		int batteries = 0;
+		int ups = 0;
+		boolean upsOnBattery = false;
+		int peripherals = 0;
+		for (String device : devices) {
+			final DeviceSnapshot dev = snap.get(device);
+			if (dev == null)
+				continue;
+			final DeviceType type = dev.getType();
+			if (type == DeviceType.BATTERY) {
+				percentage = Math.min(percentage, dev.getPercentage());
+				charging |= dev.isCharging();
+				energyFull += dev.getEnergyFull();
+				energyRate += dev.getEnergyRate();
+				++batteries;
+			}
+			else if (type == DeviceType.LINE_POWER)
+				supplying |= dev.isOnline();
+			else if (type == DeviceType.UPS) {
+				upsOnBattery |= dev.isDischarging();
+				++ups;
+			}
+			else if (type.isPeripheral())
+				++peripherals;
+		}
+		return new PollingState(batteries == 0 ? 0 : percentage, charging, 
+				supplying, energyFull, energyRate, gui, 
+				batteries, ups, upsOnBattery, peripherals);
+	}
+	
+	/**
+	 * adds the level of all batteries to the estimator and posts the time
+	 * to empty or full, if the estimate has changed by a minute or its 
+	 * confidence by CONFIDENCE_STEP. The level is the combined load of the
+	 * BatteryAggregator.
+	 * 
+	 * @param time	the time of the current device snapshots
+	 */
+	private synchronized void estimate(final long time) {
+		final BatteryAggregate batteries = aggregator.get();
+		final boolean supplying = isSupplying();
+		// a full battery on line power is neither charging nor discharging
+		if (batteries == null || supplying && !batteries.isCharging()) {
+			estimator.reset();
+			return;
+		}
+		final boolean charging = batteries.isCharging();
+		final double level = batteries.getLevel();
+		estimator.add(time, level, charging);
+		final long seconds = estimator.getSeconds();
+		if (seconds < 0)
+			return;
+		final double confidence = estimator.getConfidence();
+		if (estimate != null && estimate.isCharging() == charging
+				&& Math.abs(estimate.getSeconds() - seconds) < 60
+				&& Math.abs(estimate.getConfidence() - confidence) < CONFIDENCE_STEP)
+			return;
+		estimate = new TimeEstimate(charging, seconds, confidence, estimator.getRate());
+		final EventKeys key = charging ? EventKeys.TIME_TO_FULL : EventKeys.TIME_TO_EMPTY;
+		JuPowerMetrics.EVENTS.record(key);
+		messageBus.postEvent(new TimeEstimateEvent(this, null, key.getKey(), estimate));
+	}
+	
+	/**
+	 * all checkers share one snapshot of all devices, which is only
+	 * refreshed, if it is older than half a tick. Thus the checkers running
+	 * in the same cycle use one power source call only.
+	 * While polling, every device snapshot, which has changed, is posted.
+	 * 
+	 * @return	the snapshots of all devices with the device name as key
+	 */
+	synchronized Map<String, DeviceSnapshot> getSnapshot() {
+		final long now = System.currentTimeMillis();
+		if (snapshot == null || now - snapshotTime >= snapshotAge) {
+			final Map<String, DeviceSnapshot> last = snapshot;
+			snapshot = source.snapshot();
+			snapshotTime = now;
+			reported.putAll(snapshot);
+			for (DeviceSnapshot snap : snapshot.values())
+				if (snap.getType() == DeviceType.BATTERY)
+					aggregator.update(snap);
+			estimate(now);
+			publishAggregate();
+			if (polling && snapshot != last)
+				for (DeviceSnapshot snap : snapshot.values())
+					if (last == null || last.get(snap.getDevice()) != snap)
+						postSnapshot(snap);
+		}
+		return snapshot;
 	}
 	
 	/* (non-Javadoc)
@@ -79,8 +602,60 @@ public class UpowerModule implements EventHandler {
 	 */
 	@Override
 	public void handle(final Event event) {
-		// TODO Auto-generated method stub
-
+		if (event instanceof PowerStateEvent 
+				&& ((PowerStateEvent) event).getKey() == EventKeys.STATE_REQUEST)
+			republish(event.getSource());
+		else
+			dispatcher.dispatch(event);
+	}
+	
+	/**
+	 * posts the last reported state of all devices, the aggregate and the
+	 * time estimate to the requester of the state
+	 * 
+	 * @param requester	the module, which has requested the state
+	 */
+	private synchronized void republish(final EventHandler requester) {
+		// nothing is known yet, all values follow, when the module starts
+		if (reported.isEmpty())
+			return;
+		for (DeviceSnapshot snap : reported.values()) {
+			final String dev = snap.getDevice();
+			messageBus.postEvent(new DeviceSnapshotEvent(this, requester, dev, snap));
+			final DeviceType type = snap.getType();
+			if (type == DeviceType.BATTERY) {
+				post(new PowerIntEvent(this, requester, 
+						EventKeys.BATTERY, dev, snap.getPercentage()));
+				post(new PowerBoolEvent(this, requester, 
+						EventKeys.CHARGING, dev, snap.isCharging()));
+			}
+			else if (type == DeviceType.LINE_POWER)
+				post(new PowerBoolEvent(this, requester, 
+						EventKeys.SUPPLYING, dev, snap.isOnline()));
+			else if (type == DeviceType.UPS) {
+				post(new PowerIntEvent(this, requester, 
+						EventKeys.UPS_BATTERY, dev, snap.getPercentage()));
+				post(new PowerBoolEvent(this, requester, 
+						EventKeys.UPS_ON_BATTERY, dev, snap.isDischarging()));
+			}
+			else if (type.isPeripheral())
+				post(new PowerIntEvent(this, requester, 
+						EventKeys.PERIPHERAL_BATTERY, dev, snap.getPercentage()));
+		}
+		if (aggregate != null) {
+			post(new PowerIntEvent(this, requester, 
+					EventKeys.AGGREGATE_BATTERY, null, aggregate.getPercentage()));
+			post(new PowerBoolEvent(this, requester, 
+					EventKeys.AGGREGATE_CHARGING, null, aggregate.isCharging()));
+			messageBus.postEvent(new BatteryAggregateEvent(this, requester, 
+					EventKeys.AGGREGATE.getKey(), aggregate));
+		}
+		post(new PowerBoolEvent(this, requester, 
+				EventKeys.AGGREGATE_SUPPLYING, null, isSupplying()));
+		if (estimate != null) {
+			final EventKeys key = estimate.isCharging() ? EventKeys.TIME_TO_FULL : EventKeys.TIME_TO_EMPTY;
+			messageBus.postEvent(new TimeEstimateEvent(this, requester, key.getKey(), estimate));
+		}
 	}
 
 	/* (non-Javadoc)
@@ -91,15 +666,18 @@ public class UpowerModule implements EventHandler {
 	 * @see com.github.koshamo.fiddler.EventHandler#shutdown()
 	 */
 	@Override
-	public void shutdown() {
-		deviceChecker.stop();
-		batteryChecker.stop();
-		chargingChecker.stop();
-		messageBus.unregisterRequestEvents(this);
+	public synchronized void shutdown() {
+		stopped = true;
+		scheduler.stop();
+		if (source != null) {
+			source.unsubscribe();
+			source.close();
+		}
+		messageBus.unregisterAllEvents(this);
 	}
 
 	/**
-	 * The runnable class Device Checker is to be used in a seperate thread
+	 * The runnable class Device Checker is run by the scheduler
 	 * to poll the system for devices attached / detached
 	 * 
 	 * @author jochen
@@ -107,8 +685,6 @@ public class UpowerModule implements EventHandler {
 	 */
 	private class DeviceChecker implements Runnable {
 
-		private boolean run = true;
-		
 		/**
 		 *	currently nothing required for the constructor 
 		 */
@@ -124,28 +700,23 @@ public class UpowerModule implements EventHandler {
 		 */
 		@Override
 		public void run() {
-			while (run) {
-				devices = UpowerConnector.getDevices();
-				try {
-					Thread.sleep(DEVICE_CHECK);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+			attach(source.getDevices());
+			// subscribe again, if the power source has ended the subscription,
+			// poll, if it ends again and again
+			if (!subscribed || polling)
+				return;
+			if (source.isSubscribed())
+				resubscriptions = 0;
+			else if (++resubscriptions > MAX_RESUBSCRIPTIONS || !subscribe()) {
+				source.unsubscribe();
+				startPolling();
 			}
 		}
 		
-		/**
-		 * stop this thread
-		 */
-		public void stop() {
-			run = false;
-		}
-		
 	}
 
 	/**
-	 * The runnable class Battery Checker is to be used in a seperate thread
+	 * The runnable class Battery Checker is run by the scheduler
 	 * to poll the battery for its load state
 	 * 
 	 * @author jochen
@@ -153,7 +724,6 @@ public class UpowerModule implements EventHandler {
 	 */
 	private class BatteryChecker implements Runnable {
 
-		private boolean run = true;
 		/**
 		 *	currently nothing required for the constructor 
 		 */
@@ -169,43 +739,20 @@ public class UpowerModule implements EventHandler {
 		 */
 		@Override
 		public void run() {
-			while (run) {
-				devices.stream()
-					.filter(d -> d.contains(Upower.BATTERY.getKey()))
-					.forEach(this::checkBattery);
-				try {
-					Thread.sleep(BATTERY_CHECK);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
-		}
-		
-		/**
-		 * helper method to get the battery value
-		 * 
-		 * @param device
-		 */
-		private void checkBattery(final String device) {
-			int load = UpowerConnector.getBatteryLoad(device);
-			messageBus.postEvent(
-					new StrIntDataEvent(
-							UpowerModule.this, null, EventKeys.BATTERY.getKey(), Integer.valueOf(load)));
-		}
-		
-		/**
-		 * stop this thread
-		 */
-		public void stop() {
-			run = false;
+			final Map<String, DeviceSnapshot> snap = getSnapshot();
+			devices.stream()
+				.map(snap::get)
+				.filter(Objects::nonNull)
+				.filter(d -> d.getType() == DeviceType.BATTERY)
+				.forEach(UpowerModule.this::postBattery);
+			adapt(false);
 		}
 		
 	}
 
 	/**
-	 * The runnable class ChargingAndSupplyChecker is to be used in a seperate 
-	 * thread to poll the battery for its charging state and the system for
+	 * The runnable class ChargingAndSupplyChecker is run by the scheduler 
+	 * to poll the battery for its charging state and the system for
 	 * power supply state
 	 * 
 	 * @author jochen
@@ -213,7 +760,6 @@ public class UpowerModule implements EventHandler {
 	 */
 	private class ChargingAndSupplyChecker implements Runnable {
 
-		private boolean run = true;
 		/**
 		 *	currently nothing required for the constructor 
 		 */
@@ -229,53 +775,79 @@ public class UpowerModule implements EventHandler {
 		 */
 		@Override
 		public void run() {
-			while (run) {
-				devices.stream()
-					.filter(d -> d.contains(Upower.LINE_POWER.getKey()))
-					.forEach(this::checkSupplying);
-				devices.stream()
-				.filter(d -> d.contains(Upower.BATTERY.getKey()))
-				.forEach(this::checkCharging);
-				try {
-					Thread.sleep(CHARGE_CHECK);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
-			}
+			final Map<String, DeviceSnapshot> snap = getSnapshot();
+			devices.stream()
+				.map(snap::get)
+				.filter(Objects::nonNull)
+				.filter(d -> d.getType() == DeviceType.LINE_POWER)
+				.forEach(UpowerModule.this::postSupplying);
+			publishSupplying();
+			devices.stream()
+				.map(snap::get)
+				.filter(Objects::nonNull)
+				.filter(d -> d.getType() == DeviceType.BATTERY)
+				.forEach(UpowerModule.this::postCharging);
+			adapt(false);
 		}
-		
-		/**
-		 * helper method to get the supplying value
+
+	}
+
+	/**
+	 * The runnable class UpsChecker is run by the scheduler to poll the
+	 * uninterruptible power supplies for their load and battery state
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private class UpsChecker implements Runnable {
+
+		/* (non-Javadoc)
+		 * 
+		 * polling the UPS devices
 		 * 
-		 * @param device	the power supply device
+		 * @see java.lang.Runnable#run()
 		 */
-		private void checkSupplying(final String device) {
-			boolean supplying = UpowerConnector.isSupplying(device);
-			messageBus.postEvent(
-					new StrBoolDataEvent(
-							UpowerModule.this, null, EventKeys.SUPPLYING.getKey(), Boolean.valueOf(supplying)));
+		@Override
+		public void run() {
+			final Map<String, DeviceSnapshot> snap = getSnapshot();
+			devices.stream()
+				.map(snap::get)
+				.filter(Objects::nonNull)
+				.filter(d -> d.getType() == DeviceType.UPS)
+				.forEach(UpowerModule.this::postUps);
+			adapt(false);
 		}
 
-		/**
-		 * helper method the get the charging value
+	}
+
+	/**
+	 * The runnable class PeripheralChecker is run by the scheduler to poll
+	 * the peripherals, such as mice and headsets, for their load. They
+	 * discharge slowly, thus the poll runs rarely and shares the snapshot
+	 * of the other checks, if they run in the same tick.
+	 * 
+	 * @author jochen
+	 *
+	 */
+	private class PeripheralChecker implements Runnable {
+
+		/* (non-Javadoc)
+		 * 
+		 * polling the peripherals
 		 * 
-		 * @param device	the battery device
+		 * @see java.lang.Runnable#run()
 		 */
-		private void checkCharging(final String device) {
-			boolean charging = UpowerConnector.isCharging(device);
-			messageBus.postEvent(
-					new StrBoolDataEvent(
-							UpowerModule.this, null, EventKeys.CHARGING.getKey(), Boolean.valueOf(charging)));
+		@Override
+		public void run() {
+			final Map<String, DeviceSnapshot> snap = getSnapshot();
+			devices.stream()
+				.map(snap::get)
+				.filter(Objects::nonNull)
+				.filter(d -> d.getType().isPeripheral())
+				.forEach(UpowerModule.this::postPeripheral);
+			adapt(false);
 		}
 
-		/**
-		 * stop this thread
-		 */
-		public void stop() {
-			run = false;
-		}
-		
 	}
 
 }
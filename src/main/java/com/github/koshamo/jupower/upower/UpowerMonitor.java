@@ -0,0 +1,242 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.github.koshamo.jupower.metrics.JuPowerMetrics;
+import com.github.koshamo.jupower.shared.DeviceSnapshot;
+import com.github.koshamo.jupower.shared.Upower;
+
+/**
+ * UpowerMonitor keeps one long-lived upower process in monitor mode open
+ * and parses its output as it arrives. Instead of asking upower for every
+ * value in fixed intervals, upower tells us which device changed and the
+ * monitor notifies its listener only, if a value differs from the last 
+ * known one.
+ * Each device block is parsed by UpowerParser into a complete snapshot.
+ * 
+ * upower writes to a pipe fully buffered, thus the process is started via
+ * stdbuf to get line buffered output. If stdbuf is not available, upower
+ * is started directly. A process, which ends within STARTUP_CHECK, e.g.
+ * stdbuf without upower, counts as not started.
+ * 
+ * @author jochen
+ *
+ */
+public class UpowerMonitor implements Runnable {
+
+	private static final long STARTUP_CHECK = 100;
+
+	private final Consumer<DeviceSnapshot> listener;
+	private final Map<String, DeviceSnapshot> snapshots = new HashMap<>();
+	private final UpowerParser parser = new UpowerParser();
+
+	private volatile boolean run;
+	private volatile Process process;
+
+	// the device block currently read
+	private String device;
+	private final StringBuilder block = new StringBuilder();
+
+	/**
+	 * The monitor passes the snapshot of every changed device to the 
+	 * given listener, in the thread of the monitor
+	 * 
+	 * @param listener	the listener for changed snapshots
+	 */
+	public UpowerMonitor(final Consumer<DeviceSnapshot> listener) {
+		this.listener = Objects.requireNonNull(listener);
+	}
+
+	/**
+	 * starts the upower process and the thread parsing its output
+	 * 
+	 * @return	true, if the upower process could be started and is still
+	 * alive after STARTUP_CHECK
+	 */
+	public boolean start() {
+		Process started = startAlive(Upower.LINE_BUFFER_CMD.getKey(),
+				Upower.LINE_BUFFER_ARG.getKey(),
+				Upower.UPOWER_CMD.getKey(), Upower.MONITOR_CMD.getKey());
+		if (started == null)
+			started = startAlive(Upower.UPOWER_CMD.getKey(), Upower.MONITOR_CMD.getKey());
+		if (started == null)
+			return false;
+		process = started;
+		run = true;
+		Thread thread = new Thread(this, "upower-monitor"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	/**
+	 * the monitor is running as long as the upower process is alive
+	 * 
+	 * @return	true, if the upower process is alive
+	 */
+	public boolean isRunning() {
+		return run && process != null && process.isAlive();
+	}
+
+	/**
+	 * stops the monitor and destroys the upower process
+	 */
+	public void stop() {
+		run = false;
+		if (process != null)
+			process.destroy();
+	}
+
+	/**
+	 * upower only reports changes, thus the current values need to be
+	 * queried once, when the monitor is started. These values are passed
+	 * to the listener and used as reference for the following changes. 
+	 * A device, which the monitor has reported already, keeps its newer 
+	 * values.
+	 * 
+	 * @param snapshot	the snapshot of all devices
+	 */
+	public synchronized void seed(final Map<String, DeviceSnapshot> snapshot) {
+		for (DeviceSnapshot snap : snapshot.values()) {
+			if (snapshots.putIfAbsent(snap.getDevice(), snap) == null)
+				listener.accept(snap);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * 
+	 * reads the upower output line by line, as long as the process is alive
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(process.getInputStream()))) {
+			String line;
+			while (run && (line = reader.readLine()) != null)
+				parseLine(line);
+			flush();
+		} catch (IOException e) {
+			// the process has been destroyed while reading
+			if (run)
+				e.printStackTrace();
+		} finally {
+			process.destroy();
+		}
+	}
+
+	/**
+	 * parses one line of the upower monitor output. A device block starts
+	 * with a time stamp in brackets, followed by the action and the device
+	 * path, the values follow in the form key: value, an empty line closes
+	 * the block. The lines of a block are collected and parsed at once.
+	 * 
+	 * @param line	the line to be parsed
+	 */
+	private void parseLine(final String line) {
+		if (line.isEmpty()) {
+			flush();
+			return;
+		}
+		if (line.charAt(0) == '[') {
+			flush();
+			int pathStart = line.indexOf('/');
+			if (line.contains(Upower.MONITOR_DEVICE_KEY.getKey()) && pathStart > 0)
+				device = line.substring(pathStart).trim();
+			return;
+		}
+		if (device != null)
+			block.append(line).append('\n');
+	}
+
+	/**
+	 * closes the currently read device block, parses it and passes the
+	 * changes to the listener
+	 */
+	private void flush() {
+		if (device != null && block.length() > 0) {
+			final byte[] bytes = block.toString().getBytes(StandardCharsets.US_ASCII);
+			parser.reset(bytes, bytes.length);
+			parser.parseDevice();
+			final DeviceSnapshot last;
+			synchronized (this) {
+				last = snapshots.get(device);
+			}
+			if (last == null || !last.hasValues(parser.values)) {
+				final DeviceSnapshot snap = new DeviceSnapshot(device, parser.values);
+				synchronized (this) {
+					snapshots.put(device, snap);
+				}
+				listener.accept(snap);
+			}
+		}
+		device = null;
+		block.setLength(0);
+	}
+
+	/**
+	 * helper method to start the monitor process, which has to be alive 
+	 * after STARTUP_CHECK
+	 * 
+	 * @param cmdarray	command and all arguments
+	 * @return			the started process, null if it could not be started
+	 * or has ended already
+	 */
+	private static Process startAlive(final String... cmdarray) {
+		final Process started;
+		try {
+			started = startProcess(cmdarray);
+		} catch (IOException e) {
+			// not installed
+			return null;
+		}
+		try {
+			if (!started.waitFor(STARTUP_CHECK, TimeUnit.MILLISECONDS))
+				return started;
+		} catch (InterruptedException e) {
+			started.destroy();
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	/**
+	 * helper method to start the monitor process
+	 * 
+	 * @param cmdarray	command and all arguments
+	 * @return			the started process
+	 * @throws IOException	if the process could not be started
+	 */
+	private static Process startProcess(final String... cmdarray) throws IOException {
+		ProcessBuilder pb = new ProcessBuilder(cmdarray);
+		pb.environment().put(Upower.LOCALE_ENV.getKey(), Upower.LOCALE_VALUE.getKey());
+		pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+		final Process process = pb.start();
+		JuPowerMetrics.PROCESS_SPAWNS.increment();
+		return process;
+	}
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright [2017] [Dr. Jochen Raßler]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.koshamo.jupower.upower;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.github.koshamo.jupower.shared.DeviceType;
+import com.github.koshamo.jupower.shared.DeviceValues;
+import com.github.koshamo.jupower.shared.Technology;
+import com.github.koshamo.jupower.shared.Upower;
+
+/**
+ * UpowerParser parses the raw upower output on byte level. The output is
+ * scanned once and the values of interest are read straight into the
+ * primitive fields of a reused DeviceValues object, thus no intermediate
+ * Strings are created.
+ * 
+ * The parser owns a growable buffer for the process output, which is
+ * reused for every call. A parser instance must not be shared between
+ * threads.
+ * 
+ * @author jochen
+ *
+ */
+final class UpowerParser {
+
+	private static final byte[] DEVICE = bytes(Upower.DUMP_DEVICE_KEY);
+	private static final byte[] PERCENTAGE = bytes(Upower.BATTERY_LOAD_KEY);
+	private static final byte[] STATE = bytes(Upower.CHARGING_KEY);
+	private static final byte[] CHARGING = bytes(Upower.CHARGING_VALUE);
+	private static final byte[] DISCHARGING = bytes(Upower.DISCHARGING_VALUE);
+	private static final byte[] POWER_SUPPLY = bytes(Upower.POWER_SUPPLY_KEY);
+	private static final byte[] ONLINE = bytes(Upower.SUPPLYING_KEY);
+	private static final byte[] YES = bytes(Upower.SUPPLYING_VALUE);
+	private static final byte[] ENERGY = bytes(Upower.ENERGY_KEY);
+	private static final byte[] ENERGY_FULL = bytes(Upower.ENERGY_FULL_KEY);
+	private static final byte[] ENERGY_RATE = bytes(Upower.ENERGY_RATE_KEY);
+	private static final byte[] VOLTAGE = bytes(Upower.VOLTAGE_KEY);
+	private static final byte[] TIME_TO_EMPTY = bytes(Upower.TIME_TO_EMPTY_KEY);
+	private static final byte[] TIME_TO_FULL = bytes(Upower.TIME_TO_FULL_KEY);
+	private static final byte[] TECHNOLOGY = bytes(Upower.TECHNOLOGY_KEY);
+	private static final byte[] CAPACITY = bytes(Upower.CAPACITY_KEY);
+	private static final byte[] MINUTES = bytes(Upower.MINUTES);
+	private static final byte[] HOURS = bytes(Upower.HOURS);
+	private static final byte[] DAYS = bytes(Upower.DAYS);
+	private static final Technology[] TECHNOLOGIES = Technology.values();
+	private static final byte[][] TECHNOLOGY_KEYS = new byte[TECHNOLOGIES.length][];
+	static {
+		for (int i = 0; i < TECHNOLOGIES.length; ++i)
+			TECHNOLOGY_KEYS[i] = 
+					TECHNOLOGIES[i].getUpowerKey().getBytes(StandardCharsets.US_ASCII);
+	}
+	private static final DeviceType[] TYPES = DeviceType.values();
+	private static final byte[][] TYPE_KEYS = new byte[TYPES.length][];
+	static {
+		for (int i = 0; i < TYPES.length; ++i)
+			TYPE_KEYS[i] = TYPES[i].getKey().getBytes(StandardCharsets.US_ASCII);
+	}
+	private static final byte SPLITTER = (byte) Upower.SPLITTER.getKey().charAt(0);
+	private static final int INITIAL_SIZE = 4096;
+
+	private byte[] data = new byte[INITIAL_SIZE];
+	private int length;
+	private int position;
+
+	// the values of the device block parsed last
+	private int pathStart;
+	private int pathEnd;
+	final DeviceValues values = new DeviceValues();
+
+	/**
+	 * reads the complete stream into the parser's buffer, the buffer grows
+	 * if needed
+	 * 
+	 * @param in	the stream to read, e.g. the process output
+	 * @throws IOException	if the stream can not be read
+	 */
+	void read(final InputStream in) throws IOException {
+		length = 0;
+		position = 0;
+		int count;
+		while ((count = in.read(data, length, data.length - length)) >= 0) {
+			length += count;
+			if (length == data.length) {
+				final byte[] larger = new byte[data.length * 2];
+				System.arraycopy(data, 0, larger, 0, length);
+				data = larger;
+			}
+		}
+	}
+
+	/**
+	 * uses the given data instead of reading a stream, e.g. a recorded
+	 * upower output
+	 * 
+	 * @param bytes		the upower output
+	 * @param size		the number of valid bytes
+	 */
+	void reset(final byte[] bytes, final int size) {
+		if (data.length < size)
+			data = new byte[size];
+		System.arraycopy(bytes, 0, data, 0, size);
+		length = size;
+		position = 0;
+	}
+
+	/**
+	 * drops the current content
+	 */
+	void clear() {
+		length = 0;
+		position = 0;
+		values.clear();
+	}
+
+	/**
+	 * starts parsing from the beginning of the current content
+	 */
+	void rewind() {
+		position = 0;
+	}
+
+	/**
+	 * parses the complete content as one device block, which is the output
+	 * of upower -i
+	 */
+	void parseDevice() {
+		values.clear();
+		pathStart = 0;
+		pathEnd = 0;
+		int start = 0;
+		while (start < length) {
+			final int end = lineEnd(start);
+			parseLine(start, end);
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * advances to the next device block of the output of upower -d and
+	 * parses it
+	 * 
+	 * @return	true, if another device block has been found
+	 */
+	boolean nextDevice() {
+		while (position < length) {
+			int end = lineEnd(position);
+			if (startsWith(position, end, DEVICE)) {
+				values.clear();
+				final int split = indexOf(position, end, SPLITTER);
+				pathStart = skipSpaces(split < 0 ? position + DEVICE.length : split + 1, end);
+				pathEnd = trimEnd(pathStart, end);
+				position = end + 1;
+				// the device block ends with the next unindented line
+				while (position < length && isIndentOrEmpty(data[position])) {
+					end = lineEnd(position);
+					parseLine(position, end);
+					position = end + 1;
+				}
+				return true;
+			}
+			position = end + 1;
+		}
+		return false;
+	}
+
+	/**
+	 * compares the path of the device block parsed last to the given device
+	 * name without creating a String
+	 * 
+	 * @param device	the device name
+	 * @return			true, if the names are equal
+	 */
+	boolean pathEquals(final String device) {
+		if (device.length() != pathEnd - pathStart)
+			return false;
+		for (int i = 0; i < device.length(); ++i)
+			if (device.charAt(i) != data[pathStart + i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return	the path of the device block parsed last as String
+	 */
+	String path() {
+		return new String(data, pathStart, pathEnd - pathStart, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * parses a single line in the form key: value and stores the value, if
+	 * the key is of interest. A line without a splitter is the type of the
+	 * device.
+	 * 
+	 * @param start	the start index of the line
+	 * @param end	the end index of the line, exclusive
+	 */
+	private void parseLine(final int start, final int end) {
+		final int keyStart = skipSpaces(start, end);
+		final int split = indexOf(keyStart, end, SPLITTER);
+		if (split < 0) {
+			parseType(keyStart, trimEnd(keyStart, end));
+			return;
+		}
+		final int valueStart = skipSpaces(split + 1, end);
+		final int valueEnd = trimEnd(valueStart, end);
+		if (keyEquals(keyStart, split, PERCENTAGE))
+			values.setPercentage(parsePercentage(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, STATE)) {
+			values.setCharging(keyEquals(valueStart, valueEnd, CHARGING));
+			values.setDischarging(keyEquals(valueStart, valueEnd, DISCHARGING));
+		}
+		else if (keyEquals(keyStart, split, ONLINE))
+			values.setOnline(keyEquals(valueStart, valueEnd, YES));
+		else if (keyEquals(keyStart, split, ENERGY))
+			values.setEnergy(parseDecimal(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, ENERGY_FULL))
+			values.setEnergyFull(parseDecimal(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, ENERGY_RATE))
+			values.setEnergyRate(parseDecimal(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, VOLTAGE))
+			values.setVoltage(parseDecimal(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, TIME_TO_EMPTY))
+			values.setTimeToEmpty(parseTime(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, TIME_TO_FULL))
+			values.setTimeToFull(parseTime(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, TECHNOLOGY))
+			values.setTechnology(parseTechnology(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, CAPACITY))
+			values.setCapacity(parseDecimal(valueStart, valueEnd));
+		else if (keyEquals(keyStart, split, POWER_SUPPLY))
+			values.setPowerSupply(keyEquals(valueStart, valueEnd, YES));
+	}
+
+	/**
+	 * parses the device type, other lines without splitter, such as the
+	 * history, are ignored
+	 * 
+	 * @param start	the start index of the type
+	 * @param end	the end index of the type, exclusive
+	 */
+	private void parseType(final int start, final int end) {
+		if (start == end || isDigit(data[start]))
+			return;
+		for (int i = 0; i < TYPE_KEYS.length; ++i)
+			if (keyEquals(start, end, TYPE_KEYS[i])) {
+				values.setType(TYPES[i]);
+				return;
+			}
+	}
+
+	/**
+	 * parses a percentage value, such as 85%, 85.4% or 85,4% and rounds it
+	 * to an integer
+	 * 
+	 * @param start	the start index of the value
+	 * @param end	the end index of the value, exclusive
+	 * @return		the rounded percentage
+	 */
+	private int parsePercentage(final int start, final int end) {
+		int value = 0;
+		int i = start;
+		while (i < end && isDigit(data[i]))
+			value = value * 10 + (data[i++] - '0');
+		if (i + 1 < end && (data[i] == '.' || data[i] == ',')
+				&& isDigit(data[i + 1]) && data[i + 1] >= '5')
+			++value;
+		return value;
+	}
+
+	/**
+	 * parses a decimal value with an optional unit, such as 41.2 Wh, the
+	 * decimal separator may be a point or a comma
+	 * 
+	 * @param start	the start index of the value
+	 * @param end	the end index of the value, exclusive
+	 * @return		the value without unit
+	 */
+	private double parseDecimal(final int start, final int end) {
+		long value = 0;
+		long divisor = 1;
+		int i = start;
+		while (i < end && isDigit(data[i]))
+			value = value * 10 + (data[i++] - '0');
+		if (i < end && (data[i] == '.' || data[i] == ',')) {
+			++i;
+			while (i < end && isDigit(data[i]) && divisor < 1_000_000_000L) {
+				value = value * 10 + (data[i++] - '0');
+				divisor *= 10;
+			}
+		}
+		return (double) value / divisor;
+	}
+
+	/**
+	 * parses a time value, such as 33.1 minutes, into seconds
+	 * 
+	 * @param start	the start index of the value
+	 * @param end	the end index of the value, exclusive
+	 * @return		the time in seconds
+	 */
+	private long parseTime(final int start, final int end) {
+		final double value = parseDecimal(start, end);
+		int unit = start;
+		while (unit < end && !isSpace(data[unit]))
+			++unit;
+		unit = skipSpaces(unit, end);
+		if (keyEquals(unit, end, MINUTES))
+			return Math.round(value * 60);
+		if (keyEquals(unit, end, HOURS))
+			return Math.round(value * 60 * 60);
+		if (keyEquals(unit, end, DAYS))
+			return Math.round(value * 60 * 60 * 24);
+		return Math.round(value);
+	}
+
+	/**
+	 * parses the technology name
+	 * 
+	 * @param start	the start index of the value
+	 * @param end	the end index of the value, exclusive
+	 * @return		the technology, UNKNOWN if the name is not known
+	 */
+	private Technology parseTechnology(final int start, final int end) {
+		for (int i = 0; i < TECHNOLOGY_KEYS.length; ++i)
+			if (keyEquals(start, end, TECHNOLOGY_KEYS[i]))
+				return TECHNOLOGIES[i];
+		return Technology.UNKNOWN;
+	}
+
+	/**
+	 * @param from	the index to start searching
+	 * @return		the index of the next line feed or the content length
+	 */
+	private int lineEnd(final int from) {
+		int i = from;
+		while (i < length && data[i] != '\n')
+			++i;
+		return i;
+	}
+
+	/**
+	 * @param from	the start index
+	 * @param end	the end index, exclusive
+	 * @param b		the byte to find
+	 * @return		the index of the byte, -1 if not found
+	 */
+	private int indexOf(final int from, final int end, final byte b) {
+		for (int i = from; i < end; ++i)
+			if (data[i] == b)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @param from	the start index
+	 * @param end	the end index, exclusive
+	 * @return		the index of the first non white space character
+	 */
+	private int skipSpaces(final int from, final int end) {
+		int i = from;
+		while (i < end && isSpace(data[i]))
+			++i;
+		return i;
+	}
+
+	/**
+	 * @param start	the start index
+	 * @param end	the end index, exclusive
+	 * @return		the end index without trailing white space
+	 */
+	private int trimEnd(final int start, final int end) {
+		int i = end;
+		while (i > start && isSpace(data[i - 1]))
+			--i;
+		return i;
+	}
+
+	/**
+	 * @param start	the start index of the line
+	 * @param end	the end index of the line, exclusive
+	 * @param key	the key to compare with
+	 * @return		true, if the line starts with the given key
+	 */
+	private boolean startsWith(final int start, final int end, final byte[] key) {
+		if (end - start < key.length)
+			return false;
+		for (int i = 0; i < key.length; ++i)
+			if (data[start + i] != key[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * @param start	the start index of the key
+	 * @param end	the end index of the key, exclusive
+	 * @param key	the key to compare with
+	 * @return		true, if the key is equal to the given one
+	 */
+	private boolean keyEquals(final int start, final int end, final byte[] key) {
+		return end - start == key.length && startsWith(start, end, key);
+	}
+
+	private static boolean isDigit(final byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static boolean isSpace(final byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	private static boolean isIndentOrEmpty(final byte b) {
+		return isSpace(b) || b == '\n';
+	}
+
+	private static byte[] bytes(final Upower key) {
+		return key.getKey().getBytes(StandardCharsets.US_ASCII);
+	}
+}